@@ -1,22 +1,38 @@
 package controller;
 
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.InputMismatchException;
 import java.util.List;
 import java.util.Scanner;
 
 import javax.imageio.ImageIO;
 
+import model.BorderMode;
+import model.ColorMatrix;
 import model.ImageModel;
+import model.Kernel;
+import model.PixelImage;
+import model.ResampleFilter;
+import model.RowExecutor;
+import model.StripModel;
+import model.StripSource;
 import operations.BlueComponentOperation;
 import operations.BlurOperation;
 import operations.BrightenOperation;
 import operations.ColorCorrectOperation;
+import operations.ColorMatrixOperation;
+import operations.ConvolveOperation;
 import operations.CompressOperation;
 import operations.GreenComponentOperation;
 import operations.HistogramOperation;
@@ -46,6 +62,12 @@ import view.ImageView;
 public class ImageControllerImpl implements controller.ImageController {
   private final ImageModel model;
   private final ImageView view;
+  // Scripts stream images of at least this many pixels instead of loading them
+  private final long streamThreshold = Long.getLong("image.stream.threshold",
+      Runtime.getRuntime().maxMemory() / 32);
+  // Images are only dropped by scripts run on their own, whose names nobody can use afterwards
+  private boolean interactive;
+  private int scriptDepth;
 
   /**
    * Constructs an mvc.ImageControllerImpl with the specified model and view.
@@ -67,6 +89,7 @@ public class ImageControllerImpl implements controller.ImageController {
    */
   @Override
   public void execute() throws IOException {
+    interactive = true;
     boolean cont = true;
     while (cont) {
       String commandLine = view.getUserInput();
@@ -89,6 +112,31 @@ public class ImageControllerImpl implements controller.ImageController {
    * @throws IllegalArgumentException if the command format is invalid or the command is unknown.
    */
   private boolean processCommand(String command) {
+    return processCommand(command, null);
+  }
+
+  /**
+   * Processes a single command, decoding a loaded image at a reduced size when a script only
+   * needs it at the given size.
+   *
+   * @param command  the command to process.
+   * @param loadSize the size an image loaded by the command is needed at, or null for all of it.
+   * @throws IllegalArgumentException if the command format is invalid or the command is unknown.
+   */
+  private boolean processCommand(String command, Dimension loadSize) {
+    return processCommand(command, loadSize, model);
+  }
+
+  /**
+   * Processes a single command on a given model, which is either the controller's own model or
+   * a model that streams an image through a script.
+   *
+   * @param command  the command to process.
+   * @param loadSize the size an image loaded by the command is needed at, or null for all of it.
+   * @param target   the model the command's operation runs on.
+   * @throws IllegalArgumentException if the command format is invalid or the command is unknown.
+   */
+  private boolean processCommand(String command, Dimension loadSize, ImageModel target) {
     String[] tokens = command.split(" ");
     int startIndex = -1;
     boolean containsSplit = false;
@@ -115,43 +163,62 @@ public class ImageControllerImpl implements controller.ImageController {
             throw new IllegalArgumentException("Invalid load command format.");
           }
           fileExtension = getFileExtension(tokens[1]).toLowerCase();
-          int[][][] image;
           switch (fileExtension) {
             case "ppm":
-              image = loadPpmImage(tokens[1]);
+            case "pgm":
+            case "pnm":
+            case "pam":
+              operation = new LoadOperation(loadNetpbmImage(tokens[1], loadSize), tokens[2]);
               break;
             case "png":
             case "jpg":
             case "jpeg":
-              image = loadRasterImage(tokens[1]);
+              operation = new LoadOperation(RasterReader.read(tokens[1], loadSize), tokens[2]);
               break;
             default:
               throw new IllegalArgumentException("Unsupported image format: " + fileExtension);
           }
 
-          operation = new LoadOperation(image, tokens[2]);
           view.showMessage("Image is Loaded Successfully! - " + tokens[2]);
           break;
 
         case "save":
-          if (tokens.length != 3) {
+          if (tokens.length != 3 && tokens.length != 4) {
             throw new IllegalArgumentException("Invalid save command format.");
           }
 
           fileExtension = getFileExtension(tokens[1]).toLowerCase();
-
-          int[][][] saveImage = model.getImage(tokens[2]);
-          switch (fileExtension) {
-            case "ppm":
-              savePpmImage(tokens[1], saveImage);
-              break;
-            case "png":
-            case "jpg":
-            case "jpeg":
-              saveRasterImage(tokens[1], saveImage);
-              break;
-            default:
-              throw new IllegalArgumentException("Unsupported image format: " + fileExtension);
+          boolean plain = LoadPlanner.isPlainSave(tokens);
+
+          // A shared handle, so the stored image copies itself on its next in-place write until
+          // the SaveOperation hands the handle to the model or it is released here
+          PixelImage saveImage = target.getPixelImage(tokens[2]);
+          boolean written = false;
+          try {
+            switch (fileExtension) {
+              case "ppm":
+              case "pgm":
+              case "pnm":
+              case "pam":
+                if (plain) {
+                  PpmWriter.write(tokens[1], saveImage, fileExtension.equals("pgm"));
+                } else {
+                  NetpbmCodec.write(tokens[1], saveImage);
+                }
+                break;
+              case "png":
+              case "jpg":
+              case "jpeg":
+                saveRasterImage(tokens[1], saveImage);
+                break;
+              default:
+                throw new IllegalArgumentException("Unsupported image format: " + fileExtension);
+            }
+            written = true;
+          } finally {
+            if (!written) {
+              saveImage.release();
+            }
           }
 
           operation = new SaveOperation(saveImage, tokens[1]);
@@ -278,6 +345,32 @@ public class ImageControllerImpl implements controller.ImageController {
           view.showMessage(tokens[1] + " is sharpened Successfully! - " + tokens[2]);
           break;
 
+        case "convolve":
+          if (tokens.length < 4) {
+            throw new IllegalArgumentException("Invalid convolve command format.");
+          }
+          BorderMode border = BorderMode.CLAMP;
+          if (tokens.length > 4 && !tokens[4].equals("split")) {
+            border = BorderMode.fromName(tokens[4]);
+          }
+          operation = new ConvolveOperation(Kernel.parse(readText(tokens[1])), border, tokens[2],
+              tokens[3]);
+          splitEligibile = true;
+          view.showMessage(tokens[2] + " is convolved with " + tokens[1] + " Successfully! - "
+              + tokens[3]);
+          break;
+
+        case "color-matrix":
+          if (tokens.length < 4) {
+            throw new IllegalArgumentException("Invalid color-matrix command format.");
+          }
+          operation = new ColorMatrixOperation(ColorMatrix.parse(readText(tokens[1])), tokens[2],
+              tokens[3]);
+          splitEligibile = true;
+          view.showMessage(tokens[2] + " is mixed with " + tokens[1] + " Successfully! - "
+              + tokens[3]);
+          break;
+
         case "sepia":
           if (tokens.length < 3) {
             throw new IllegalArgumentException("Invalid sepia command format.");
@@ -328,7 +421,11 @@ public class ImageControllerImpl implements controller.ImageController {
           if (tokens.length < 5) {
             throw new IllegalArgumentException("Invalid resize command format.");
           }
-          operation = new ResizeOperation(tokens[1], tokens[2], tokens[3], tokens[4]);
+          ResampleFilter filter = ResampleFilter.BILINEAR;
+          if (tokens.length > 5) {
+            filter = ResampleFilter.fromName(tokens[5]);
+          }
+          operation = new ResizeOperation(tokens[1], tokens[2], tokens[3], tokens[4], filter);
           view.showMessage(tokens[1] + " is Resized Successfully! - " + tokens[2]);
           break;
 
@@ -355,15 +452,17 @@ public class ImageControllerImpl implements controller.ImageController {
 
 
     if (operation != null) {
-      operation.execute(model, tokens);
+      operation.execute(target, tokens);
     }
 
     if (containsSplit && splitTokens.length == 2) {
       if (splitEligibile) {
-        if (!tokens[0].equals("levels-adjust")) {
-          model.split(tokens[1], tokens[2], Float.parseFloat(splitTokens[1]));
+        if (tokens[0].equals("levels-adjust")) {
+          target.split(tokens[4], tokens[5], Float.parseFloat(splitTokens[1]));
+        } else if (tokens[0].equals("convolve") || tokens[0].equals("color-matrix")) {
+          target.split(tokens[2], tokens[3], Float.parseFloat(splitTokens[1]));
         } else {
-          model.split(tokens[4], tokens[5], Float.parseFloat(splitTokens[1]));
+          target.split(tokens[1], tokens[2], Float.parseFloat(splitTokens[1]));
         }
         view.showMessage("Image is split at " + Float.parseFloat(splitTokens[1]) + "%.");
       } else {
@@ -371,12 +470,15 @@ public class ImageControllerImpl implements controller.ImageController {
       }
     }
 
-    BufferedImage curr_image = model.getCurrentImage();
-    BufferedImage hist_image = model.getHistImage();
-    if (curr_image == null || hist_image == null) {
-      view.showMessage("Error: Unable to display image.");
-    } else {
-      view.displayImage(curr_image, hist_image);
+    // Rendering the image and its histogram is only worth it when the view shows them
+    if (target == model && view.showsImages()) {
+      BufferedImage curr_image = model.getCurrentImage();
+      BufferedImage hist_image = model.getHistImage();
+      if (curr_image == null || hist_image == null) {
+        view.showMessage("Error: Unable to display image.");
+      } else {
+        view.displayImage(curr_image, hist_image);
+      }
     }
 
     return true;
@@ -386,6 +488,10 @@ public class ImageControllerImpl implements controller.ImageController {
    * Runs a script of commands from a specified file.
    * This method reads commands from the provided script file path and executes each command.
    * Any errors encountered during execution are reported to the console.
+   * A script run on its own drops each image from the model after the last command that uses
+   * it, and may stream images or decode them at a reduced size when the script itself never
+   * needs them in full; scripts run from the interactive modes or from other scripts load and
+   * keep every image in full, since later commands may still ask for it.
    *
    * @param scriptFilePath the path to the script file containing commands to be executed.
    * @throws FileNotFoundException if the specified script file does not exist.
@@ -393,62 +499,116 @@ public class ImageControllerImpl implements controller.ImageController {
   @Override
   public void runScript(String scriptFilePath) throws IOException {
     Scanner sc = new Scanner(new File(scriptFilePath));
+    List<String> commands = new ArrayList<>();
     while (sc.hasNextLine()) {
       String command = sc.nextLine().trim();
-      if (command.isEmpty() || command.startsWith("#")) {
-        continue;
+      if (!command.isEmpty() && !command.startsWith("#")) {
+        commands.add(command);
       }
+    }
+    sc.close();
 
-      view.showMessage("Executing: " + command);
-      try {
-        processCommand(command);
-      } catch (Exception e) {
-        view.showMessage("Error: Invalid Command: " + command);
+    LoadPlanner planner = new LoadPlanner(commands);
+    boolean standalone = !interactive && scriptDepth == 0;
+    scriptDepth++;
+    try {
+      for (int i = 0; i < commands.size(); i++) {
+        int length = standalone ? planner.streamLength(i) : 0;
+        if (length > 0 && streamCommands(commands.subList(i, i + length))) {
+          i += length - 1;
+          continue;
+        }
+        String command = commands.get(i);
+        view.showMessage("Executing: " + command);
+        try {
+          processCommand(command, standalone ? planner.targetSize(i) : null);
+        } catch (Exception e) {
+          view.showMessage("Error: Invalid Command: " + command);
+        }
+        if (standalone) {
+          for (String name : planner.deadAfter(i)) {
+            model.dropImage(name);
+          }
+        }
       }
+    } finally {
+      scriptDepth--;
     }
-    sc.close();
   }
 
+  /**
+   * Runs a load, the operations that follow it and the save of their result a strip of rows at
+   * a time, so that the image is never held in memory. Images below the stream threshold are
+   * left to run as usual.
+   *
+   * @param commands the load, the operations and the save, as found by the planner.
+   * @return true if the commands ran, false if they should run as usual.
+   */
+  private boolean streamCommands(List<String> commands) {
+    String[] load = commands.get(0).split(" ");
+    String[] save = commands.get(commands.size() - 1).split(" ");
+    NetpbmCodec.StripReader reader;
+    try {
+      reader = new NetpbmCodec.StripReader(load[1]);
+    } catch (IOException | IllegalArgumentException e) {
+      return false;
+    }
 
-  private int[][][] loadPpmImage(String filename) {
-    int[][][] image = null;
-    try (Scanner scanner = new Scanner(new File(filename))) {
-      // Check the file format (should be "P3" for PPM)
-      String format = scanner.next();
-      if (!format.equals("P3")) {
-        throw new IllegalArgumentException("Invalid PPM format: " + format);
+    boolean opened = false;
+    try (NetpbmCodec.StripReader source = reader) {
+      if ((long) source.getWidth() * source.getHeight() < streamThreshold) {
+        return false;
       }
-
-      // Skip any comment lines
-      while (scanner.hasNext("#")) {
-        scanner.nextLine();
+      StripModel strips = new StripModel();
+      strips.open(source, load[2]);
+      view.showMessage("Executing: " + commands.get(0));
+      view.showMessage("Image is Loaded Successfully! - " + load[2]);
+
+      for (String command : commands.subList(1, commands.size() - 1)) {
+        view.showMessage("Executing: " + command);
+        processCommand(command, null, strips);
       }
 
-      int width = scanner.nextInt();
-      int height = scanner.nextInt();
-      int maxColorValue = scanner.nextInt();
-
-      image = new int[height][width][3];
-
-      for (int y = 0; y < height; y++) {
-        for (int x = 0; x < width; x++) {
-          int red = scanner.nextInt();
-          int green = scanner.nextInt();
-          int blue = scanner.nextInt();
-
-          red = (red * 255) / maxColorValue;
-          green = (green * 255) / maxColorValue;
-          blue = (blue * 255) / maxColorValue;
-
-          image[y][x][0] = red;   // Red
-          image[y][x][1] = green; // Green
-          image[y][x][2] = blue;  // Blue
+      view.showMessage("Executing: " + commands.get(commands.size() - 1));
+      StripSource result = strips.lookup(save[2]);
+      boolean plain = LoadPlanner.isPlainSave(save);
+      opened = true;
+      if (plain) {
+        try (FileChannel channel = FileChannel.open(Paths.get(save[1]),
+            StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+          PpmWriter writer = new PpmWriter(channel, RowExecutor.shared());
+          writer.writeHeader(result.getWidth(), result.getHeight(),
+              save[1].toLowerCase().endsWith(".pgm"));
+          strips.save(save[2], writer);
+        }
+      } else {
+        try (NetpbmCodec.StripWriter writer = new NetpbmCodec.StripWriter(save[1],
+            result.getWidth(), result.getHeight(), result.isGrey())) {
+          strips.save(save[2], writer);
         }
       }
-    } catch (FileNotFoundException e) {
+      view.showMessage("Image is Saved Successfully!");
+    } catch (IOException | IllegalArgumentException e) {
+      // A failure while writing would otherwise leave a truncated file behind
+      if (opened) {
+        try {
+          Files.deleteIfExists(Paths.get(save[1]));
+        } catch (IOException ignored) {
+          // The error below is what matters to the user
+        }
+      }
+      view.showMessage("Error: " + e.getMessage());
+    }
+    return true;
+  }
+
+  private PixelImage loadNetpbmImage(String filename, Dimension target) {
+    PixelImage image = null;
+    try {
+      image = NetpbmCodec.read(filename, target);
+    } catch (NoSuchFileException e) {
       System.err.println("File not found: " + e.getMessage());
-    } catch (InputMismatchException e) {
-      System.err.println("Invalid input in PPM file: " + e.getMessage());
     } catch (Exception e) {
       System.err.println("An error occurred: " + e.getMessage());
     }
@@ -456,10 +616,8 @@ public class ImageControllerImpl implements controller.ImageController {
     return image;
   }
 
-  private int[][][] loadRasterImage(String filePath) throws IOException {
-    BufferedImage bufferedImage = ImageIO.read(new File(filePath));
-
-    return bufferedToInt3d(bufferedImage);
+  private String readText(String filePath) throws IOException {
+    return new String(Files.readAllBytes(Paths.get(filePath)), StandardCharsets.UTF_8);
   }
 
   private String getFileExtension(String filePath) {
@@ -470,63 +628,17 @@ public class ImageControllerImpl implements controller.ImageController {
     return filePath.substring(lastIndexOfDot + 1);
   }
 
-  private void savePpmImage(String filePath, int[][][] image) throws IOException {
-    FileWriter fw = new FileWriter(new File(filePath));
-    fw.write("P3\n" + image[0].length + " " + image.length + "\n255\n");
-    for (int row = 0; row < image.length; row++) {
-      for (int col = 0; col < image[0].length; col++) {
-        fw.write(image[row][col][0] + " "); // Red
-        fw.write(image[row][col][1] + " "); // Green
-        fw.write(image[row][col][2] + "\n"); // Blue
-      }
-    }
-
-    fw.close();
-  }
-
-  private void saveRasterImage(String filePath, int[][][] image) throws IOException {
-    if (image.length == 0 || image[0].length == 0) {
+  private void saveRasterImage(String filePath, PixelImage image) throws IOException {
+    if (image.getWidth() == 0 || image.getHeight() == 0) {
       throw new IllegalArgumentException("Image data cannot be empty.");
     }
 
-    BufferedImage bufferedImage = int3dToBufferedImage(image);
+    BufferedImage bufferedImage = new BufferedImage(image.getWidth(), image.getHeight(),
+        BufferedImage.TYPE_INT_RGB);
+    bufferedImage.setRGB(0, 0, image.getWidth(), image.getHeight(), image.getPixels(),
+        image.rowOffset(0), image.getStride());
 
     ImageIO.write(bufferedImage, getFileExtension(filePath), new File(filePath));
   }
 
-  private int[][][] bufferedToInt3d(BufferedImage bufferedImage) {
-    int width = bufferedImage.getWidth();
-    int height = bufferedImage.getHeight();
-    int[][][] image = new int[height][width][3];
-
-    for (int row = 0; row < height; row++) {
-      for (int col = 0; col < width; col++) {
-        int rgb = bufferedImage.getRGB(col, row);
-        image[row][col][0] = (rgb >> 16) & 0xFF; // Red
-        image[row][col][1] = (rgb >> 8) & 0xFF;  // Green
-        image[row][col][2] = rgb & 0xFF;           // Blue
-      }
-    }
-
-    return image;
-  }
-
-  private BufferedImage int3dToBufferedImage(int[][][] image) {
-    int height = image.length;
-    int width = image[0].length;
-    BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-
-    for (int row = 0; row < height; row++) {
-      for (int col = 0; col < width; col++) {
-        int r = image[row][col][0];
-        int g = image[row][col][1];
-        int b = image[row][col][2];
-        int rgb = (r << 16) | (g << 8) | b;
-        bufferedImage.setRGB(col, row, rgb);
-      }
-    }
-
-    return bufferedImage;
-  }
-
 }
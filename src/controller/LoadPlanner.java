@@ -0,0 +1,294 @@
+package controller;
+
+import java.awt.Dimension;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Looks ahead in a script for images that are loaded only to be resized, so that they can be
+ * decoded at a reduced size instead of in full.
+ *
+ * <p>An image qualifies when the command right after its load resizes it to a fixed width and
+ * height, and no later command reads the loaded name before another load replaces it. The
+ * reader may then skip pixels while decoding, as long as what it keeps is still at least twice
+ * the size the image is resized to, so the resampling filter has enough pixels to smooth the
+ * result. Scripts that run other scripts are never planned, since those may use any name.
+ *
+ * <p>The planner also finds runs of commands that can be streamed: a NetPBM image that is
+ * loaded, passed through operations that each need only a few neighbouring rows, and saved to a
+ * NetPBM file, with none of the images in between used again, never has to be held in memory.
+ *
+ * <p>Finally the planner finds where each image is used for the last time, so that a script
+ * can drop it from the model right after that command instead of keeping it until the end.
+ */
+public class LoadPlanner {
+  private final List<String> commands;
+
+  /**
+   * Constructs a planner over the commands of a script.
+   *
+   * @param commands the commands in the order they run, without blank lines and comments.
+   */
+  public LoadPlanner(List<String> commands) {
+    this.commands = commands;
+  }
+
+  /**
+   * Finds the size that the image loaded by a command is needed at.
+   *
+   * @param index the position of the command in the script.
+   * @return the size the image is resized to, or null when it is needed in full or the command
+   *         is not a load.
+   */
+  public Dimension targetSize(int index) {
+    String[] load = commands.get(index).split(" ");
+    if (load.length != 3 || !load[0].equalsIgnoreCase("load") || index + 1 >= commands.size()) {
+      return null;
+    }
+    String name = load[2];
+    String[] resize = commands.get(index + 1).split(" ");
+    if (!resize[0].equalsIgnoreCase("resize") || resize.length < 5 || resize.length > 6
+        || !resize[1].equals(name)) {
+      return null;
+    }
+    int width;
+    int height;
+    try {
+      width = (int) Float.parseFloat(resize[3]);
+      height = (int) Float.parseFloat(resize[4]);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    if (width < 1 || height < 1) {
+      return null;
+    }
+
+    // Resizing into the same name replaces the full image for everything after it
+    if (!resize[2].equals(name) && usedAfter(index + 2, name)) {
+      return null;
+    }
+    return new Dimension(width, height);
+  }
+
+  /**
+   * Finds the run of commands that can be streamed from a load. The run is the load, a chain of
+   * operations each reading the result of the one before, and a save of the last result.
+   *
+   * @param index the position of the command in the script.
+   * @return the number of commands in the run, including the load and the save, or 0 when the
+   *         command does not start one.
+   */
+  public int streamLength(int index) {
+    String[] load = commands.get(index).split(" ");
+    if (load.length != 3 || !load[0].equalsIgnoreCase("load")
+        || !NetpbmCodec.handles(extensionOf(load[1]))) {
+      return 0;
+    }
+    Set<String> names = new HashSet<>();
+    String current = load[2];
+    names.add(current);
+
+    for (int i = index + 1; i < commands.size(); i++) {
+      String[] tokens = commands.get(i).split(" ");
+      if (tokens[0].equalsIgnoreCase("save")) {
+        if (!isStreamedSave(tokens, current) || sameFile(tokens[1], load[1])) {
+          return 0;
+        }
+        for (String name : names) {
+          if (usedAfter(i + 1, name)) {
+            return 0;
+          }
+        }
+        return i - index + 1;
+      }
+      int[] positions = streamedNames(tokens);
+      if (positions == null || !tokens[positions[0]].equals(current)) {
+        return 0;
+      }
+      current = tokens[positions[1]];
+      names.add(current);
+    }
+    return 0;
+  }
+
+  /**
+   * Finds the images that a command uses for the last time: those it names that no later
+   * command reads before a load replaces them. Numbers, options and the files that load,
+   * convolve and color-matrix read are not names. The file a save writes is, since the model
+   * also keeps the saved image under its path.
+   *
+   * @param index the position of the command in the script.
+   * @return the names that can be dropped once the command has run, each listed once.
+   */
+  public List<String> deadAfter(int index) {
+    String[] tokens = commands.get(index).split(" ");
+    String command = tokens[0].toLowerCase();
+    List<String> dead = new ArrayList<>();
+    // Another script may use any image, including the ones it creates
+    if (command.equals("run") || command.equals("-file")) {
+      return dead;
+    }
+    for (int i = 1; i < tokens.length; i++) {
+      if (tokens[i].equalsIgnoreCase("split")) {
+        break;
+      }
+      if (namesImage(command, i, tokens[i]) && !dead.contains(tokens[i])
+          && !usedAfter(index + 1, tokens[i])) {
+        dead.add(tokens[i]);
+      }
+    }
+    return dead;
+  }
+
+  /**
+   * Tells whether a word of a command, other than a split and what follows it, can name an
+   * image.
+   */
+  private static boolean namesImage(String command, int position, String word) {
+    try {
+      Float.parseFloat(word);
+      return false;
+    } catch (NumberFormatException e) {
+      // Not a number
+    }
+    switch (command) {
+      case "load":
+      case "color-matrix":
+        return position != 1;
+      case "convolve":
+        // The kernel file, then the border mode after both names
+        return position != 1 && position != 4;
+      case "save":
+        return position != 3;
+      case "resize":
+        return position != 5;
+      default:
+        return true;
+    }
+  }
+
+  /**
+   * Finds where an operation that can be streamed names its source and destination images.
+   *
+   * @return the positions of the two names, or null if the command cannot be streamed.
+   */
+  private static int[] streamedNames(String[] tokens) {
+    if (Arrays.asList(tokens).contains("split")) {
+      return null;
+    }
+    switch (tokens[0].toLowerCase()) {
+      case "blur":
+      case "sharpen":
+      case "sepia":
+      case "horizontal-flip":
+      case "red-component":
+      case "green-component":
+      case "blue-component":
+      case "value-component":
+      case "luma-component":
+      case "intensity-component":
+      case "color-correct":
+        return tokens.length == 3 ? new int[] {1, 2} : null;
+      case "brighten":
+      case "color-matrix":
+        return tokens.length == 4 ? new int[] {2, 3} : null;
+      case "convolve":
+        // Wrapping would need the last rows of the image before the first strip
+        return tokens.length == 4 || tokens.length == 5 && !tokens[4].equalsIgnoreCase("wrap")
+            ? new int[] {2, 3} : null;
+      case "levels-adjust":
+        return tokens.length == 6 ? new int[] {4, 5} : null;
+      default:
+        return null;
+    }
+  }
+
+  private static boolean isStreamedSave(String[] tokens, String name) {
+    if (tokens.length < 3 || tokens.length > 4 || !tokens[2].equals(name)) {
+      return false;
+    }
+    String extension = extensionOf(tokens[1]);
+    return NetpbmCodec.handles(extension)
+        && (tokens.length == 3 || allowsFormat(extension, tokens[3]));
+  }
+
+  /**
+   * Tells whether a save command writes plain text. A PPM file is written as plain text (P3)
+   * unless binary is asked for, since that is what the program has always written. PGM and PNM
+   * files are binary unless plain text is asked for, and PAM files, which have no plain form,
+   * are always binary.
+   *
+   * @param tokens the words of a save command: the command, the file, the image and an optional
+   *               "plain" or "binary".
+   * @return true if the image should be written with {@link PpmWriter}.
+   * @throws IllegalArgumentException if the format option does not apply to the file type.
+   */
+  public static boolean isPlainSave(String[] tokens) {
+    String extension = extensionOf(tokens[1]);
+    if (tokens.length < 4) {
+      return extension.equals("ppm");
+    }
+    if (!allowsFormat(extension, tokens[3])) {
+      throw new IllegalArgumentException("Only PPM, PGM and PNM images can be saved as plain "
+          + "text, and only NetPBM images as binary.");
+    }
+    return tokens[3].equalsIgnoreCase("plain");
+  }
+
+  private static boolean allowsFormat(String extension, String option) {
+    if (option.equalsIgnoreCase("plain")) {
+      return extension.equals("ppm") || extension.equals("pgm") || extension.equals("pnm");
+    }
+    return option.equalsIgnoreCase("binary") && NetpbmCodec.handles(extension);
+  }
+
+  private static boolean sameFile(String first, String second) {
+    return Paths.get(first).toAbsolutePath().normalize()
+        .equals(Paths.get(second).toAbsolutePath().normalize());
+  }
+
+  private static String extensionOf(String filename) {
+    int dot = filename.lastIndexOf('.');
+    return dot < 0 ? "" : filename.substring(dot + 1).toLowerCase();
+  }
+
+  /**
+   * Tells whether a command from a position on reads an image before a load replaces it.
+   * Running another script counts as reading every image.
+   */
+  private boolean usedAfter(int index, String name) {
+    for (int i = index; i < commands.size(); i++) {
+      String[] tokens = commands.get(i).split(" ");
+      String command = tokens[0].toLowerCase();
+      if (command.equals("run") || command.equals("-file")) {
+        return true;
+      }
+      if (command.equals("load") && tokens.length == 3 && tokens[2].equals(name)) {
+        return false;
+      }
+      if (Arrays.asList(tokens).contains(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Chooses how many source pixels to step over in each direction while decoding.
+   *
+   * @param width  the width of the encoded image.
+   * @param height the height of the encoded image.
+   * @param target the size the image is needed at, or null for the full size.
+   * @return the subsampling step, 1 to keep every pixel.
+   */
+  public static int subsampling(int width, int height, Dimension target) {
+    if (target == null) {
+      return 1;
+    }
+    return Math.max(1, Math.min(width / (2 * target.width), height / (2 * target.height)));
+  }
+}
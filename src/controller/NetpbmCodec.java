@@ -0,0 +1,595 @@
+package controller;
+
+import java.awt.Dimension;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import model.ColorMatrix;
+import model.PixelImage;
+import model.RowExecutor;
+import model.StripSink;
+import model.StripSource;
+import model.TileSource;
+import model.TiledImage;
+
+/**
+ * Reads and writes NetPBM images: binary PPM (P6), binary PGM (P5) and PAM (P7), with the
+ * plain text P2 and P3 formats read through {@link PpmReader}.
+ *
+ * <p>Binary files are mapped into memory with {@link FileChannel#map} and their header is parsed
+ * in place. The samples follow at fixed offsets, so the rows are decoded in parallel bands
+ * straight from the mapping into the packed pixels. Samples wider than a byte are big-endian,
+ * and every maximum value other than 255 is scaled to 0 - 255 through a table.
+ *
+ * <p>Writing fills a direct buffer one row at a time and hands it to the channel whenever it
+ * is full. Images whose pixels are all grey, such as the results of the component operations,
+ * are written with one sample per pixel: as P5 for PPM and PGM files and as a GRAYSCALE PAM.
+ * Colour images saved as PGM are converted with the luma weights.
+ *
+ * <p>{@link StripReader} and {@link StripWriter} do the same a strip of rows at a time, for
+ * images that are streamed instead of being held in memory, and {@link TileReader} reads the
+ * tiles of a {@link TiledImage} from a binary file as they are needed.
+ */
+public class NetpbmCodec {
+  private static final int BUFFER_SIZE = 1 << 20;
+  static final ColorMatrix LUMA = ColorMatrix.greyscale(2126, 7152, 722, 10000);
+
+  private NetpbmCodec() {
+  }
+
+  /**
+   * Tells whether a file extension names a NetPBM format.
+   *
+   * @param extension the lower-case extension without the dot.
+   * @return true for ppm, pgm, pnm and pam.
+   */
+  public static boolean handles(String extension) {
+    switch (extension) {
+      case "ppm":
+      case "pgm":
+      case "pnm":
+      case "pam":
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Reads a NetPBM image file in any of the P2, P3, P5, P6 and P7 formats.
+   *
+   * @param filename the path of the file.
+   * @return the image.
+   * @throws IOException              if the file cannot be read.
+   * @throws IllegalArgumentException if the file is not a valid NetPBM image.
+   */
+  public static PixelImage read(String filename) throws IOException {
+    return read(filename, null);
+  }
+
+  /**
+   * Reads a NetPBM image file, keeping only every few pixels when the image is needed at a
+   * smaller size. Binary files are then only touched at the rows that are kept.
+   *
+   * @param filename the path of the file.
+   * @param target   the size the image is needed at, or null to keep every pixel.
+   * @return the image.
+   * @throws IOException              if the file cannot be read.
+   * @throws IllegalArgumentException if the file is not a valid NetPBM image.
+   */
+  public static PixelImage read(String filename, Dimension target) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("NetPBM file is too large to map: " + size);
+      }
+      MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      Header header = new Header(data);
+      if (header.isText()) {
+        channel.position(0);
+        return new PpmReader(channel).readImage(target);
+      }
+      header.parse(size);
+      if ((long) header.width * header.height > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Invalid NetPBM dimensions: " + header.width + " x "
+            + header.height);
+      }
+      int step = LoadPlanner.subsampling(header.width, header.height, target);
+      PixelImage image = new PixelImage((header.width + step - 1) / step,
+          (header.height + step - 1) / step);
+      decodeRows(data, header.position, header, step, image.getWidth(), image.getHeight(),
+          image.getWritablePixels(), 0);
+      return image;
+    }
+  }
+
+  /**
+   * Writes an image in the binary format that matches the file extension.
+   *
+   * @param filename the path of the file, ending in .ppm, .pnm, .pgm or .pam.
+   * @param image    the image to write.
+   * @throws IOException              if the file cannot be written.
+   * @throws IllegalArgumentException if the extension is not a NetPBM one.
+   */
+  public static void write(String filename, PixelImage image) throws IOException {
+    try (StripWriter writer = new StripWriter(filename, image.getWidth(), image.getHeight(),
+        isGrey(image))) {
+      for (int row = 0; row < image.getHeight(); row++) {
+        writer.write(image.getPixels(), image.rowOffset(row), 1);
+      }
+    }
+  }
+
+  private static String extensionOf(String filename) {
+    int dot = filename.lastIndexOf('.');
+    String extension = dot < 0 ? "" : filename.substring(dot + 1).toLowerCase();
+    if (!handles(extension)) {
+      throw new IllegalArgumentException("Unsupported NetPBM format: " + extension);
+    }
+    return extension;
+  }
+
+  private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private static boolean isGrey(PixelImage image) {
+    int[] pixels = image.getPixels();
+    for (int row = 0; row < image.getHeight(); row++) {
+      int offset = image.rowOffset(row);
+      for (int col = 0; col < image.getWidth(); col++) {
+        int rgb = pixels[offset + col];
+        if ((rgb >>> 8 & 0xFFFF) != (rgb & 0xFF) * 0x101) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Decodes rows of samples into consecutive rows of packed pixels, keeping every step-th row
+   * and column, in parallel bands. Each row starts a file row after the one before and holds
+   * the given number of kept pixels.
+   */
+  private static void decodeRows(ByteBuffer data, int start, Header header, int step,
+                                 int keptWidth, int rows, int[] pixels, int offset) {
+    int sampleBytes = header.sampleBytes;
+    int pixelBytes = step * header.depth * sampleBytes;
+    long rowBytes = header.rowBytes;
+    int[] scale = header.scale;
+    int maxValue = header.maxValue;
+    // Grey with or without alpha has one colour sample, RGB with or without alpha three
+    boolean grey = header.depth < 3;
+
+    RowExecutor.shared().forEachRow(rows, keptWidth, (startRow, endRow) -> {
+      for (int row = startRow; row < endRow; row++) {
+        int in = (int) (start + (long) row * step * rowBytes);
+        int out = offset + row * keptWidth;
+        for (int col = 0; col < keptWidth; col++) {
+          int sample = in + col * pixelBytes;
+          int red = scale[sample(data, sample, sampleBytes, maxValue)];
+          if (grey) {
+            pixels[out + col] = (red << 16) | (red << 8) | red;
+            continue;
+          }
+          int green = scale[sample(data, sample + sampleBytes, sampleBytes, maxValue)];
+          int blue = scale[sample(data, sample + 2 * sampleBytes, sampleBytes, maxValue)];
+          pixels[out + col] = (red << 16) | (green << 8) | blue;
+        }
+      }
+    });
+  }
+
+  private static int sample(ByteBuffer data, int index, int sampleBytes, int maxValue) {
+    int value = data.get(index) & 0xFF;
+    if (sampleBytes == 2) {
+      value = (value << 8) | (data.get(index + 1) & 0xFF);
+    }
+    if (value > maxValue) {
+      throw new IllegalArgumentException("Invalid NetPBM sample " + value
+          + " above the maximum value " + maxValue);
+    }
+    return value;
+  }
+
+  /**
+   * Reads a NetPBM file a strip of rows at a time, so that images far larger than the heap can
+   * be processed. Binary files map only the rows of the current strip; plain text files are
+   * parsed as the rows are asked for.
+   */
+  public static class StripReader implements StripSource, Closeable {
+    // Room for the longest header a binary file is expected to have
+    private static final int HEADER_SIZE = 1 << 16;
+    // The most bytes of samples mapped at once
+    private static final int MAPPING_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final Header header;
+    private PpmReader text;
+    private int next;
+
+    /**
+     * Opens a NetPBM file in any of the P2, P3, P5, P6 and P7 formats and reads its header.
+     *
+     * @param filename the path of the file.
+     * @throws IOException              if the file cannot be read.
+     * @throws IllegalArgumentException if the file is not a valid NetPBM image.
+     */
+    public StripReader(String filename) throws IOException {
+      channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+      try {
+        long size = channel.size();
+        header = new Header(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+            Math.min(size, HEADER_SIZE)));
+        if (header.isText()) {
+          rewind();
+        } else {
+          header.parse(size);
+        }
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    @Override
+    public int getWidth() {
+      return text != null ? text.getWidth() : header.width;
+    }
+
+    @Override
+    public int getHeight() {
+      return text != null ? text.getHeight() : header.height;
+    }
+
+    @Override
+    public boolean isGrey() {
+      return text != null ? text.isGrey() : header.depth < 3;
+    }
+
+    @Override
+    public void read(int[] pixels, int offset, int rows) throws IOException {
+      if (text != null) {
+        text.readRows(pixels, offset, rows);
+        return;
+      }
+      int width = header.width;
+      int rowsPerMapping = (int) Math.max(1, MAPPING_SIZE / header.rowBytes);
+      for (int done = 0; done < rows; ) {
+        int count = Math.min(rowsPerMapping, rows - done);
+        MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY,
+            header.position + next * header.rowBytes, count * header.rowBytes);
+        decodeRows(data, 0, header, 1, width, count, pixels, offset + done * width);
+        done += count;
+        next += count;
+      }
+    }
+
+    @Override
+    public void rewind() throws IOException {
+      next = 0;
+      if (header.isText()) {
+        channel.position(0);
+        text = new PpmReader(channel);
+        text.readHeader();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  /**
+   * Reads the tiles of a binary NetPBM file as they are first needed, mapping only the rows
+   * under each tile, so that an image with more pixels than an array can hold can still be
+   * opened as a {@link TiledImage} and read a region at a time.
+   */
+  public static class TileReader implements TileSource, Closeable {
+    // Room for the longest header a binary file is expected to have
+    private static final int HEADER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final Header header;
+
+    /**
+     * Opens a NetPBM file in any of the P5, P6 and P7 formats and reads its header.
+     *
+     * @param filename the path of the file.
+     * @throws IOException              if the file cannot be read.
+     * @throws IllegalArgumentException if the file is not a valid binary NetPBM image.
+     */
+    public TileReader(String filename) throws IOException {
+      channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+      try {
+        long size = channel.size();
+        header = new Header(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+            Math.min(size, HEADER_SIZE)));
+        if (header.isText()) {
+          throw new IllegalArgumentException("Plain text NetPBM files cannot be read by tile.");
+        }
+        header.parse(size);
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    public int getWidth() {
+      return header.width;
+    }
+
+    public int getHeight() {
+      return header.height;
+    }
+
+    /**
+     * Creates an image whose tiles are read from the file as they are needed. The reader must
+     * stay open for as long as tiles are read.
+     *
+     * @return the image.
+     */
+    public TiledImage toImage() {
+      return new TiledImage(header.width, header.height, this);
+    }
+
+    @Override
+    public void fill(int tileX, int tileY, PixelImage tile) {
+      long pixelBytes = (long) header.depth * header.sampleBytes;
+      long start = header.position + (long) tileY * TiledImage.TILE_SIZE * header.rowBytes
+          + (long) tileX * TiledImage.TILE_SIZE * pixelBytes;
+      long length = (tile.getHeight() - 1) * header.rowBytes + tile.getWidth() * pixelBytes;
+      if (length > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("NetPBM rows are too long to map a tile: "
+            + header.width);
+      }
+      try {
+        MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        decodeRows(data, 0, header, 1, tile.getWidth(), tile.getHeight(),
+            tile.getWritablePixels(), 0);
+      } catch (IOException e) {
+        throw new IllegalArgumentException("NetPBM tile could not be read: " + e.getMessage());
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  /**
+   * Writes a binary NetPBM file a strip of rows at a time, through a direct buffer that is
+   * handed to the channel whenever it is full.
+   */
+  public static class StripWriter implements StripSink, Closeable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int width;
+    private final boolean grey;
+
+    /**
+     * Creates a file in the binary format that matches its extension and writes its header.
+     *
+     * @param filename the path of the file, ending in .ppm, .pnm, .pgm or .pam.
+     * @param width    the width of the image.
+     * @param height   the height of the image.
+     * @param grey     whether every pixel is known to be grey; PGM files are always grey.
+     * @throws IOException              if the file cannot be written.
+     * @throws IllegalArgumentException if the extension is not a NetPBM one.
+     */
+    public StripWriter(String filename, int width, int height, boolean grey)
+        throws IOException {
+      String extension = extensionOf(filename);
+      this.width = width;
+      this.grey = grey || extension.equals("pgm");
+      int depth = this.grey ? 1 : 3;
+
+      String header;
+      if (extension.equals("pam")) {
+        header = "P7\nWIDTH " + width + "\nHEIGHT " + height + "\nDEPTH " + depth
+            + "\nMAXVAL 255\nTUPLTYPE " + (this.grey ? "GRAYSCALE" : "RGB") + "\nENDHDR\n";
+      } else {
+        header = (this.grey ? "P5\n" : "P6\n") + width + " " + height + "\n255\n";
+      }
+
+      channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE,
+          StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+      buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, width * depth));
+      buffer.put(header.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public void write(int[] pixels, int offset, int rows) throws IOException {
+      int rowSize = width * (grey ? 1 : 3);
+      for (int row = 0; row < rows; row++) {
+        if (buffer.remaining() < rowSize) {
+          flush(channel, buffer);
+        }
+        int start = offset + row * width;
+        for (int i = start; i < start + width; i++) {
+          int rgb = pixels[i];
+          if (!grey) {
+            buffer.put((byte) (rgb >>> 16));
+            buffer.put((byte) (rgb >>> 8));
+            buffer.put((byte) rgb);
+          } else if (PixelImage.red(rgb) == PixelImage.blue(rgb)
+              && PixelImage.green(rgb) == PixelImage.blue(rgb)) {
+            buffer.put((byte) rgb);
+          } else {
+            buffer.put((byte) LUMA.apply(rgb));
+          }
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        flush(channel, buffer);
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * The header of a binary NetPBM file, parsed in place from the start of the mapping.
+   */
+  private static class Header {
+    private final ByteBuffer data;
+    private final int format;
+    private int position;
+    private int width;
+    private int height;
+    private int depth;
+    private int maxValue;
+    private int sampleBytes;
+    private long rowBytes;
+    private int[] scale;
+
+    Header(ByteBuffer data) {
+      this.data = data;
+      if (data.limit() < 3 || data.get(0) != 'P') {
+        throw new IllegalArgumentException("Not a NetPBM file.");
+      }
+      this.format = data.get(1);
+      this.position = 2;
+    }
+
+    boolean isText() {
+      return format == '2' || format == '3';
+    }
+
+    /**
+     * Parses the header and checks that the file holds all the samples it announces.
+     */
+    void parse(long fileSize) {
+      switch (format) {
+        case '5':
+        case '6':
+          depth = format == '5' ? 1 : 3;
+          width = number();
+          height = number();
+          maxValue = number();
+          // Exactly one whitespace byte separates the header from the samples
+          position++;
+          break;
+        case '7':
+          parseTags();
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported NetPBM format: P" + (char) format);
+      }
+      if (width < 1 || height < 1) {
+        throw new IllegalArgumentException("Invalid NetPBM dimensions: " + width + " x "
+            + height);
+      }
+      if (maxValue < 1 || maxValue > 65535) {
+        throw new IllegalArgumentException("Invalid NetPBM maximum value: " + maxValue);
+      }
+      if (depth < 1 || depth > 4) {
+        throw new IllegalArgumentException("Unsupported PAM depth: " + depth);
+      }
+
+      sampleBytes = maxValue > 255 ? 2 : 1;
+      rowBytes = (long) width * depth * sampleBytes;
+      if (position + rowBytes * height > fileSize) {
+        throw new IllegalArgumentException("NetPBM file is truncated.");
+      }
+      scale = new int[maxValue + 1];
+      for (int value = 0; value <= maxValue; value++) {
+        scale[value] = value * 255 / maxValue;
+      }
+    }
+
+    private void parseTags() {
+      while (true) {
+        String tag = word();
+        switch (tag) {
+          case "ENDHDR":
+            skipLine();
+            return;
+          case "WIDTH":
+            width = number();
+            break;
+          case "HEIGHT":
+            height = number();
+            break;
+          case "DEPTH":
+            depth = number();
+            break;
+          case "MAXVAL":
+            maxValue = number();
+            break;
+          case "TUPLTYPE":
+            skipLine();
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown PAM header field: " + tag);
+        }
+      }
+    }
+
+    private int number() {
+      String word = word();
+      try {
+        return Integer.parseInt(word);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid number in NetPBM header: " + word);
+      }
+    }
+
+    /**
+     * Reads the next run of non-whitespace characters, skipping whitespace and comments, and
+     * leaves the position on the byte after it.
+     */
+    private String word() {
+      while (true) {
+        int c = byteAt(position);
+        if (c == '#') {
+          skipLine();
+        } else if (Character.isWhitespace(c)) {
+          position++;
+        } else {
+          break;
+        }
+      }
+      int begin = position;
+      while (position < data.limit() && !Character.isWhitespace(byteAt(position))) {
+        position++;
+      }
+      byte[] bytes = new byte[position - begin];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = data.get(begin + i);
+      }
+      return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private void skipLine() {
+      while (byteAt(position) != '\n') {
+        position++;
+      }
+      position++;
+    }
+
+    private int byteAt(int index) {
+      if (index >= data.limit()) {
+        throw new IllegalArgumentException("Unexpected end of NetPBM header.");
+      }
+      return data.get(index) & 0xFF;
+    }
+  }
+}
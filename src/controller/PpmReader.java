@@ -0,0 +1,261 @@
+package controller;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import model.PixelImage;
+
+/**
+ * Reads plain text (P3) PPM and (P2) PGM images straight into a {@link PixelImage}.
+ *
+ * <p>The file is read through a channel into one reusable byte buffer and the numbers are
+ * parsed byte by byte, so a sample costs a few comparisons and a multiply-add rather than a
+ * regular expression match and a boxed token. Comments, from a {@code #} to the end of the
+ * line, may appear wherever whitespace may. Sample values are scaled from the file's maximum
+ * value to 0 - 255 through a table built once per image. The header and the rows can also be
+ * read separately, so that a large image can be read a strip of rows at a time.
+ */
+public class PpmReader {
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final int END = -1;
+
+  private final ReadableByteChannel channel;
+  private final ByteBuffer buffer;
+  private final byte[] bytes;
+  private int position;
+  private int limit;
+  private int width;
+  private int height;
+  private int maxValue;
+  private boolean grey;
+  private int[] scale;
+
+  /**
+   * Constructs a reader over a channel positioned at the start of a PPM image.
+   *
+   * @param channel the channel to read from; the caller closes it.
+   */
+  public PpmReader(ReadableByteChannel channel) {
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    this.bytes = buffer.array();
+  }
+
+  /**
+   * Reads a PPM image file.
+   *
+   * @param filename the path of the file.
+   * @return the image.
+   * @throws IOException              if the file cannot be read.
+   * @throws IllegalArgumentException if the file is not a valid P2 or P3 image.
+   */
+  public static PixelImage read(String filename) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      return new PpmReader(channel).readImage();
+    }
+  }
+
+  /**
+   * Reads one image from the channel.
+   *
+   * @return the image.
+   * @throws IOException              if the channel cannot be read.
+   * @throws IllegalArgumentException if the data is not a valid P2 or P3 image.
+   */
+  public PixelImage readImage() throws IOException {
+    return readImage(null);
+  }
+
+  /**
+   * Reads one image from the channel, keeping only every few pixels when the image is needed at
+   * a smaller size. Every sample is still parsed, but the skipped ones are never stored.
+   *
+   * @param target the size the image is needed at, or null to keep every pixel.
+   * @return the image.
+   * @throws IOException              if the channel cannot be read.
+   * @throws IllegalArgumentException if the data is not a valid P2 or P3 image.
+   */
+  public PixelImage readImage(Dimension target) throws IOException {
+    readHeader();
+    if ((long) width * height > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid PPM dimensions: " + width + " x " + height);
+    }
+
+    int step = LoadPlanner.subsampling(width, height, target);
+    PixelImage image = new PixelImage((width + step - 1) / step, (height + step - 1) / step);
+    int[] pixels = image.getWritablePixels();
+    if (step == 1) {
+      readRows(pixels, 0, height);
+      return image;
+    }
+    int[] row = new int[width];
+    for (int y = 0; y < height; y++) {
+      readRows(row, 0, 1);
+      if (y % step == 0) {
+        int out = image.rowOffset(y / step);
+        for (int x = 0; x < width; x += step) {
+          pixels[out + x / step] = row[x];
+        }
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Reads the header of an image from the channel, leaving the channel at its first sample.
+   *
+   * @throws IOException              if the channel cannot be read.
+   * @throws IllegalArgumentException if the data does not start with a valid P2 or P3 header.
+   */
+  public void readHeader() throws IOException {
+    int first = skipSeparators();
+    int second = next();
+    int after = next();
+    if (first != 'P' || (second != '2' && second != '3')
+        || !(isSeparator(after) || after == '#')) {
+      throw new IllegalArgumentException("Invalid PPM format: expected P2 or P3");
+    }
+    grey = second == '2';
+    if (after == '#') {
+      skipComment();
+    }
+
+    width = readNumber();
+    height = readNumber();
+    maxValue = readNumber();
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Invalid PPM dimensions: " + width + " x " + height);
+    }
+    if (maxValue < 1 || maxValue > 65535) {
+      throw new IllegalArgumentException("Invalid PPM maximum value: " + maxValue);
+    }
+
+    scale = new int[maxValue + 1];
+    for (int value = 0; value <= maxValue; value++) {
+      scale[value] = value * 255 / maxValue;
+    }
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Tells whether the image read is a grey (P2) image.
+   *
+   * @return true for P2 images, false for P3 images.
+   */
+  public boolean isGrey() {
+    return grey;
+  }
+
+  /**
+   * Reads the next rows of the image, after {@link #readHeader()}.
+   *
+   * @param pixels the buffer to fill with packed pixels, one row after the other.
+   * @param offset the index of the first pixel to fill.
+   * @param rows   the number of rows to read.
+   * @throws IOException              if the channel cannot be read.
+   * @throws IllegalArgumentException if the data is not a valid sample.
+   */
+  public void readRows(int[] pixels, int offset, int rows) throws IOException {
+    int end = offset + rows * width;
+    for (int i = offset; i < end; i++) {
+      if (grey) {
+        int value = scale[readSample(maxValue)];
+        pixels[i] = (value << 16) | (value << 8) | value;
+        continue;
+      }
+      int red = readSample(maxValue);
+      int green = readSample(maxValue);
+      int blue = readSample(maxValue);
+      pixels[i] = (scale[red] << 16) | (scale[green] << 8) | scale[blue];
+    }
+  }
+
+  private int readSample(int maxValue) throws IOException {
+    int value = readNumber();
+    if (value > maxValue) {
+      throw new IllegalArgumentException("Invalid input in PPM file: " + value
+          + " is above the maximum value " + maxValue);
+    }
+    return value;
+  }
+
+  /**
+   * Reads a non-negative decimal number and the separator after it.
+   */
+  private int readNumber() throws IOException {
+    int c = skipSeparators();
+    if (c < '0' || c > '9') {
+      throw new IllegalArgumentException(c == END ? "Unexpected end of PPM file"
+          : "Invalid input in PPM file: unexpected '" + (char) c + "'");
+    }
+    int value = 0;
+    do {
+      value = value * 10 + (c - '0');
+      if (value > 0xFFFFFFF) {
+        throw new IllegalArgumentException("Invalid input in PPM file: number too large");
+      }
+      c = next();
+    } while (c >= '0' && c <= '9');
+
+    if (c == '#') {
+      skipComment();
+    } else if (c != END && !isSeparator(c)) {
+      throw new IllegalArgumentException("Invalid input in PPM file: unexpected '" + (char) c
+          + "'");
+    }
+    return value;
+  }
+
+  /**
+   * Skips whitespace and comments and returns the first byte after them.
+   */
+  private int skipSeparators() throws IOException {
+    int c = next();
+    while (isSeparator(c) || c == '#') {
+      if (c == '#') {
+        skipComment();
+      }
+      c = next();
+    }
+    return c;
+  }
+
+  private void skipComment() throws IOException {
+    int c = next();
+    while (c != '\n' && c != '\r' && c != END) {
+      c = next();
+    }
+  }
+
+  private static boolean isSeparator(int c) {
+    return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0x0B;
+  }
+
+  private int next() throws IOException {
+    if (position == limit) {
+      buffer.clear();
+      int read;
+      do {
+        read = channel.read(buffer);
+      } while (read == 0);
+      if (read < 0) {
+        return END;
+      }
+      position = 0;
+      limit = read;
+    }
+    return bytes[position++] & 0xFF;
+  }
+}
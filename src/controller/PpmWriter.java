@@ -0,0 +1,207 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import model.PixelImage;
+import model.RowExecutor;
+import model.StripSink;
+
+/**
+ * Writes plain text PPM (P3) and PGM (P2) images, one pixel per line. A PGM file holds one
+ * sample per pixel: the pixel's value when it is grey, and its luma otherwise.
+ *
+ * <p>The text of every sample value comes from a table of digits built once, so a pixel costs a
+ * few byte copies rather than three string conversions. The rows are formatted in chunks of a
+ * few hundred kilobytes into reusable byte arrays: a batch of chunks is formatted in parallel on
+ * the executor and then written to the channel in order, and the next batch reuses the arrays.
+ * An image can also be written a strip of rows at a time, after its header.
+ */
+public class PpmWriter implements StripSink {
+  private static final int CHUNK_SIZE = 1 << 18;
+  // The longest pixel is "255 255 255\n"
+  private static final int MAX_PIXEL_SIZE = 12;
+  private static final byte[] DIGITS = new byte[256 * 4];
+  private static final byte[] LENGTHS = new byte[256];
+
+  static {
+    for (int value = 0; value < 256; value++) {
+      byte[] text = Integer.toString(value).getBytes(StandardCharsets.US_ASCII);
+      System.arraycopy(text, 0, DIGITS, value * 4, text.length);
+      LENGTHS[value] = (byte) text.length;
+    }
+  }
+
+  private final WritableByteChannel channel;
+  private final RowExecutor executor;
+  private int width;
+  private boolean grey;
+  private byte[][] buffers;
+  private int[] lengths;
+
+  /**
+   * Constructs a writer onto a channel.
+   *
+   * @param channel  the channel to write to; the caller closes it.
+   * @param executor the executor used to format chunks of rows.
+   */
+  public PpmWriter(WritableByteChannel channel, RowExecutor executor) {
+    this.channel = channel;
+    this.executor = executor;
+  }
+
+  /**
+   * Writes an image to a P3 PPM file, replacing the file if it exists.
+   *
+   * @param filename the path of the file.
+   * @param image    the image to write.
+   * @throws IOException if the file cannot be written.
+   */
+  public static void write(String filename, PixelImage image) throws IOException {
+    write(filename, image, false);
+  }
+
+  /**
+   * Writes an image to a P3 PPM or P2 PGM file, replacing the file if it exists.
+   *
+   * @param filename the path of the file.
+   * @param image    the image to write.
+   * @param grey     true to write a PGM file.
+   * @throws IOException if the file cannot be written.
+   */
+  public static void write(String filename, PixelImage image, boolean grey)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      new PpmWriter(channel, RowExecutor.shared()).writeImage(image, grey);
+    }
+  }
+
+  /**
+   * Writes one image to the channel as a P3 PPM.
+   *
+   * @param image the image to write.
+   * @throws IOException if the channel cannot be written.
+   */
+  public void writeImage(PixelImage image) throws IOException {
+    writeImage(image, false);
+  }
+
+  /**
+   * Writes one image to the channel.
+   *
+   * @param image the image to write.
+   * @param grey  true to write a P2 PGM, false for a P3 PPM.
+   * @throws IOException if the channel cannot be written.
+   */
+  public void writeImage(PixelImage image, boolean grey) throws IOException {
+    writeHeader(image.getWidth(), image.getHeight(), grey);
+    writeRows(image.getPixels(), 0, image.getStride(), image.getHeight());
+  }
+
+  /**
+   * Writes the header of a P3 PPM image, before its rows are written through {@link #write}.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @throws IOException if the channel cannot be written.
+   */
+  public void writeHeader(int width, int height) throws IOException {
+    writeHeader(width, height, false);
+  }
+
+  /**
+   * Writes the header of an image, before its rows are written through {@link #write}.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @param grey   true for a P2 PGM, false for a P3 PPM.
+   * @throws IOException if the channel cannot be written.
+   */
+  public void writeHeader(int width, int height, boolean grey) throws IOException {
+    this.width = width;
+    this.grey = grey;
+    this.buffers = null;
+    writeFully(ByteBuffer.wrap(((grey ? "P2\n" : "P3\n") + width + " " + height + "\n255\n")
+        .getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  @Override
+  public void write(int[] pixels, int offset, int rows) throws IOException {
+    writeRows(pixels, offset, width, rows);
+  }
+
+  private void writeRows(int[] pixels, int offset, int stride, int height) throws IOException {
+    int rowsPerChunk = Math.max(1, CHUNK_SIZE / (width * MAX_PIXEL_SIZE));
+    int chunks = (height + rowsPerChunk - 1) / rowsPerChunk;
+    if (buffers == null) {
+      buffers = new byte[2 * executor.getParallelism()][];
+      lengths = new int[buffers.length];
+    }
+
+    for (int first = 0; first < chunks; first += buffers.length) {
+      int firstChunk = first;
+      int count = Math.min(buffers.length, chunks - first);
+      executor.forEachRow(count, rowsPerChunk * width, (startChunk, endChunk) -> {
+        for (int chunk = startChunk; chunk < endChunk; chunk++) {
+          if (buffers[chunk] == null) {
+            buffers[chunk] = new byte[rowsPerChunk * width * MAX_PIXEL_SIZE];
+          }
+          int startRow = (firstChunk + chunk) * rowsPerChunk;
+          int endRow = Math.min(height, startRow + rowsPerChunk);
+          lengths[chunk] = format(pixels, offset + startRow * stride, stride, width,
+              endRow - startRow, grey, buffers[chunk]);
+        }
+      });
+      for (int chunk = 0; chunk < count; chunk++) {
+        writeFully(ByteBuffer.wrap(buffers[chunk], 0, lengths[chunk]));
+      }
+    }
+  }
+
+  /**
+   * Formats rows as text into a buffer and returns the number of bytes used.
+   */
+  private static int format(int[] pixels, int offset, int stride, int width, int rows,
+                            boolean grey, byte[] out) {
+    int length = 0;
+    for (int row = 0; row < rows; row++) {
+      int start = offset + row * stride;
+      for (int col = 0; col < width; col++) {
+        int rgb = pixels[start + col];
+        if (grey) {
+          boolean isGrey = PixelImage.red(rgb) == PixelImage.blue(rgb)
+              && PixelImage.green(rgb) == PixelImage.blue(rgb);
+          int value = isGrey ? rgb : NetpbmCodec.LUMA.apply(rgb);
+          length = sample(out, length, value & 0xFF, '\n');
+          continue;
+        }
+        length = sample(out, length, (rgb >>> 16) & 0xFF, ' ');
+        length = sample(out, length, (rgb >>> 8) & 0xFF, ' ');
+        length = sample(out, length, rgb & 0xFF, '\n');
+      }
+    }
+    return length;
+  }
+
+  private static int sample(byte[] out, int length, int value, char separator) {
+    int digits = LENGTHS[value];
+    int from = value * 4;
+    for (int i = 0; i < digits; i++) {
+      out[length + i] = DIGITS[from + i];
+    }
+    out[length + digits] = (byte) separator;
+    return length + digits + 1;
+  }
+
+  private void writeFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package controller;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import model.PixelImage;
+import model.RowExecutor;
+
+/**
+ * Reads images decoded by {@link ImageIO}, such as PNG and JPEG files, into a
+ * {@link PixelImage}.
+ *
+ * <p>The common image types are copied straight from the raster's data buffer: interleaved
+ * bytes (TYPE_3BYTE_BGR and TYPE_4BYTE_ABGR, which is what the PNG and JPEG readers produce for
+ * colour images), packed ints (TYPE_INT_RGB and TYPE_INT_ARGB) and single grey bytes
+ * (TYPE_BYTE_GRAY). Any other type is converted with the bulk {@code getRGB} that fills a whole
+ * band of rows at once. The rows are copied in parallel bands, and alpha is ignored.
+ *
+ * <p>Grey bytes are taken as they are stored. Going through {@code getRGB} would treat them as
+ * linear grey and brighten the mid-tones on their way to sRGB.
+ */
+public class RasterReader {
+
+  private RasterReader() {
+  }
+
+  /**
+   * Reads an image file in any format that ImageIO can decode.
+   *
+   * @param filename the path of the file.
+   * @return the image.
+   * @throws IOException              if the file cannot be read.
+   * @throws IllegalArgumentException if no ImageIO reader understands the file.
+   */
+  public static PixelImage read(String filename) throws IOException {
+    BufferedImage image = ImageIO.read(new File(filename));
+    if (image == null) {
+      throw new IllegalArgumentException("Unreadable image file: " + filename);
+    }
+    return fromBufferedImage(image);
+  }
+
+  /**
+   * Reads an image file, letting the decoder keep only every few pixels when the image is needed
+   * at a smaller size. The skipped pixels are never stored, so a large image is never held in
+   * full.
+   *
+   * @param filename the path of the file.
+   * @param target   the size the image is needed at, or null to keep every pixel.
+   * @return the image.
+   * @throws IOException              if the file cannot be read.
+   * @throws IllegalArgumentException if no ImageIO reader understands the file.
+   */
+  public static PixelImage read(String filename, Dimension target) throws IOException {
+    if (target == null) {
+      return read(filename);
+    }
+    File file = new File(filename);
+    if (!file.canRead()) {
+      throw new IIOException("Can't read input file!");
+    }
+    try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+      if (!readers.hasNext()) {
+        throw new IllegalArgumentException("Unreadable image file: " + filename);
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(input, true, true);
+        ImageReadParam param = reader.getDefaultReadParam();
+        int step = LoadPlanner.subsampling(reader.getWidth(0), reader.getHeight(0), target);
+        param.setSourceSubsampling(step, step, 0, 0);
+        return fromBufferedImage(reader.read(0, param));
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  /**
+   * Copies the pixels of a decoded image.
+   *
+   * @param image the decoded image.
+   * @return a new image with the same pixels, owned by the caller.
+   */
+  public static PixelImage fromBufferedImage(BufferedImage image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    PixelImage result = new PixelImage(width, height);
+    int[] pixels = result.getWritablePixels();
+    WritableRaster raster = image.getRaster();
+    RowExecutor executor = RowExecutor.shared();
+
+    switch (image.getType()) {
+      case BufferedImage.TYPE_3BYTE_BGR:
+      case BufferedImage.TYPE_4BYTE_ABGR:
+      case BufferedImage.TYPE_BYTE_GRAY: {
+        ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+        DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+        byte[] data = buffer.getData();
+        int pixelStride = model.getPixelStride();
+        int scanlineStride = model.getScanlineStride();
+        int origin = buffer.getOffset() - raster.getSampleModelTranslateY() * scanlineStride
+            - raster.getSampleModelTranslateX() * pixelStride;
+        int[] bands = model.getBandOffsets();
+        boolean grey = image.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        executor.forEachRow(height, width, (startRow, endRow) -> {
+          for (int row = startRow; row < endRow; row++) {
+            int in = origin + row * scanlineStride;
+            int out = result.rowOffset(row);
+            for (int col = 0; col < width; col++, in += pixelStride) {
+              if (grey) {
+                int value = data[in] & 0xFF;
+                pixels[out + col] = (value << 16) | (value << 8) | value;
+              } else {
+                pixels[out + col] = (data[in + bands[0]] & 0xFF) << 16
+                    | (data[in + bands[1]] & 0xFF) << 8 | (data[in + bands[2]] & 0xFF);
+              }
+            }
+          }
+        });
+        break;
+      }
+      case BufferedImage.TYPE_INT_RGB:
+      case BufferedImage.TYPE_INT_ARGB: {
+        SinglePixelPackedSampleModel model =
+            (SinglePixelPackedSampleModel) raster.getSampleModel();
+        DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+        int[] data = buffer.getData();
+        int scanlineStride = model.getScanlineStride();
+        int origin = buffer.getOffset() - raster.getSampleModelTranslateY() * scanlineStride
+            - raster.getSampleModelTranslateX();
+        executor.forEachRow(height, width, (startRow, endRow) -> {
+          for (int row = startRow; row < endRow; row++) {
+            int in = origin + row * scanlineStride;
+            int out = result.rowOffset(row);
+            for (int col = 0; col < width; col++) {
+              pixels[out + col] = data[in + col] & 0xFFFFFF;
+            }
+          }
+        });
+        break;
+      }
+      default:
+        executor.forEachRow(height, width, (startRow, endRow) -> {
+          int out = result.rowOffset(startRow);
+          image.getRGB(0, startRow, width, endRow - startRow, pixels, out, width);
+          for (int i = out; i < out + (endRow - startRow) * width; i++) {
+            pixels[i] &= 0xFFFFFF;
+          }
+        });
+        break;
+    }
+    return result;
+  }
+}
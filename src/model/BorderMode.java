@@ -0,0 +1,69 @@
+package model;
+
+/**
+ * Describes how a convolution treats the neighbourhood of pixels near the image edge.
+ */
+public enum BorderMode {
+
+  /**
+   * Pixels closer to the edge than the kernel radius are not filtered and stay black.
+   */
+  BLACK,
+
+  /**
+   * Pixels outside the image repeat the nearest edge pixel.
+   */
+  CLAMP,
+
+  /**
+   * Pixels outside the image mirror the image around the edge pixel.
+   */
+  REFLECT,
+
+  /**
+   * Pixels outside the image come from the opposite edge.
+   */
+  WRAP;
+
+  /**
+   * Maps a possibly out-of-range coordinate onto the image.
+   *
+   * @param index  the coordinate, which may lie outside the image.
+   * @param length the size of the image along the coordinate.
+   * @return a coordinate between 0 and length - 1.
+   */
+  public int map(int index, int length) {
+    if (index >= 0 && index < length) {
+      return index;
+    }
+    switch (this) {
+      case WRAP:
+        return ((index % length) + length) % length;
+      case REFLECT:
+        if (length == 1) {
+          return 0;
+        }
+        int period = 2 * length - 2;
+        int folded = ((index % period) + period) % period;
+        return folded < length ? folded : period - folded;
+      default:
+        return Math.max(0, Math.min(index, length - 1));
+    }
+  }
+
+  /**
+   * Finds the border mode with the given name, ignoring case.
+   *
+   * @param name the name of the border mode.
+   * @return the border mode.
+   * @throws IllegalArgumentException if there is no border mode with that name.
+   */
+  public static BorderMode fromName(String name) {
+    for (BorderMode mode : values()) {
+      if (mode.name().equalsIgnoreCase(name)) {
+        return mode;
+      }
+    }
+    throw new IllegalArgumentException("Unknown border mode: " + name);
+  }
+}
@@ -0,0 +1,42 @@
+package model;
+
+/**
+ * Turns weighted sums into channel values: divides by a fixed positive divisor, truncating,
+ * and clamps the quotient to 0 - 255. Negative sums always clamp to 0, so only non-negative
+ * sums are divided, and that is done with a multiplication by a precomputed reciprocal and a
+ * shift instead of an integer division. The reciprocal is exact for every sum below 2^31.
+ *
+ * <p>The computation is straight-line integer code, so loops that call it stay free of
+ * branches and divisions and remain candidates for the JIT's loop vectorizer.
+ */
+final class ChannelDivider {
+  private final long reciprocal;
+  private final int shift;
+
+  /**
+   * Constructs a divider for the given divisor.
+   *
+   * @param divisor the positive divisor.
+   * @throws IllegalArgumentException if the divisor is not positive.
+   */
+  ChannelDivider(int divisor) {
+    if (divisor <= 0) {
+      throw new IllegalArgumentException("Divisor must be positive.");
+    }
+    // floor(sum / divisor) == (sum * reciprocal) >>> shift for every 0 <= sum < 2^31
+    int bits = 32 - Integer.numberOfLeadingZeros(divisor - 1);
+    this.shift = 31 + bits;
+    this.reciprocal = (1L << shift) / divisor + 1;
+  }
+
+  /**
+   * Divides a weighted sum and clamps it to a channel value.
+   *
+   * @param sum the weighted sum.
+   * @return the quotient clamped to 0 - 255.
+   */
+  int apply(int sum) {
+    long quotient = (Math.max(sum, 0) * reciprocal) >>> shift;
+    return (int) Math.min(quotient, 255);
+  }
+}
@@ -0,0 +1,124 @@
+package model;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A point operation compiled into one 256-entry lookup table per colour channel.
+ * Operations whose output channel value depends only on the same input channel value, such as
+ * brightening, colour correction offsets and levels adjustment, are evaluated once for every
+ * possible value, so applying them costs three table loads per pixel whatever the arithmetic.
+ *
+ * <p>The entries are stored already shifted into their place in a packed 0xRRGGBB pixel, so a
+ * pixel is mapped by or-ing its three entries together. Tables compose with
+ * {@link #andThen(ChannelLut)}, which turns a chain of point operations into a single pass.
+ * As a {@link PixelStage} the tables also run inside a pending {@link LazyImage}.
+ */
+public class ChannelLut implements PixelStage {
+  private static final int SIZE = 256;
+
+  private final int[] red;
+  private final int[] green;
+  private final int[] blue;
+
+  private ChannelLut(int[] red, int[] green, int[] blue) {
+    this.red = red;
+    this.green = green;
+    this.blue = blue;
+  }
+
+  /**
+   * Compiles a point operation with a separate function per channel.
+   * Function results are clamped to 0 - 255.
+   *
+   * @param red   the function applied to red values.
+   * @param green the function applied to green values.
+   * @param blue  the function applied to blue values.
+   * @return the compiled tables.
+   */
+  public static ChannelLut of(IntUnaryOperator red, IntUnaryOperator green,
+                              IntUnaryOperator blue) {
+    return new ChannelLut(table(red, 16), table(green, 8), table(blue, 0));
+  }
+
+  /**
+   * Compiles a point operation that treats every channel alike.
+   *
+   * @param function the function applied to every channel value.
+   * @return the compiled tables.
+   */
+  public static ChannelLut uniform(IntUnaryOperator function) {
+    return of(function, function, function);
+  }
+
+  /**
+   * Compiles a per-channel offset whose results are clamped to 0 - 255.
+   *
+   * @param redOffset   the amount added to red values.
+   * @param greenOffset the amount added to green values.
+   * @param blueOffset  the amount added to blue values.
+   * @return the compiled tables.
+   */
+  public static ChannelLut offset(int redOffset, int greenOffset, int blueOffset) {
+    return of(v -> v + redOffset, v -> v + greenOffset, v -> v + blueOffset);
+  }
+
+  private static int[] table(IntUnaryOperator function, int shift) {
+    int[] table = new int[SIZE];
+    for (int value = 0; value < SIZE; value++) {
+      int mapped = Math.max(0, Math.min(function.applyAsInt(value), 255));
+      table[value] = mapped << shift;
+    }
+    return table;
+  }
+
+  /**
+   * Composes this operation with one applied to its results.
+   *
+   * @param next the operation applied after this one.
+   * @return the tables of both operations in one.
+   */
+  public ChannelLut andThen(ChannelLut next) {
+    int[] r = new int[SIZE];
+    int[] g = new int[SIZE];
+    int[] b = new int[SIZE];
+    for (int value = 0; value < SIZE; value++) {
+      r[value] = next.red[red[value] >>> 16];
+      g[value] = next.green[green[value] >>> 8];
+      b[value] = next.blue[blue[value]];
+    }
+    return new ChannelLut(r, g, b);
+  }
+
+  /**
+   * Maps one channel value.
+   *
+   * @param channel the channel index, 0 for red, 1 for green and 2 for blue.
+   * @param value   the channel value between 0 and 255.
+   * @return the mapped value.
+   */
+  public int lookup(int channel, int value) {
+    switch (channel) {
+      case 0:
+        return red[value] >>> 16;
+      case 1:
+        return green[value] >>> 8;
+      case 2:
+        return blue[value];
+      default:
+        throw new IllegalArgumentException("Invalid channel: " + channel);
+    }
+  }
+
+  @Override
+  public int apply(int rgb) {
+    return red[(rgb >>> 16) & 0xFF] | green[(rgb >>> 8) & 0xFF] | blue[rgb & 0xFF];
+  }
+
+  @Override
+  public void apply(int[] pixels, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      int rgb = pixels[i];
+      pixels[i] = red[(rgb >>> 16) & 0xFF] | green[(rgb >>> 8) & 0xFF] | blue[rgb & 0xFF];
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package model;
+
+/**
+ * A 3x3 colour matrix with integer weights and a common divisor, applied to every pixel as
+ * {@code out[o] = clamp((w[o][0] * red + w[o][1] * green + w[o][2] * blue) / divisor)} with the
+ * quotient truncated. Sepia, luma, intensity and single-channel greyscale are all such matrices,
+ * as is any channel mixer read from a file.
+ *
+ * <p>Every weight is expanded into a 256-entry table of its products with the channel values,
+ * so a pixel costs nine table loads and additions, and the division goes through a
+ * {@link ChannelDivider}. Matrices whose three rows are equal produce grey and compute one sum.
+ */
+public class ColorMatrix implements PixelStage {
+  private static final int SIZE = 256;
+
+  private final int[] weights;
+  private final int divisor;
+  private final boolean grey;
+  private final int[] products;
+  private final ChannelDivider divider;
+
+  /**
+   * Constructs a colour matrix from its weights in row-major order, one row per output channel.
+   *
+   * @param weights the nine weights in row-major order.
+   * @param divisor the positive divisor applied to each weighted sum.
+   * @throws IllegalArgumentException if the weights or divisor are invalid.
+   */
+  public ColorMatrix(int[] weights, int divisor) {
+    if (weights.length != 9) {
+      throw new IllegalArgumentException("A colour matrix must have 3 x 3 weights.");
+    }
+    if (divisor <= 0) {
+      throw new IllegalArgumentException("Colour matrix divisor must be positive.");
+    }
+    for (int row = 0; row < 3; row++) {
+      long magnitude = 0;
+      for (int col = 0; col < 3; col++) {
+        magnitude += Math.abs((long) weights[row * 3 + col]);
+      }
+      if (magnitude * 255 > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Colour matrix weights are too large.");
+      }
+    }
+    this.weights = weights.clone();
+    this.divisor = divisor;
+    this.grey = weights[0] == weights[3] && weights[3] == weights[6]
+        && weights[1] == weights[4] && weights[4] == weights[7]
+        && weights[2] == weights[5] && weights[5] == weights[8];
+
+    this.products = new int[9 * SIZE];
+    for (int w = 0; w < 9; w++) {
+      for (int value = 0; value < SIZE; value++) {
+        products[w * SIZE + value] = weights[w] * value;
+      }
+    }
+    this.divider = new ChannelDivider(divisor);
+  }
+
+  /**
+   * Constructs a matrix that turns every pixel grey, with the same weights for each output.
+   *
+   * @param red     the weight of the red channel.
+   * @param green   the weight of the green channel.
+   * @param blue    the weight of the blue channel.
+   * @param divisor the positive divisor applied to the weighted sum.
+   * @return the colour matrix.
+   */
+  public static ColorMatrix greyscale(int red, int green, int blue, int divisor) {
+    return new ColorMatrix(new int[]{red, green, blue, red, green, blue, red, green, blue},
+        divisor);
+  }
+
+  /**
+   * Parses a colour matrix from text with three rows of three whitespace separated weights,
+   * in the same format as a kernel file, so decimal weights are kept exact.
+   *
+   * @param text the matrix text.
+   * @return the colour matrix.
+   * @throws IllegalArgumentException if the text is not a valid 3x3 matrix.
+   */
+  public static ColorMatrix parse(String text) {
+    Kernel matrix = Kernel.parse(text);
+    if (matrix.getWidth() != 3 || matrix.getHeight() != 3) {
+      throw new IllegalArgumentException("A colour matrix must have 3 rows of 3 weights.");
+    }
+    return new ColorMatrix(matrix.getWeights(), matrix.getDivisor());
+  }
+
+  public int getDivisor() {
+    return divisor;
+  }
+
+  public int getWeight(int row, int col) {
+    return weights[row * 3 + col];
+  }
+
+  @Override
+  public int apply(int rgb) {
+    int red = (rgb >>> 16) & 0xFF;
+    int green = (rgb >>> 8) & 0xFF;
+    int blue = rgb & 0xFF;
+    int newRed = divider.apply(products[red] + products[SIZE + green]
+        + products[2 * SIZE + blue]);
+    int newGreen = divider.apply(products[3 * SIZE + red] + products[4 * SIZE + green]
+        + products[5 * SIZE + blue]);
+    int newBlue = divider.apply(products[6 * SIZE + red] + products[7 * SIZE + green]
+        + products[8 * SIZE + blue]);
+    return (newRed << 16) | (newGreen << 8) | newBlue;
+  }
+
+  @Override
+  public void apply(int[] pixels, int offset, int length) {
+    int[] p = products;
+    if (grey) {
+      for (int i = offset; i < offset + length; i++) {
+        int rgb = pixels[i];
+        int value = divider.apply(p[(rgb >>> 16) & 0xFF] + p[SIZE + ((rgb >>> 8) & 0xFF)]
+            + p[2 * SIZE + (rgb & 0xFF)]);
+        pixels[i] = (value << 16) | (value << 8) | value;
+      }
+      return;
+    }
+    for (int i = offset; i < offset + length; i++) {
+      pixels[i] = apply(pixels[i]);
+    }
+  }
+}
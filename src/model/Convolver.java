@@ -0,0 +1,286 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Applies convolution kernels of any odd size to packed images using integer arithmetic.
+ * Source rows are unpacked once into planar red/green/blue lines kept in a small ring of
+ * kernel-height rows, so every row of the source is decoded a single time per band and the
+ * inner loops are plain multiply-adds over int arrays.
+ *
+ * <p>Separable kernels run as two one-dimensional passes: each source row is filtered
+ * horizontally as it enters the ring and the ring is then combined vertically, which costs
+ * width + height multiply-adds per channel instead of width * height. The weighted sums are
+ * divided and clamped by a {@link ChannelDivider}, so the output loop has no divisions.
+ *
+ * <p>Edges follow a {@link BorderMode}. Except in {@link BorderMode#BLACK} mode every unpacked
+ * line is padded by the kernel radius on both sides, with the left and right strips filled
+ * separately and rows above and below the image mapped onto the image, so the inner loops run
+ * over the whole row without any boundary checks.
+ *
+ * <p>Kernels that are not separable cost width * height multiply-adds per pixel, so from
+ * {@code image.fft.threshold} weights upwards they are handed to {@link FourierConvolver},
+ * whose cost does not depend on the kernel size. The default of 100 sits where the two paths
+ * were measured to cross over, between 9x9 and 11x11 kernels.
+ */
+public class Convolver {
+  private static final int DEFAULT_FOURIER_THRESHOLD = 100;
+
+  private final RowExecutor executor;
+  private final FourierConvolver fourier;
+  private final int fourierThreshold;
+
+  /**
+   * Constructs a convolver that spreads its rows over the given executor.
+   *
+   * @param executor the executor used to process row bands.
+   */
+  public Convolver(RowExecutor executor) {
+    this(executor, Integer.getInteger("image.fft.threshold", DEFAULT_FOURIER_THRESHOLD));
+  }
+
+  /**
+   * Constructs a convolver that hands kernels with at least the given number of weights to the
+   * Fourier path.
+   *
+   * @param executor         the executor used to process row bands.
+   * @param fourierThreshold the smallest kernel area convolved through the FFT.
+   */
+  public Convolver(RowExecutor executor, int fourierThreshold) {
+    this.executor = executor;
+    this.fourier = new FourierConvolver(executor);
+    this.fourierThreshold = fourierThreshold;
+  }
+
+  /**
+   * Convolves an image with a kernel, leaving the pixels near the edge black.
+   *
+   * @param source the image to filter.
+   * @param kernel the kernel to apply.
+   * @return the filtered image.
+   */
+  public PixelImage convolve(PixelImage source, Kernel kernel) {
+    return convolve(source, kernel, BorderMode.BLACK);
+  }
+
+  /**
+   * Convolves an image with a kernel into a new image of the same size.
+   *
+   * @param source the image to filter.
+   * @param kernel the kernel to apply.
+   * @param border how pixels near the edge are filtered.
+   * @return the filtered image.
+   */
+  public PixelImage convolve(PixelImage source, Kernel kernel, BorderMode border) {
+    if (!kernel.isSeparable() && kernel.getWidth() * kernel.getHeight() >= fourierThreshold) {
+      return fourier.convolve(source, kernel, border);
+    }
+
+    int width = source.getWidth();
+    int height = source.getHeight();
+    PixelImage result = new PixelImage(width, height);
+    int[] dst = result.getWritablePixels();
+    Pass pass = new Pass(source, kernel, border);
+
+    executor.forEachRow(height, width, (startRow, endRow) -> {
+      if (kernel.isSeparable()) {
+        pass.separableBand(result, dst, startRow, endRow);
+      } else {
+        pass.directBand(result, dst, startRow, endRow);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * The geometry of one convolution: which rows and columns are written and how the
+   * unpacked lines are padded.
+   */
+  private static class Pass {
+    private final PixelImage source;
+    private final Kernel kernel;
+    private final BorderMode border;
+    private final int width;
+    private final int height;
+    private final int offX;
+    private final int offY;
+    private final int pad;
+    private final int lineWidth;
+    private final int firstCol;
+    private final int lastCol;
+    private final int[] rowFactor;
+    private final int[] columnFactor;
+    private final ChannelDivider divider;
+
+    Pass(PixelImage source, Kernel kernel, BorderMode border) {
+      this.source = source;
+      this.kernel = kernel;
+      this.divider = new ChannelDivider(kernel.getDivisor());
+      this.border = border;
+      this.width = source.getWidth();
+      this.height = source.getHeight();
+      this.offX = kernel.getWidth() / 2;
+      this.offY = kernel.getHeight() / 2;
+      boolean black = border == BorderMode.BLACK;
+      this.pad = black ? 0 : offX;
+      this.lineWidth = width + 2 * pad;
+      this.firstCol = black ? offX : 0;
+      this.lastCol = black ? width - offX : width;
+      this.rowFactor = kernel.getRowFactor();
+      this.columnFactor = kernel.getColumnFactor();
+    }
+
+    private int firstRow(int startRow) {
+      return border == BorderMode.BLACK ? Math.max(startRow, offY) : startRow;
+    }
+
+    private int lastRow(int endRow) {
+      return border == BorderMode.BLACK ? Math.min(endRow, height - offY) : endRow;
+    }
+
+    private int slot(int row) {
+      return (row + offY) % kernel.getHeight();
+    }
+
+    void separableBand(PixelImage result, int[] dst, int startRow, int endRow) {
+      int firstRow = firstRow(startRow);
+      int lastRow = lastRow(endRow);
+      if (firstRow >= lastRow || firstCol >= lastCol) {
+        return;
+      }
+
+      int lines = kernel.getHeight();
+      int[][] ring = new int[lines][3 * width];
+      int[] plane = new int[3 * lineWidth];
+      int[] acc = new int[3 * width];
+
+      // Prime the ring with the rows above the first output row
+      for (int row = firstRow - offY; row < firstRow + offY; row++) {
+        filterRow(row, plane, ring[slot(row)]);
+      }
+
+      for (int row = firstRow; row < lastRow; row++) {
+        int incoming = row + offY;
+        filterRow(incoming, plane, ring[slot(incoming)]);
+
+        Arrays.fill(acc, 0);
+        for (int k = 0; k < lines; k++) {
+          int weight = columnFactor[k];
+          if (weight == 0) {
+            continue;
+          }
+          int[] line = ring[slot(row - offY + k)];
+          for (int i = 0; i < acc.length; i++) {
+            acc[i] += weight * line[i];
+          }
+        }
+        writeRow(acc, dst, result.rowOffset(row));
+      }
+    }
+
+    void directBand(PixelImage result, int[] dst, int startRow, int endRow) {
+      int firstRow = firstRow(startRow);
+      int lastRow = lastRow(endRow);
+      if (firstRow >= lastRow || firstCol >= lastCol) {
+        return;
+      }
+
+      int lines = kernel.getHeight();
+      int[][] ring = new int[lines][3 * lineWidth];
+      int[] acc = new int[3 * width];
+      int span = lastCol - firstCol;
+
+      for (int row = firstRow - offY; row < firstRow + offY; row++) {
+        unpackRow(row, ring[slot(row)]);
+      }
+
+      for (int row = firstRow; row < lastRow; row++) {
+        int incoming = row + offY;
+        unpackRow(incoming, ring[slot(incoming)]);
+
+        Arrays.fill(acc, 0);
+        for (int kr = 0; kr < lines; kr++) {
+          int[] line = ring[slot(row - offY + kr)];
+          for (int kc = 0; kc < kernel.getWidth(); kc++) {
+            int weight = kernel.getWeight(kr, kc);
+            if (weight == 0) {
+              continue;
+            }
+            for (int ch = 0; ch < 3; ch++) {
+              int in = ch * lineWidth + firstCol - offX + pad + kc;
+              int out = ch * width + firstCol;
+              for (int i = 0; i < span; i++) {
+                acc[out + i] += weight * line[in + i];
+              }
+            }
+          }
+        }
+        writeRow(acc, dst, result.rowOffset(row));
+      }
+    }
+
+    /**
+     * Unpacks a source row into red, green and blue planes laid out one after the other,
+     * each padded by the kernel radius on both sides when the border mode needs it.
+     */
+    private void unpackRow(int row, int[] plane) {
+      int[] src = source.getPixels();
+      int in = source.rowOffset(border.map(row, height));
+
+      for (int col = 0; col < width; col++) {
+        int rgb = src[in + col];
+        plane[pad + col] = PixelImage.red(rgb);
+        plane[lineWidth + pad + col] = PixelImage.green(rgb);
+        plane[2 * lineWidth + pad + col] = PixelImage.blue(rgb);
+      }
+
+      // Left and right strips outside the image
+      for (int p = 0; p < pad; p++) {
+        unpackPadding(src, in, p, p - pad, plane);
+        unpackPadding(src, in, pad + width + p, width + p, plane);
+      }
+    }
+
+    private void unpackPadding(int[] src, int in, int target, int col, int[] plane) {
+      int rgb = src[in + border.map(col, width)];
+      plane[target] = PixelImage.red(rgb);
+      plane[lineWidth + target] = PixelImage.green(rgb);
+      plane[2 * lineWidth + target] = PixelImage.blue(rgb);
+    }
+
+    /**
+     * Unpacks a source row and applies the horizontal factor of a separable kernel to it.
+     */
+    private void filterRow(int row, int[] plane, int[] out) {
+      int span = lastCol - firstCol;
+      unpackRow(row, plane);
+
+      for (int ch = 0; ch < 3; ch++) {
+        int o = ch * width + firstCol;
+        Arrays.fill(out, o, o + span, 0);
+        for (int k = 0; k < rowFactor.length; k++) {
+          int weight = rowFactor[k];
+          if (weight == 0) {
+            continue;
+          }
+          int in = ch * lineWidth + firstCol - offX + pad + k;
+          for (int i = 0; i < span; i++) {
+            out[o + i] += weight * plane[in + i];
+          }
+        }
+      }
+    }
+
+    /**
+     * Divides the accumulated sums, clamps them and packs them into the destination row.
+     */
+    private void writeRow(int[] acc, int[] dst, int offset) {
+      for (int col = firstCol; col < lastCol; col++) {
+        int red = divider.apply(acc[col]);
+        int green = divider.apply(acc[width + col]);
+        int blue = divider.apply(acc[2 * width + col]);
+        dst[offset + col] = (red << 16) | (green << 8) | blue;
+      }
+    }
+  }
+}
@@ -0,0 +1,243 @@
+package model;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the named images off the Java heap, in direct buffers, so that the pixels of images
+ * that are not being worked on are never traced or moved by the garbage collector.
+ *
+ * <p>Storing an image copies its pixels into direct memory. The image stays on the heap as well
+ * while it is the one most recently stored or read, since the next operation usually reads it;
+ * any other image is copied back to the heap when it is read, which costs one memory copy. The
+ * copy keeps the version of the stored pixels, so caches keyed on the version stay valid.
+ *
+ * <p>Direct memory is given back explicitly: when a name is overwritten or removed, its buffers
+ * go to a small pool that later images reuse instead of waiting for the garbage collector to
+ * find the buffer objects. Buffers the pool has no room for are freed on the spot where the
+ * runtime allows it, and otherwise left to the collector.
+ */
+public class DirectImageStore implements ImageStore {
+  // Direct buffers are indexed by int, so large images are split over several of them
+  private static final int CHUNK_PIXELS = 1 << 28;
+  private static final int POOL_SIZE = 8;
+  // sun.misc.Unsafe.invokeCleaner, or null if this runtime does not offer it
+  private static final Object UNSAFE;
+  private static final Method INVOKE_CLEANER;
+
+  static {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+    try {
+      Class<?> type = Class.forName("sun.misc.Unsafe");
+      Field field = type.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      unsafe = field.get(null);
+      invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // Buffers are then left to the garbage collector
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+  }
+
+  private final Map<String, Entry> images = new HashMap<>();
+  // Whole buffers as allocated, so that reuse never shrinks them
+  private final List<ByteBuffer> pool = new ArrayList<>();
+  private String resident;
+  private long storedBytes;
+
+  /**
+   * The pixels of one stored image.
+   */
+  private static class Entry {
+    private final int width;
+    private final int height;
+    private long version;
+    // The buffers the chunks are views of, which may be larger than the chunks
+    private final ByteBuffer[] memory;
+    private final IntBuffer[] chunks;
+    // The heap copy, kept while the image is resident
+    private PixelImage heap;
+
+    Entry(PixelImage image, ByteBuffer[] memory, IntBuffer[] chunks) {
+      this.width = image.getWidth();
+      this.height = image.getHeight();
+      this.version = image.getVersion();
+      this.memory = memory;
+      this.chunks = chunks;
+      this.heap = image;
+    }
+  }
+
+  /**
+   * Gives the amount of direct memory held by the stored images.
+   *
+   * @return the number of bytes, not counting pooled buffers.
+   */
+  public long getStoredBytes() {
+    return storedBytes;
+  }
+
+  @Override
+  public PixelImage get(String imageName) {
+    Entry entry = images.get(imageName);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.heap == null) {
+      int[] pixels = new int[entry.width * entry.height];
+      for (int chunk = 0; chunk < entry.chunks.length; chunk++) {
+        IntBuffer buffer = entry.chunks[chunk].duplicate();
+        buffer.rewind();
+        buffer.get(pixels, chunk * CHUNK_PIXELS, buffer.remaining());
+      }
+      entry.heap = new PixelImage(entry.width, entry.height, pixels, entry.version);
+    }
+    makeResident(imageName);
+    return entry.heap;
+  }
+
+  @Override
+  public void put(String imageName, PixelImage image) {
+    Entry old = images.get(imageName);
+    if (old != null && old.heap == image) {
+      // The same handle may have been written in place since it was stored
+      refresh(old);
+      makeResident(imageName);
+      return;
+    }
+    remove(imageName);
+
+    long size = (long) image.getWidth() * image.getHeight();
+    int count = (int) ((size + CHUNK_PIXELS - 1) / CHUNK_PIXELS);
+    ByteBuffer[] memory = new ByteBuffer[count];
+    IntBuffer[] chunks = new IntBuffer[count];
+    for (int chunk = 0; chunk < count; chunk++) {
+      int pixels = (int) Math.min(CHUNK_PIXELS, size - (long) chunk * CHUNK_PIXELS);
+      memory[chunk] = allocate(pixels);
+      ByteBuffer view = memory[chunk].duplicate();
+      view.clear().limit(pixels * Integer.BYTES);
+      chunks[chunk] = view.slice().order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+    copy(image, chunks);
+
+    images.put(imageName, new Entry(image, memory, chunks));
+    storedBytes += size * Integer.BYTES;
+    makeResident(imageName);
+  }
+
+  /**
+   * Copies the pixels of an image into direct buffers.
+   */
+  private static void copy(PixelImage image, IntBuffer[] chunks) {
+    // Rows may straddle two chunks, so copy them a run at a time
+    for (int row = 0; row < image.getHeight(); row++) {
+      long index = (long) row * image.getWidth();
+      int from = image.rowOffset(row);
+      int left = image.getWidth();
+      while (left > 0) {
+        IntBuffer buffer = chunks[(int) (index / CHUNK_PIXELS)];
+        int position = (int) (index % CHUNK_PIXELS);
+        int count = Math.min(left, CHUNK_PIXELS - position);
+        buffer.position(position);
+        buffer.put(image.getPixels(), from, count);
+        index += count;
+        from += count;
+        left -= count;
+      }
+    }
+  }
+
+  /**
+   * Copies the heap copy of an image back into its buffers if it was written since it was
+   * stored.
+   */
+  private static void refresh(Entry entry) {
+    if (entry.heap.getVersion() != entry.version) {
+      copy(entry.heap, entry.chunks);
+      entry.version = entry.heap.getVersion();
+    }
+  }
+
+  @Override
+  public void remove(String imageName) {
+    Entry entry = images.remove(imageName);
+    if (entry == null) {
+      return;
+    }
+    if (entry.heap != null) {
+      entry.heap.release();
+    }
+    for (IntBuffer chunk : entry.chunks) {
+      storedBytes -= (long) chunk.capacity() * Integer.BYTES;
+    }
+    for (ByteBuffer buffer : entry.memory) {
+      if (pool.size() < POOL_SIZE) {
+        pool.add(buffer);
+      } else {
+        free(buffer);
+      }
+    }
+    if (imageName.equals(resident)) {
+      resident = null;
+    }
+  }
+
+  /**
+   * Lets go of the heap copy of the previously resident image, keeping any changes made to it.
+   */
+  private void makeResident(String imageName) {
+    if (resident != null && !resident.equals(imageName)) {
+      Entry previous = images.get(resident);
+      if (previous != null && previous.heap != null) {
+        refresh(previous);
+        previous.heap.release();
+        previous.heap = null;
+      }
+    }
+    resident = imageName;
+  }
+
+  /**
+   * Takes a pooled buffer of about the right size, or allocates a new one.
+   */
+  private ByteBuffer allocate(int pixels) {
+    long bytes = (long) pixels * Integer.BYTES;
+    int best = -1;
+    for (int i = 0; i < pool.size(); i++) {
+      int capacity = pool.get(i).capacity();
+      // A much larger buffer would hold direct memory the image does not need
+      if (capacity >= bytes && capacity <= 2 * bytes
+          && (best < 0 || capacity < pool.get(best).capacity())) {
+        best = i;
+      }
+    }
+    // Removed by position, since buffers compare equal by their remaining contents
+    if (best >= 0) {
+      return pool.remove(best);
+    }
+    return ByteBuffer.allocateDirect((int) bytes);
+  }
+
+  /**
+   * Gives the memory of a direct buffer back to the system without waiting for the collector.
+   */
+  private static void free(ByteBuffer buffer) {
+    if (INVOKE_CLEANER == null) {
+      return;
+    }
+    try {
+      INVOKE_CLEANER.invoke(UNSAFE, buffer);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // The collector frees it instead
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package model;
+
+/**
+ * An in-place iterative radix-2 fast Fourier transform of one fixed power-of-two size.
+ * The complex values are held in separate real and imaginary arrays, and the bit-reversal
+ * permutation and twiddle factors are computed once when the transform is constructed.
+ * The inverse transform is not scaled; callers divide by the size themselves.
+ */
+class Fft {
+  private final int size;
+  private final int[] reversed;
+  private final double[] cos;
+  private final double[] sin;
+
+  /**
+   * Constructs a transform of the given size.
+   *
+   * @param size the number of points, which must be a power of two.
+   * @throws IllegalArgumentException if the size is not a power of two.
+   */
+  Fft(int size) {
+    if (size < 1 || (size & (size - 1)) != 0) {
+      throw new IllegalArgumentException("FFT size must be a power of two.");
+    }
+    this.size = size;
+    this.reversed = new int[size];
+    int bits = Integer.numberOfTrailingZeros(size);
+    for (int i = 0; i < size; i++) {
+      reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+    }
+    this.cos = new double[size / 2];
+    this.sin = new double[size / 2];
+    for (int i = 0; i < size / 2; i++) {
+      double angle = 2 * Math.PI * i / size;
+      cos[i] = Math.cos(angle);
+      sin[i] = Math.sin(angle);
+    }
+  }
+
+  int getSize() {
+    return size;
+  }
+
+  /**
+   * Transforms size consecutive values starting at offset.
+   *
+   * @param re      the real parts.
+   * @param im      the imaginary parts.
+   * @param offset  the index of the first value.
+   * @param inverse true for the inverse transform.
+   */
+  void transform(double[] re, double[] im, int offset, boolean inverse) {
+    for (int i = 0; i < size; i++) {
+      int j = reversed[i];
+      if (i < j) {
+        swap(re, offset + i, offset + j);
+        swap(im, offset + i, offset + j);
+      }
+    }
+
+    double sign = inverse ? 1 : -1;
+    for (int len = 2; len <= size; len <<= 1) {
+      int half = len >> 1;
+      int step = size / len;
+      for (int start = offset; start < offset + size; start += len) {
+        for (int k = 0; k < half; k++) {
+          double wr = cos[k * step];
+          double wi = sign * sin[k * step];
+          int a = start + k;
+          int b = a + half;
+          double tr = re[b] * wr - im[b] * wi;
+          double ti = re[b] * wi + im[b] * wr;
+          re[b] = re[a] - tr;
+          im[b] = im[a] - ti;
+          re[a] += tr;
+          im[a] += ti;
+        }
+      }
+    }
+  }
+
+  private static void swap(double[] values, int i, int j) {
+    double tmp = values[i];
+    values[i] = values[j];
+    values[j] = tmp;
+  }
+}
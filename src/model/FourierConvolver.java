@@ -0,0 +1,271 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Convolves packed images through the fast Fourier transform, which costs a few operations
+ * per pixel whatever the kernel size and so beats the direct loops of {@link Convolver} once
+ * the kernel is large.
+ *
+ * <p>The output is cut into tiles whose transform size is a power of two chosen to minimise the
+ * total transform work. Each tile gathers its input, including a kernel-sized apron mapped
+ * through the {@link BorderMode}, transforms it, multiplies it by the kernel spectrum and
+ * transforms it back, keeping only the samples the circular wrap-around did not touch. Tiles
+ * are independent, so rows of tiles run in parallel bands. The three real colour channels are
+ * packed into two complex transforms: red and green share one as its real and imaginary parts,
+ * which the real kernel keeps apart.
+ *
+ * <p>The weighted sums are rounded back to integers before the divisor is applied, so the
+ * result matches the direct convolution.
+ */
+class FourierConvolver {
+  private static final int MAX_TILE = 512;
+
+  private final RowExecutor executor;
+
+  /**
+   * Constructs a convolver that spreads its tiles over the given executor.
+   *
+   * @param executor the executor used to process rows of tiles.
+   */
+  FourierConvolver(RowExecutor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Convolves an image with a kernel into a new image of the same size.
+   *
+   * @param source the image to filter.
+   * @param kernel the kernel to apply.
+   * @param border how pixels near the edge are filtered.
+   * @return the filtered image.
+   */
+  PixelImage convolve(PixelImage source, Kernel kernel, BorderMode border) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    PixelImage result = new PixelImage(width, height);
+    int[] dst = result.getWritablePixels();
+
+    boolean black = border == BorderMode.BLACK;
+    int offX = kernel.getWidth() / 2;
+    int offY = kernel.getHeight() / 2;
+    int firstCol = black ? offX : 0;
+    int firstRow = black ? offY : 0;
+    int cols = (black ? width - offX : width) - firstCol;
+    int rows = (black ? height - offY : height) - firstRow;
+    if (cols <= 0 || rows <= 0) {
+      return result;
+    }
+
+    Plan plan = new Plan(kernel, cols, rows);
+    int tilesX = (cols + plan.tileWidth - 1) / plan.tileWidth;
+    int tilesY = (rows + plan.tileHeight - 1) / plan.tileHeight;
+
+    long tilePixels = (long) tilesX * plan.fftX.getSize() * plan.fftY.getSize();
+    executor.forEachRow(tilesY, (int) Math.min(Integer.MAX_VALUE, tilePixels),
+        (startTile, endTile) -> {
+          Tile tile = new Tile(plan, source, border);
+          for (int ty = startTile; ty < endTile; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+              int x = firstCol + tx * plan.tileWidth;
+              int y = firstRow + ty * plan.tileHeight;
+              tile.filter(x, y,
+                  Math.min(plan.tileWidth, firstCol + cols - x),
+                  Math.min(plan.tileHeight, firstRow + rows - y),
+                  result, dst);
+            }
+          }
+        });
+    return result;
+  }
+
+  /**
+   * Picks the smallest power of two per axis that minimises the estimated transform work for
+   * the given output extent, capped so a tile's buffers stay small.
+   */
+  private static int[] chooseSizes(int kernelWidth, int kernelHeight, int cols, int rows) {
+    int[] best = null;
+    double bestCost = Double.MAX_VALUE;
+    for (int nx = fitting(kernelWidth); nx <= cap(kernelWidth, cols); nx <<= 1) {
+      for (int ny = fitting(kernelHeight); ny <= cap(kernelHeight, rows); ny <<= 1) {
+        int tilesX = (cols + nx - kernelWidth) / (nx - kernelWidth + 1);
+        int tilesY = (rows + ny - kernelHeight) / (ny - kernelHeight + 1);
+        double cost = (double) tilesX * tilesY * nx * ny
+            * (Integer.numberOfTrailingZeros(nx) + Integer.numberOfTrailingZeros(ny));
+        if (cost < bestCost) {
+          bestCost = cost;
+          best = new int[]{nx, ny};
+        }
+      }
+    }
+    return best;
+  }
+
+  private static int fitting(int kernelSize) {
+    return Math.max(2, Integer.highestOneBit(2 * kernelSize - 1));
+  }
+
+  private static int cap(int kernelSize, int extent) {
+    int whole = Integer.highestOneBit(2 * (extent + kernelSize - 1) - 1);
+    int limit = Math.max(MAX_TILE, fitting(kernelSize) * 2);
+    return Math.max(fitting(kernelSize), Math.min(whole, limit));
+  }
+
+  /**
+   * The transform sizes, tile sizes and kernel spectrum shared by every tile of one convolution.
+   */
+  private static class Plan {
+    private final Kernel kernel;
+    private final Fft fftX;
+    private final Fft fftY;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final double[] kernelRe;
+    private final double[] kernelIm;
+    private final ChannelDivider divider;
+
+    Plan(Kernel kernel, int cols, int rows) {
+      this.kernel = kernel;
+      this.divider = new ChannelDivider(kernel.getDivisor());
+      int[] sizes = chooseSizes(kernel.getWidth(), kernel.getHeight(), cols, rows);
+      this.fftX = new Fft(sizes[0]);
+      this.fftY = new Fft(sizes[1]);
+      this.tileWidth = sizes[0] - kernel.getWidth() + 1;
+      this.tileHeight = sizes[1] - kernel.getHeight() + 1;
+
+      // The direct loops correlate, so each weight goes to the negated offset, wrapped around,
+      // and the spectrum absorbs the 1 / (nx * ny) of the inverse transform
+      int nx = sizes[0];
+      int ny = sizes[1];
+      int offX = kernel.getWidth() / 2;
+      int offY = kernel.getHeight() / 2;
+      this.kernelRe = new double[nx * ny];
+      this.kernelIm = new double[nx * ny];
+      double scale = 1.0 / ((double) nx * ny);
+      for (int kr = 0; kr < kernel.getHeight(); kr++) {
+        int row = ((offY - kr) % ny + ny) % ny;
+        for (int kc = 0; kc < kernel.getWidth(); kc++) {
+          int col = ((offX - kc) % nx + nx) % nx;
+          kernelRe[row * nx + col] = kernel.getWeight(kr, kc) * scale;
+        }
+      }
+      transform(this, kernelRe, kernelIm, new double[ny], new double[ny], false);
+    }
+  }
+
+  /**
+   * Runs the two-dimensional transform as row transforms followed by column transforms.
+   */
+  private static void transform(Plan plan, double[] re, double[] im, double[] columnRe,
+                                double[] columnIm, boolean inverse) {
+    int nx = plan.fftX.getSize();
+    int ny = plan.fftY.getSize();
+    for (int row = 0; row < ny; row++) {
+      plan.fftX.transform(re, im, row * nx, inverse);
+    }
+    for (int col = 0; col < nx; col++) {
+      for (int row = 0; row < ny; row++) {
+        columnRe[row] = re[row * nx + col];
+        columnIm[row] = im[row * nx + col];
+      }
+      plan.fftY.transform(columnRe, columnIm, 0, inverse);
+      for (int row = 0; row < ny; row++) {
+        re[row * nx + col] = columnRe[row];
+        im[row * nx + col] = columnIm[row];
+      }
+    }
+  }
+
+  /**
+   * Scratch buffers for filtering one tile at a time; each band of tile rows owns one.
+   */
+  private static class Tile {
+    private final Plan plan;
+    private final PixelImage source;
+    private final BorderMode border;
+    private final int[] columnMap;
+    private final double[] redGreenRe;
+    private final double[] redGreenIm;
+    private final double[] blueRe;
+    private final double[] blueIm;
+    private final double[] columnRe;
+    private final double[] columnIm;
+
+    Tile(Plan plan, PixelImage source, BorderMode border) {
+      this.plan = plan;
+      this.source = source;
+      this.border = border;
+      int nx = plan.fftX.getSize();
+      int ny = plan.fftY.getSize();
+      this.columnMap = new int[nx];
+      this.redGreenRe = new double[nx * ny];
+      this.redGreenIm = new double[nx * ny];
+      this.blueRe = new double[nx * ny];
+      this.blueIm = new double[nx * ny];
+      this.columnRe = new double[ny];
+      this.columnIm = new double[ny];
+    }
+
+    /**
+     * Filters the output pixels in the given rectangle.
+     */
+    void filter(int x, int y, int cols, int rows, PixelImage result, int[] dst) {
+      int nx = plan.fftX.getSize();
+      int ny = plan.fftY.getSize();
+      int offX = plan.kernel.getWidth() / 2;
+      int offY = plan.kernel.getHeight() / 2;
+      int inputCols = cols + plan.kernel.getWidth() - 1;
+      int inputRows = rows + plan.kernel.getHeight() - 1;
+      int width = source.getWidth();
+      int height = source.getHeight();
+      int[] src = source.getPixels();
+
+      for (int v = 0; v < inputCols; v++) {
+        columnMap[v] = border.map(x - offX + v, width);
+      }
+      Arrays.fill(redGreenRe, 0);
+      Arrays.fill(redGreenIm, 0);
+      Arrays.fill(blueRe, 0);
+      Arrays.fill(blueIm, 0);
+      for (int u = 0; u < inputRows; u++) {
+        int in = source.rowOffset(border.map(y - offY + u, height));
+        int out = u * nx;
+        for (int v = 0; v < inputCols; v++) {
+          int rgb = src[in + columnMap[v]];
+          redGreenRe[out + v] = PixelImage.red(rgb);
+          redGreenIm[out + v] = PixelImage.green(rgb);
+          blueRe[out + v] = PixelImage.blue(rgb);
+        }
+      }
+
+      transform(plan, redGreenRe, redGreenIm, columnRe, columnIm, false);
+      transform(plan, blueRe, blueIm, columnRe, columnIm, false);
+      multiply(redGreenRe, redGreenIm);
+      multiply(blueRe, blueIm);
+      transform(plan, redGreenRe, redGreenIm, columnRe, columnIm, true);
+      transform(plan, blueRe, blueIm, columnRe, columnIm, true);
+
+      ChannelDivider divider = plan.divider;
+      for (int u = 0; u < rows; u++) {
+        int in = (u + offY) * nx + offX;
+        int out = result.rowOffset(y + u) + x;
+        for (int v = 0; v < cols; v++) {
+          int red = divider.apply((int) Math.round(redGreenRe[in + v]));
+          int green = divider.apply((int) Math.round(redGreenIm[in + v]));
+          int blue = divider.apply((int) Math.round(blueRe[in + v]));
+          dst[out + v] = (red << 16) | (green << 8) | blue;
+        }
+      }
+    }
+
+    private void multiply(double[] re, double[] im) {
+      double[] kernelRe = plan.kernelRe;
+      double[] kernelIm = plan.kernelIm;
+      for (int i = 0; i < re.length; i++) {
+        double r = re[i] * kernelRe[i] - im[i] * kernelIm[i];
+        im[i] = re[i] * kernelIm[i] + im[i] * kernelRe[i];
+        re[i] = r;
+      }
+    }
+  }
+}
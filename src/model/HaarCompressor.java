@@ -0,0 +1,260 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Lossy compression through the two-dimensional Haar wavelet transform. Each channel is
+ * transformed, the given percentage of its non-zero coefficients with the smallest magnitudes is
+ * set to zero, and the channel is transformed back, so the result keeps the size of the source
+ * and only loses detail.
+ *
+ * <p>The transform is the orthonormal Haar transform computed in place by lifting on a single
+ * {@code double} plane: level {@code l} pairs the samples {@code 2^l} apart, so the averages
+ * stay where they are and no buffer is reshuffled between levels. A line of odd length passes
+ * its last sample up a level as if it were paired with itself, so images of any size are
+ * transformed without padding them to a power of two. Every level filters the rows and then the
+ * columns of the remaining averages, and both run in bands on the executor.
+ *
+ * <p>The threshold of a channel is the k-th smallest coefficient magnitude, found by a radix
+ * selection over the bits of the magnitudes instead of by sorting them. The channels are
+ * processed one after the other through the same plane, so a compression costs one double per
+ * pixel on top of the result.
+ */
+public class HaarCompressor {
+  private static final double SQRT2 = Math.sqrt(2);
+  private static final double HALF_SQRT2 = SQRT2 / 2;
+  private static final int DIGIT_BITS = 16;
+  private static final int DIGITS = 1 << DIGIT_BITS;
+
+  private final RowExecutor executor;
+
+  /**
+   * Constructs a compressor that spreads its rows over the given executor.
+   *
+   * @param executor the executor used to process row bands.
+   */
+  public HaarCompressor(RowExecutor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Compresses an image into a new image of the same size.
+   *
+   * @param source     the image to compress.
+   * @param percentage the percentage of non-zero coefficients of each channel to drop.
+   * @return the compressed image, owned by the caller.
+   * @throws IllegalArgumentException if the percentage is not between 0 and 100.
+   */
+  public PixelImage compress(PixelImage source, double percentage) {
+    if (percentage < 0 || percentage > 100) {
+      throw new IllegalArgumentException("Compression percentage should be between 0 and 100.");
+    }
+    int width = source.getWidth();
+    int height = source.getHeight();
+    PixelImage result = new PixelImage(width, height);
+    int[] src = source.getPixels();
+    int[] dst = result.getWritablePixels();
+    double[] plane = new double[width * height];
+
+    for (int shift = 16; shift >= 0; shift -= 8) {
+      int channelShift = shift;
+      executor.forEachRow(height, width, (startRow, endRow) -> {
+        for (int row = startRow; row < endRow; row++) {
+          int in = source.rowOffset(row);
+          for (int col = 0; col < width; col++) {
+            plane[row * width + col] = (src[in + col] >>> channelShift) & 0xFF;
+          }
+        }
+      });
+
+      transform(plane, width, height);
+      threshold(plane, width, height, percentage);
+      inverse(plane, width, height);
+
+      executor.forEachRow(height, width, (startRow, endRow) -> {
+        for (int row = startRow; row < endRow; row++) {
+          int out = result.rowOffset(row);
+          for (int col = 0; col < width; col++) {
+            long value = Math.round(plane[row * width + col]);
+            dst[out + col] |= (int) Math.max(0, Math.min(value, 255)) << channelShift;
+          }
+        }
+      });
+    }
+    return result;
+  }
+
+  private void transform(double[] plane, int width, int height) {
+    for (int step = 1; step < width || step < height; step <<= 1) {
+      if (step < width) {
+        rows(plane, width, height, step, false);
+      }
+      if (step < height) {
+        columns(plane, width, height, step, false);
+      }
+    }
+  }
+
+  private void inverse(double[] plane, int width, int height) {
+    int step = Integer.highestOneBit(Math.max(1, Math.max(width, height) - 1));
+    for (; step >= 1; step >>= 1) {
+      if (step < height) {
+        columns(plane, width, height, step, true);
+      }
+      if (step < width) {
+        rows(plane, width, height, step, true);
+      }
+    }
+  }
+
+  /**
+   * Runs one level along the rows: in every row that still holds averages, the samples step
+   * apart are paired.
+   */
+  private void rows(double[] plane, int width, int height, int step, boolean inverse) {
+    int lines = (height + step - 1) / step;
+    int samples = (width + step - 1) / step;
+    executor.forEachRow(lines, samples, (startLine, endLine) -> {
+      for (int line = startLine; line < endLine; line++) {
+        int base = line * step * width;
+        for (int i = 0; i + 1 < samples; i += 2) {
+          int first = base + i * step;
+          if (inverse) {
+            unlift(plane, first, first + step);
+          } else {
+            lift(plane, first, first + step);
+          }
+        }
+        if (samples % 2 == 1) {
+          plane[base + (samples - 1) * step] *= inverse ? HALF_SQRT2 : SQRT2;
+        }
+      }
+    });
+  }
+
+  /**
+   * Runs one level along the columns: rows step apart are paired across every column that
+   * still holds averages, so each pair of rows is walked sequentially.
+   */
+  private void columns(double[] plane, int width, int height, int step, boolean inverse) {
+    int lines = (height + step - 1) / step;
+    int samples = (width + step - 1) / step;
+    executor.forEachRow((lines + 1) / 2, samples, (startPair, endPair) -> {
+      for (int pair = startPair; pair < endPair; pair++) {
+        int first = 2 * pair * step * width;
+        if (2 * pair + 1 == lines) {
+          double scale = inverse ? HALF_SQRT2 : SQRT2;
+          for (int col = 0; col < width; col += step) {
+            plane[first + col] *= scale;
+          }
+          continue;
+        }
+        int second = first + step * width;
+        for (int col = 0; col < width; col += step) {
+          if (inverse) {
+            unlift(plane, first + col, second + col);
+          } else {
+            lift(plane, first + col, second + col);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Replaces a pair of samples by their average and difference, scaled by the square root of
+   * two: predict the second sample from the first, update the first with half the difference.
+   */
+  private static void lift(double[] plane, int first, int second) {
+    double difference = plane[second] - plane[first];
+    double average = plane[first] + difference / 2;
+    plane[first] = average * SQRT2;
+    plane[second] = difference * HALF_SQRT2;
+  }
+
+  private static void unlift(double[] plane, int first, int second) {
+    double average = plane[first] * HALF_SQRT2;
+    double difference = plane[second] * SQRT2;
+    double value = average - difference / 2;
+    plane[first] = value;
+    plane[second] = value + difference;
+  }
+
+  /**
+   * Sets the given percentage of the non-zero coefficients to zero, smallest magnitudes first.
+   * Ties with the largest magnitude dropped are broken from the end of the plane, so the overall
+   * average at its start is the last coefficient to go.
+   */
+  private void threshold(double[] plane, int width, int height, double percentage) {
+    // Magnitudes compare like their bit patterns, since they are never negative
+    long[] selection = {0, 0};
+    int[] counts = countDigits(plane, width, height, selection, 64 - DIGIT_BITS, null);
+    int zeros = counts[DIGITS];
+    int drop = (int) ((plane.length - zeros) * percentage / 100);
+    if (drop == 0) {
+      return;
+    }
+
+    // Find the digits of the drop-th smallest non-zero magnitude from the top down
+    long rank = (long) zeros + drop;
+    for (int shift = 64 - DIGIT_BITS; ; shift -= DIGIT_BITS) {
+      int digit = 0;
+      while (rank > counts[digit]) {
+        rank -= counts[digit];
+        digit++;
+      }
+      selection[0] |= (long) digit << shift;
+      selection[1] |= (long) (DIGITS - 1) << shift;
+      if (shift == 0) {
+        break;
+      }
+      counts = countDigits(plane, width, height, selection, shift - DIGIT_BITS, counts);
+    }
+
+    long limit = selection[0];
+    executor.forEachRow(height, width, (startRow, endRow) -> {
+      for (int i = startRow * width; i < endRow * width; i++) {
+        if (Double.doubleToRawLongBits(Math.abs(plane[i])) < limit) {
+          plane[i] = 0;
+        }
+      }
+    });
+    // What is left of the rank is how many of the coefficients at the limit to drop
+    for (int i = plane.length - 1; rank > 0; i--) {
+      if (Double.doubleToRawLongBits(Math.abs(plane[i])) == limit) {
+        plane[i] = 0;
+        rank--;
+      }
+    }
+  }
+
+  /**
+   * Counts the digit at the given shift of every magnitude whose bits match the selection
+   * prefix under its mask. The entry after the last digit counts the exact zeros.
+   */
+  private int[] countDigits(double[] plane, int width, int height, long[] selection, int shift,
+                            int[] reuse) {
+    long prefix = selection[0];
+    long mask = selection[1];
+    int[] totals = reuse == null ? new int[DIGITS + 1] : reuse;
+    Arrays.fill(totals, 0);
+    executor.forEachRow(height, width, (startRow, endRow) -> {
+      int[] counts = new int[DIGITS + 1];
+      for (int i = startRow * width; i < endRow * width; i++) {
+        long bits = Double.doubleToRawLongBits(Math.abs(plane[i]));
+        if ((bits & mask) == prefix) {
+          counts[(int) (bits >>> shift) & (DIGITS - 1)]++;
+        }
+        if (bits == 0) {
+          counts[DIGITS]++;
+        }
+      }
+      synchronized (totals) {
+        for (int digit = 0; digit <= DIGITS; digit++) {
+          totals[digit] += counts[digit];
+        }
+      }
+    });
+    return totals;
+  }
+}
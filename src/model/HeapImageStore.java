@@ -0,0 +1,32 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the named images on the Java heap, as the handles they were stored as.
+ */
+public class HeapImageStore implements ImageStore {
+  private final Map<String, PixelImage> images = new HashMap<>();
+
+  @Override
+  public PixelImage get(String imageName) {
+    return images.get(imageName);
+  }
+
+  @Override
+  public void put(String imageName, PixelImage image) {
+    PixelImage old = images.put(imageName, image);
+    if (old != null && old != image) {
+      old.release();
+    }
+  }
+
+  @Override
+  public void remove(String imageName) {
+    PixelImage old = images.remove(imageName);
+    if (old != null) {
+      old.release();
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package model;
+
+/**
+ * The red, green, blue and luma histograms of one version of an image, 256 bins each.
+ *
+ * <p>The pixels are counted in parallel row bands. Every band counts into tables of its own,
+ * which are merged into the totals once the band is done, so the workers never contend on a
+ * counter. Within a band even and odd columns count into separate tables as well: neighbouring
+ * pixels usually share values, and one table would make each increment wait for the last.
+ *
+ * <p>A histogram records the version stamp of the pixels it counted, so it can be reused for as
+ * long as an image keeps that version.
+ */
+final class Histogram {
+  static final int RED = 0;
+  static final int GREEN = 1;
+  static final int BLUE = 2;
+  static final int LUMA = 3;
+
+  private static final int BINS = 256;
+  private static final int CHANNELS = 4;
+
+  // The luma weights of the luma component, in ten-thousandths
+  private static final int LUMA_RED = 2126;
+  private static final int LUMA_GREEN = 7152;
+  private static final int LUMA_BLUE = 722;
+  private static final ChannelDivider LUMA_DIVIDER = new ChannelDivider(10000);
+
+  private final long version;
+  private final int[] counts;
+
+  private Histogram(long version, int[] counts) {
+    this.version = version;
+    this.counts = counts;
+  }
+
+  /**
+   * Counts the channel values of an image.
+   *
+   * @param image    the image to count.
+   * @param executor the executor used to count row bands in parallel.
+   * @return the histograms of the image's current version.
+   */
+  static Histogram count(PixelImage image, RowExecutor executor) {
+    int[] pixels = image.getPixels();
+    int width = image.getWidth();
+    int[] totals = new int[CHANNELS * BINS];
+
+    executor.forEachRow(image.getHeight(), width, (startRow, endRow) -> {
+      int[] even = new int[CHANNELS * BINS];
+      int[] odd = new int[CHANNELS * BINS];
+      for (int row = startRow; row < endRow; row++) {
+        int offset = image.rowOffset(row);
+        int col = 0;
+        for (; col + 1 < width; col += 2) {
+          countPixel(pixels[offset + col], even);
+          countPixel(pixels[offset + col + 1], odd);
+        }
+        if (col < width) {
+          countPixel(pixels[offset + col], even);
+        }
+      }
+      synchronized (totals) {
+        for (int i = 0; i < totals.length; i++) {
+          totals[i] += even[i] + odd[i];
+        }
+      }
+    });
+    return new Histogram(image.getVersion(), totals);
+  }
+
+  private static void countPixel(int rgb, int[] counts) {
+    int red = PixelImage.red(rgb);
+    int green = PixelImage.green(rgb);
+    int blue = PixelImage.blue(rgb);
+    counts[red]++;
+    counts[BINS + green]++;
+    counts[2 * BINS + blue]++;
+    counts[3 * BINS + LUMA_DIVIDER.apply(LUMA_RED * red + LUMA_GREEN * green
+        + LUMA_BLUE * blue)]++;
+  }
+
+  /**
+   * Tells whether these histograms were counted from the given pixels.
+   *
+   * @param image the image to check.
+   * @return true if the image still has the version that was counted.
+   */
+  boolean isOf(PixelImage image) {
+    return version == image.getVersion();
+  }
+
+  /**
+   * Provides the counts of one channel.
+   *
+   * @param channel {@link #RED}, {@link #GREEN}, {@link #BLUE} or {@link #LUMA}.
+   * @return a copy of the 256 counts of the channel.
+   * @throws IllegalArgumentException if the channel is invalid.
+   */
+  int[] get(int channel) {
+    if (channel < 0 || channel >= CHANNELS) {
+      throw new IllegalArgumentException("Invalid channel: " + channel);
+    }
+    int[] channelCounts = new int[BINS];
+    System.arraycopy(counts, channel * BINS, channelCounts, 0, BINS);
+    return channelCounts;
+  }
+}
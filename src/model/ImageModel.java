@@ -24,6 +24,15 @@ public interface ImageModel {
    */
   void loadImage(int[][][] filePath, String imageName) throws IOException;
 
+  /**
+   * Stores an image that is already in the model's packed pixel format, without converting it.
+   * The model takes over the given handle.
+   *
+   * @param image     the image to store.
+   * @param imageName the name to assign to the loaded image within the model.
+   */
+  void loadImage(PixelImage image, String imageName);
+
   /**
    * Saves the specified image to the given file path.
    *
@@ -33,6 +42,15 @@ public interface ImageModel {
    */
   void saveImage(String filePath, int[][][] imageName) throws IOException;
 
+  /**
+   * Records an image that was saved in the model's packed format under its file path, without
+   * converting it. The model takes over the given handle.
+   *
+   * @param filePath the path the image was saved to.
+   * @param image    the image that was saved.
+   */
+  void saveImage(String filePath, PixelImage image);
+
   /**
    * Provides a deep copy 3D integer matrix of the specified image.
    *
@@ -41,6 +59,23 @@ public interface ImageModel {
    */
   int[][][] getImage(String imageName);
 
+  /**
+   * Provides the pixels of the specified image in the model's packed format, without copying
+   * them. The caller owns the returned handle and must not write through it.
+   *
+   * @param imageName the name of the image to return.
+   * @return a handle sharing the stored pixels.
+   */
+  PixelImage getPixelImage(String imageName);
+
+  /**
+   * Forgets the image stored under the given name, so that its pixels can be freed. Results
+   * already derived from it are not affected. Names that hold no image are ignored.
+   *
+   * @param imageName the name of the image to drop.
+   */
+  void dropImage(String imageName);
+
   /**
    * Brightens the specified image by a given value and stores the result under a new name.
    *
@@ -214,6 +249,39 @@ public interface ImageModel {
    */
   void resizeImage(String imageName, String destImageName, float newWidth, float newHeight);
 
+  /**
+   * Resizes the specified image with the given resampling filter and stores the result under a
+   * new name. A width or height of 0 keeps that dimension of the original image.
+   *
+   * @param imageName     the name of the image to resize.
+   * @param destImageName the name to assign to the resized image.
+   * @param newWidth      desired width of the image.
+   * @param newHeight     desired height of the image.
+   * @param filter        how the resized pixels are computed from the original ones.
+   */
+  void resizeImage(String imageName, String destImageName, float newWidth, float newHeight,
+                   ResampleFilter filter);
+
+  /**
+   * Convolves the specified image with a kernel and stores the result under a new name.
+   *
+   * @param imageName     the name of the image to filter.
+   * @param destImageName the name to assign to the filtered image.
+   * @param kernel        the kernel to convolve the image with.
+   * @param border        how pixels near the edge of the image are filtered.
+   */
+  void convolve(String imageName, String destImageName, Kernel kernel, BorderMode border);
+
+  /**
+   * Mixes the channels of the specified image through a colour matrix and stores the result
+   * under a new name.
+   *
+   * @param imageName     the name of the image to filter.
+   * @param destImageName the name to assign to the filtered image.
+   * @param matrix        the colour matrix to apply to every pixel.
+   */
+  void colorMatrix(String imageName, String destImageName, ColorMatrix matrix);
+
   /**
    * To get the current image to load in GUI.
    *
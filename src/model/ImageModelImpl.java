@@ -2,126 +2,334 @@ package model;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.IntUnaryOperator;
 
 /**
  * An implementation of the mvc.ImageModel interface.
  * It manages image loading,saving, and manipulation operations.
- * Images are represented as a 3D array where each pixel is defined by its RGB values.
- * The first dimension represents rows, second represents columns and third are the color channels.
- * The code handles different image formats to load pixel data.
- * For PPM pixel values are read in text format.
- * Whereas, for PNG/JPG, RGB values are extracted from packed integers.
+ * Images are stored as {@link PixelImage} containers where each pixel is a packed 0xRRGGBB
+ * integer inside one contiguous array, so every operation walks a flat buffer.
+ * The 3D row/column/channel representation is still accepted and returned through
+ * {@link #loadImage}, {@link #saveImage} and {@link #getImage} for compatibility.
+ * Stored images are copy-on-write handles: operations read their sources in place and the
+ * current image shares the buffer of the image it shows instead of holding a converted copy.
+ * The histogram of the latest result is only computed when it is asked for, through
+ * {@link #getHistImage()}, the histogram command or the {@value #LIVE_HISTOGRAM} image name,
+ * and is cached against the version of the image it was computed from. The channel counts
+ * behind it are cached the same way, so colour correction reuses the counts of the histogram
+ * that is already on display.
+ * Likewise the BufferedImage of the current image is only built when the view asks for it,
+ * and it wraps the packed pixel buffer directly instead of copying it.
+ * Per-pixel loops run in row bands on the shared {@link RowExecutor}.
+ * Operations that map every pixel on its own are not computed when they are called: the result
+ * is kept as a pending {@link LazyImage} over its source, chained operations extend the chain,
+ * and the whole chain runs in one pass when the result, or something derived from it, is read.
+ * Operations that map each channel value on its own are compiled into {@link ChannelLut} tables,
+ * which fold into one another when they are chained.
+ * The named images are kept in an {@link ImageStore}, on the heap or off it as configured.
  */
 
 public class ImageModelImpl implements ImageModel {
 
-  private Map<String, int[][][]> images;
+  /**
+   * The name under which the histogram of the latest result can always be looked up.
+   */
+  public static final String LIVE_HISTOGRAM = "Histogram";
+
+  // The binomial [1 4 6 4 1] x [1 4 6 4 1] / 256 blur, which the convolver runs as two passes
+  static final Kernel BLUR_KERNEL = Kernel.of(new int[][]{
+      {1, 4, 6, 4, 1},
+      {4, 16, 24, 16, 4},
+      {6, 24, 36, 24, 6},
+      {4, 16, 24, 16, 4},
+      {1, 4, 6, 4, 1}}, 256);
+  static final Kernel SHARPEN_KERNEL = Kernel.of(new int[][]{
+      {-1, -1, -1, -1, -1},
+      {-1, 2, 2, 2, -1},
+      {-1, 2, 4, 2, -1},
+      {-1, 2, 2, 2, -1},
+      {-1, -1, -1, -1, -1}}, 8);
+  static final ColorMatrix SEPIA_MATRIX = new ColorMatrix(new int[]{
+      393, 769, 189,
+      349, 686, 168,
+      272, 534, 131}, 1000);
+  static final ColorMatrix LUMA_MATRIX = ColorMatrix.greyscale(2126, 7152, 722, 10000);
+  static final ColorMatrix INTENSITY_MATRIX = ColorMatrix.greyscale(1, 1, 1, 3);
+  static final ColorMatrix[] COMPONENT_MATRICES = {
+      ColorMatrix.greyscale(1, 0, 0, 1),
+      ColorMatrix.greyscale(0, 1, 0, 1),
+      ColorMatrix.greyscale(0, 0, 1, 1)};
+  // The value component: the largest of the three channels
+  static final PixelStage VALUE_STAGE = rgb -> {
+    int value = Math.max(PixelImage.red(rgb), Math.max(PixelImage.green(rgb),
+        PixelImage.blue(rgb)));
+    return PixelImage.pack(value, value, value);
+  };
+
+  private final RowExecutor executor = RowExecutor.shared();
+  private final Convolver convolver = new Convolver(executor);
+  private final Resampler resampler = new Resampler(executor);
+  private final HaarCompressor compressor = new HaarCompressor(executor);
+  private final ImageStore images;
+  private Map<String, LazyImage> pending;
+  private PixelImage current;
+  private PixelImage displayed;
   private BufferedImage currentImage;
+  private PixelImage histogramSource;
+  private PixelImage histogramPixels;
   private BufferedImage histImage;
+  private long histVersion;
+  private Histogram counts;
+  private String pendingCurrent;
+  private String pendingHistogram;
 
+  /**
+   * Constructs a model that keeps its images in the store chosen by the {@code image.storage}
+   * system property.
+   */
   public ImageModelImpl() {
-    images = new HashMap<>();
+    this(ImageStore.configured());
+  }
+
+  /**
+   * Constructs a model that keeps its images in the given store.
+   *
+   * @param images the store for the named images; the model owns it.
+   */
+  public ImageModelImpl(ImageStore images) {
+    this.images = images;
+    pending = new HashMap<>();
   }
 
   // Load an image and associate it with a given name
   @Override
   public void loadImage(int[][][] image, String imageName) throws IOException {
-    images.put(imageName, image);
-    currentImage = int3dToBufferedImage(image);
-    histogram(imageName, "Histogram");
+    publish(imageName, PixelImage.fromArray(image));
   }
 
-  private int[][][] bufferedToInt3d(BufferedImage bufferedImage) {
-    int width = bufferedImage.getWidth();
-    int height = bufferedImage.getHeight();
-    int[][][] image = new int[height][width][3];
+  @Override
+  public void loadImage(PixelImage image, String imageName) {
+    publish(imageName, image);
+  }
 
-    for (int row = 0; row < height; row++) {
-      for (int col = 0; col < width; col++) {
-        int rgb = bufferedImage.getRGB(col, row);
-        image[row][col][0] = (rgb >> 16) & 0xFF; // Red
-        image[row][col][1] = (rgb >> 8) & 0xFF;  // Green
-        image[row][col][2] = rgb & 0xFF;           // Blue
+  /**
+   * Wraps a packed image in a BufferedImage without copying its pixels.
+   * The caller must make sure the pixels are not written while the BufferedImage is in use.
+   *
+   * @param image the image to wrap.
+   * @return a TYPE_INT_RGB compatible BufferedImage over the same pixel buffer.
+   */
+  private BufferedImage toBufferedImage(PixelImage image) {
+    int[] masks = {0xFF0000, 0xFF00, 0xFF};
+    DataBufferInt buffer = new DataBufferInt(image.getPixels(), image.getPixels().length);
+    WritableRaster raster = Raster.createPackedRaster(buffer, image.getWidth(),
+        image.getHeight(), image.getStride(), masks, null);
+    DirectColorModel colorModel = new DirectColorModel(24, masks[0], masks[1], masks[2]);
+    return new BufferedImage(colorModel, raster, false, null);
+  }
+
+  /**
+   * Looks up a stored image without copying it.
+   *
+   * @param imageName the name of the image.
+   * @return the stored image.
+   * @throws IllegalArgumentException if no image is stored under the name.
+   */
+  private PixelImage lookup(String imageName) {
+    if (LIVE_HISTOGRAM.equals(imageName)) {
+      if (pendingHistogram != null) {
+        materialize(pendingHistogram);
+      }
+      if (histogramSource != null) {
+        return histogramOf(histogramSource);
       }
     }
-
+    if (pending.containsKey(imageName)) {
+      return materialize(imageName);
+    }
+    PixelImage image = images.get(imageName);
+    if (image == null) {
+      throw new IllegalArgumentException("Image not found: " + imageName);
+    }
     return image;
   }
 
-  private BufferedImage int3dToBufferedImage(int[][][] image) {
-    int height = image.length;
-    int width = image[0].length;
-    BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+  /**
+   * Stores an image under a name, releasing the handle it replaces.
+   *
+   * @param imageName the name to store the image under.
+   * @param image     the image handle, now owned by the model.
+   */
+  private void store(String imageName, PixelImage image) {
+    discard(imageName);
+    images.put(imageName, image);
+  }
 
-    for (int row = 0; row < height; row++) {
-      for (int col = 0; col < width; col++) {
-        int r = image[row][col][0];
-        int g = image[row][col][1];
-        int b = image[row][col][2];
-        int rgb = (r << 16) | (g << 8) | b;
-        bufferedImage.setRGB(col, row, rgb);
-      }
+  /**
+   * Makes the given image the one shown by {@link #getCurrentImage()}.
+   *
+   * @param image the image to show.
+   */
+  private void setCurrent(PixelImage image) {
+    if (current != null) {
+      current.release();
     }
+    current = image.share();
+    pendingCurrent = null;
+  }
 
-    return bufferedImage;
+  /**
+   * Makes the given image the one whose histogram is shown by {@link #getHistImage()}.
+   *
+   * @param image the image to show the histogram of.
+   */
+  private void setHistogramSource(PixelImage image) {
+    if (histogramSource != null) {
+      histogramSource.release();
+    }
+    histogramSource = image.share();
+    pendingHistogram = null;
+  }
+
+  /**
+   * Stores the result of an operation and makes it the current image.
+   *
+   * @param destImageName the name to store the result under.
+   * @param image         the result of the operation.
+   */
+  private void publish(String destImageName, PixelImage image) {
+    store(destImageName, image);
+    setCurrent(image);
+    setHistogramSource(image);
+  }
+
+  /**
+   * Records the result of a per-pixel operation without computing it. If the source is itself
+   * pending the stage is chained onto it, so a run of such operations is rendered in one pass
+   * over the original pixels once a result is read. The result becomes the current image.
+   *
+   * @param imageName     the name of the source image.
+   * @param destImageName the name to store the result under.
+   * @param stage         the per-pixel operation.
+   */
+  private void defer(String imageName, String destImageName, PixelStage stage) {
+    LazyImage source = pending.get(imageName);
+    LazyImage result = source != null ? source.then(stage)
+        : new LazyImage(lookup(imageName), stage);
+
+    // The new result supersedes whatever was about to be shown
+    pendingCurrent = null;
+    pendingHistogram = null;
+    discard(destImageName);
+    images.remove(destImageName);
+    pending.put(destImageName, result);
+
+    if (current != null) {
+      current.release();
+      current = null;
+    }
+    if (histogramSource != null) {
+      histogramSource.release();
+      histogramSource = null;
+    }
+    pendingCurrent = destImageName;
+    pendingHistogram = destImageName;
+  }
+
+  /**
+   * Computes a pending result and stores it in place of the pending node.
+   *
+   * @param imageName the name of the pending result.
+   * @return the computed image.
+   */
+  private PixelImage materialize(String imageName) {
+    PixelImage image = pending.remove(imageName).render(executor);
+    images.put(imageName, image);
+    if (imageName.equals(pendingCurrent)) {
+      setCurrent(image);
+    }
+    if (imageName.equals(pendingHistogram)) {
+      setHistogramSource(image);
+    }
+    return image;
+  }
+
+  /**
+   * Drops the pending result stored under a name, computing it first only if it is still
+   * waiting to be shown as the current image or histogram.
+   *
+   * @param imageName the name of the pending result.
+   */
+  private void discard(String imageName) {
+    if (!pending.containsKey(imageName)) {
+      return;
+    }
+    if (imageName.equals(pendingCurrent) || imageName.equals(pendingHistogram)) {
+      materialize(imageName);
+    } else {
+      pending.remove(imageName).release();
+    }
   }
 
   @Override
   public void saveImage(String filePath, int[][][] imageSave) throws IOException {
-    images.put(filePath, imageSave);
-    currentImage = int3dToBufferedImage(imageSave);
+    publish(filePath, PixelImage.fromArray(imageSave));
+  }
 
-    histogram(filePath, "Histogram");
+  @Override
+  public void saveImage(String filePath, PixelImage image) {
+    publish(filePath, image);
   }
 
 
   @Override
   public void brighten(int value, String imageName, String destImageName) {
-    int[][][] image = getImage(imageName);
-    int[][][] brightenedImage = new int[image.length][image[0].length][3];
-
-    for (int row = 0; row < image.length; row++) {
-      for (int col = 0; col < image[0].length; col++) {
-        for (int ch = 0; ch < 3; ch++) {
-          brightenedImage[row][col][ch] = clamp(image[row][col][ch] + value);
-        }
-      }
-    }
-    images.put(destImageName, brightenedImage);
-    currentImage = int3dToBufferedImage(brightenedImage);
-    histogram(destImageName, "Histogram");
+    defer(imageName, destImageName, ChannelLut.uniform(v -> v + value));
   }
 
   @Override
   public void flipHorizontal(String imageName, String destImageName) {
-    int[][][] image = getImage(imageName);
-    int[][][] flippedImage = new int[image.length][image[0].length][3];
-
-    for (int row = 0; row < image.length; row++) {
-      for (int col = 0; col < image[0].length; col++) {
-        flippedImage[row][col] = image[row][image[0].length - 1 - col];
+    PixelImage image = lookup(imageName);
+    int width = image.getWidth();
+    int height = image.getHeight();
+    PixelImage flippedImage = new PixelImage(width, height);
+    int[] src = image.getPixels();
+    int[] dst = flippedImage.getPixels();
+
+    executor.forEachRow(height, width, (startRow, endRow) -> {
+      for (int row = startRow; row < endRow; row++) {
+        int in = image.rowOffset(row) + width - 1;
+        int out = flippedImage.rowOffset(row);
+        for (int col = 0; col < width; col++) {
+          dst[out + col] = src[in - col];
+        }
       }
-    }
-    images.put(destImageName, flippedImage);
-    currentImage = int3dToBufferedImage(flippedImage);
-    histogram(destImageName, "Histogram");
+    });
+    publish(destImageName, flippedImage);
   }
 
   @Override
   public void flipVertical(String imageName, String destImageName) {
-    int[][][] image = getImage(imageName);
-    int[][][] flippedImage = new int[image.length][image[0].length][3];
-
-    for (int row = 0; row < image.length; row++) {
-      flippedImage[row] = image[image.length - 1 - row];
-    }
-    images.put(destImageName, flippedImage);
-    currentImage = int3dToBufferedImage(flippedImage);
-    histogram(destImageName, "Histogram");
+    PixelImage image = lookup(imageName);
+    int width = image.getWidth();
+    int height = image.getHeight();
+    PixelImage flippedImage = new PixelImage(width, height);
+
+    executor.forEachRow(height, width, (startRow, endRow) -> {
+      for (int row = startRow; row < endRow; row++) {
+        System.arraycopy(image.getPixels(), image.rowOffset(height - 1 - row),
+            flippedImage.getPixels(), flippedImage.rowOffset(row), width);
+      }
+    });
+    publish(destImageName, flippedImage);
   }
 
   @Override
@@ -140,21 +348,7 @@ public class ImageModelImpl implements ImageModel {
   }
 
   private void extractComponent(int componentIndex, String imageName, String destImageName) {
-    int[][][] image = getImage(imageName);
-    int[][][] componentImage = new int[image.length][image[0].length][3];
-
-    for (int row = 0; row < image.length; row++) {
-      for (int col = 0; col < image[0].length; col++) {
-        int value = image[row][col][componentIndex];
-        componentImage[row][col][0] = value;
-        componentImage[row][col][1] = value;
-        componentImage[row][col][2] = value;
-      }
-    }
-    images.put(destImageName, componentImage);
-
-    currentImage = int3dToBufferedImage(componentImage);
-    histogram(destImageName, "Histogram");
+    defer(imageName, destImageName, COMPONENT_MATRICES[componentIndex]);
   }
 
   @Override
@@ -173,165 +367,139 @@ public class ImageModelImpl implements ImageModel {
   }
 
   private void applyComponentTransformation(String imageName, String destImageName, int mode) {
-    int[][][] image = getImage(imageName);
-    int[][][] transformedImage = new int[image.length][image[0].length][3];
-
-    for (int row = 0; row < image.length; row++) {
-      for (int col = 0; col < image[0].length; col++) {
-        int componentValue;
-        switch (mode) {
-          case 1: // Value component (maximum of RGB)
-            componentValue = Math.max(image[row][col][0],
-                Math.max(image[row][col][1], image[row][col][2]));
-            break;
-          case 2: // Luma component (weighted average of RGB)
-            componentValue = (int) (0.2126 * image[row][col][0]
-                + 0.7152 * image[row][col][1]
-                + 0.0722 * image[row][col][2]);
-            break;
-          case 3: // Intensity component (average of RGB)
-            componentValue = (image[row][col][0] + image[row][col][1] + image[row][col][2]) / 3;
-            break;
-          default:
-            throw new IllegalArgumentException("Invalid mode for component transformation.");
-        }
-        transformedImage[row][col][0] = componentValue;
-        transformedImage[row][col][1] = componentValue;
-        transformedImage[row][col][2] = componentValue;
-      }
+    PixelStage component;
+    switch (mode) {
+      case 1: // Value component (maximum of RGB)
+        component = VALUE_STAGE;
+        break;
+      case 2: // Luma component (weighted average of RGB)
+        component = LUMA_MATRIX;
+        break;
+      case 3: // Intensity component (average of RGB)
+        component = INTENSITY_MATRIX;
+        break;
+      default:
+        throw new IllegalArgumentException("Invalid mode for component transformation.");
     }
-    images.put(destImageName, transformedImage);
-
-    currentImage = int3dToBufferedImage(transformedImage);
-    histogram(destImageName, "Histogram");
+    defer(imageName, destImageName, component);
   }
 
   @Override
   public int[][][] getImage(String imageName) {
-    if (!images.containsKey(imageName)) {
-      throw new IllegalArgumentException("Image not found: " + imageName);
-    }
-
-    int[][][] originalImage = images.get(imageName);
-    int[][][] copiedImage = new int[originalImage.length][originalImage[0].length][3];
+    PixelImage image = lookup(imageName);
+    setCurrent(image);
+    return image.toArray();
+  }
 
-    for (int i = 0; i < originalImage.length; i++) {
-      for (int j = 0; j < originalImage[i].length; j++) {
-        for (int k = 0; k < 3; k++) {
-          copiedImage[i][j][k] = originalImage[i][j][k]; //deep copy
-        }
-      }
-    }
+  @Override
+  public PixelImage getPixelImage(String imageName) {
+    PixelImage image = lookup(imageName);
+    setCurrent(image);
+    return image.share();
+  }
 
-    currentImage = int3dToBufferedImage(copiedImage);
-    return copiedImage;
+  @Override
+  public void dropImage(String imageName) {
+    // A pending result that is still to be shown is computed first, as when it is replaced
+    discard(imageName);
+    images.remove(imageName);
   }
 
   @Override
   public void rgbSplit(String imageName, String redDest, String greenDest, String blueDest) {
-    int[][][] image = getImage(imageName);
-
-    int[][][] redImage = new int[image.length][image[0].length][3];
-    int[][][] greenImage = new int[image.length][image[0].length][3];
-    int[][][] blueImage = new int[image.length][image[0].length][3];
-
-    for (int row = 0; row < image.length; row++) {
-      for (int col = 0; col < image[0].length; col++) {
-        int red = image[row][col][0];
-        redImage[row][col][0] = red;
-        redImage[row][col][1] = red;
-        redImage[row][col][2] = red;
-
-        int green = image[row][col][1];
-        greenImage[row][col][0] = green;
-        greenImage[row][col][1] = green;
-        greenImage[row][col][2] = green;
-
-        int blue = image[row][col][2];
-        blueImage[row][col][0] = blue;
-        blueImage[row][col][1] = blue;
-        blueImage[row][col][2] = blue;
+    PixelImage image = lookup(imageName);
+    int width = image.getWidth();
+    int height = image.getHeight();
+    setCurrent(image);
+
+    PixelImage redImage = new PixelImage(width, height);
+    PixelImage greenImage = new PixelImage(width, height);
+    PixelImage blueImage = new PixelImage(width, height);
+    int[] src = image.getPixels();
+
+    executor.forEachRow(height, width, (startRow, endRow) -> {
+      for (int row = startRow; row < endRow; row++) {
+        int in = image.rowOffset(row);
+        int out = redImage.rowOffset(row);
+        for (int col = 0; col < width; col++) {
+          int rgb = src[in + col];
+          int red = PixelImage.red(rgb);
+          redImage.getPixels()[out + col] = PixelImage.pack(red, red, red);
+
+          int green = PixelImage.green(rgb);
+          greenImage.getPixels()[out + col] = PixelImage.pack(green, green, green);
+
+          int blue = PixelImage.blue(rgb);
+          blueImage.getPixels()[out + col] = PixelImage.pack(blue, blue, blue);
+        }
       }
-    }
+    });
 
-    images.put(redDest, redImage);
-    images.put(greenDest, greenImage);
-    images.put(blueDest, blueImage);
+    store(redDest, redImage);
+    store(greenDest, greenImage);
+    store(blueDest, blueImage);
   }
 
   @Override
   public void rgbCombine(String destImageName, String redImageName, String greenImageName,
                          String blueImageName) {
-    int[][][] redImage = getImage(redImageName);
-    int[][][] greenImage = getImage(greenImageName);
-    int[][][] blueImage = getImage(blueImageName);
-
-    int[][][] combinedImage = new int[redImage.length][redImage[0].length][3];
-    for (int row = 0; row < redImage.length; row++) {
-      for (int col = 0; col < redImage[0].length; col++) {
-        combinedImage[row][col][0] = redImage[row][col][0];
-        combinedImage[row][col][1] = greenImage[row][col][1];
-        combinedImage[row][col][2] = blueImage[row][col][2];
+    PixelImage redImage = lookup(redImageName);
+    PixelImage greenImage = lookup(greenImageName);
+    PixelImage blueImage = lookup(blueImageName);
+    int width = redImage.getWidth();
+    int height = redImage.getHeight();
+    requireSameSize(redImage, greenImage);
+    requireSameSize(redImage, blueImage);
+
+    PixelImage combinedImage = new PixelImage(width, height);
+    int[] dst = combinedImage.getPixels();
+    executor.forEachRow(height, width, (startRow, endRow) -> {
+      for (int row = startRow; row < endRow; row++) {
+        int out = combinedImage.rowOffset(row);
+        for (int col = 0; col < width; col++) {
+          dst[out + col] = (redImage.getRGB(col, row) & 0xFF0000)
+              | (greenImage.getRGB(col, row) & 0x00FF00)
+              | (blueImage.getRGB(col, row) & 0x0000FF);
+        }
       }
+    });
+    store(destImageName, combinedImage);
+    setCurrent(combinedImage);
+  }
+
+  private void requireSameSize(PixelImage first, PixelImage second) {
+    if (first.getWidth() != second.getWidth() || first.getHeight() != second.getHeight()) {
+      throw new IllegalArgumentException("Images must have the same dimensions.");
     }
-    images.put(destImageName, combinedImage);
-    currentImage = int3dToBufferedImage(combinedImage);
   }
 
   @Override
   public void blur(String imageName, String destImageName) {
-    int[][][] image = getImage(imageName);
-    int[][][] blurredImage = new int[image.length][image[0].length][3];
-    float[] blurKernel = {
-        1 / 256f, 4 / 256f, 6 / 256f, 4 / 256f, 1 / 256f,
-        4 / 256f, 16 / 256f, 24 / 256f, 16 / 256f, 4 / 256f,
-        6 / 256f, 24 / 256f, 36 / 256f, 24 / 256f, 6 / 256f,
-        4 / 256f, 16 / 256f, 24 / 256f, 16 / 256f, 4 / 256f,
-        1 / 256f, 4 / 256f, 6 / 256f, 4 / 256f, 1 / 256f};
-
-    applyKernel(image, blurredImage, blurKernel);
-    images.put(destImageName, blurredImage);
-
-    currentImage = int3dToBufferedImage(blurredImage);
-    histogram(destImageName, "Histogram");
+    PixelImage image = lookup(imageName);
+    publish(destImageName, convolver.convolve(image, BLUR_KERNEL));
   }
 
   @Override
   public void sharpen(String imageName, String destImageName) {
-    int[][][] image = getImage(imageName);
-    int[][][] sharpenedImage = new int[image.length][image[0].length][3];
-    float[] sharpenKernel = {-1 / 8f, -1 / 8f, -1 / 8f, -1 / 8f, -1 / 8f, -1 / 8f, 2 / 8f, 2 / 8f,
-        2 / 8f, -1 / 8f, -1 / 8f, 2 / 8f, 4 / 8f, 2 / 8f, -1 / 8f, -1 / 8f, 2 / 8f, 2 / 8f,
-        2 / 8f, -1 / 8f, -1 / 8f, -1 / 8f, -1 / 8f, -1 / 8f, -1 / 8f};
-    applyKernel(image, sharpenedImage, sharpenKernel);
-    images.put(destImageName, sharpenedImage);
-    currentImage = int3dToBufferedImage(sharpenedImage);
-    histogram(destImageName, "Histogram");
+    PixelImage image = lookup(imageName);
+    publish(destImageName, convolver.convolve(image, SHARPEN_KERNEL));
+  }
+
+  @Override
+  public void convolve(String imageName, String destImageName, Kernel kernel,
+                       BorderMode border) {
+    PixelImage image = lookup(imageName);
+    publish(destImageName, convolver.convolve(image, kernel, border));
   }
 
   @Override
   public void sepia(String imageName, String destImageName) {
-    int[][][] image = getImage(imageName);
-    int[][][] sepiaImage = new int[image.length][image[0].length][3];
-
-    for (int row = 0; row < image.length; row++) {
-      for (int col = 0; col < image[0].length; col++) {
-        int red = image[row][col][0];
-        int green = image[row][col][1];
-        int blue = image[row][col][2];
-
-        int newRed = clamp((int) (0.393 * red + 0.769 * green + 0.189 * blue));
-        int newGreen = clamp((int) (0.349 * red + 0.686 * green + 0.168 * blue));
-        int newBlue = clamp((int) (0.272 * red + 0.534 * green + 0.131 * blue));
-
-        sepiaImage[row][col][0] = newRed;
-        sepiaImage[row][col][1] = newGreen;
-        sepiaImage[row][col][2] = newBlue;
-      }
-    }
-    images.put(destImageName, sepiaImage);
-    currentImage = int3dToBufferedImage(sepiaImage);
-    histogram(destImageName, "Histogram");
+    defer(imageName, destImageName, SEPIA_MATRIX);
+  }
+
+  @Override
+  public void colorMatrix(String imageName, String destImageName, ColorMatrix matrix) {
+    defer(imageName, destImageName, matrix);
   }
 
   @Override
@@ -340,74 +508,68 @@ public class ImageModelImpl implements ImageModel {
       throw new IllegalArgumentException("Compression percentage should be between 0 and 100.");
     }
 
-    float new_percentage = 100 - percentage;
-
-    int[][][] originalImage = getImage(imageName);
-    int originalHeight = originalImage.length;
-    int originalWidth = originalImage[0].length;
-
-    // Calculate the new dimensions
-    int newWidth = Math.max(1, (int) (originalWidth * (new_percentage / 100)));
-    int newHeight = Math.max(1, (int) (originalHeight * (new_percentage / 100)));
-    int[][][] compressedImage = new int[newHeight][newWidth][3];
-
-    // Apply nearest-neighbor compression
-    for (int row = 0; row < newHeight; row++) {
-      for (int col = 0; col < newWidth; col++) {
-        // Find the corresponding pixel in the original image
-        int origRow = (int) (row * ((float) originalHeight / newHeight));
-        int origCol = (int) (col * ((float) originalWidth / newWidth));
-
-        // Copy the RGB values
-        compressedImage[row][col] = originalImage[origRow][origCol];
-      }
-    }
-
-    // Store the compressed image in the map
-    images.put(destImageName, compressedImage);
-    currentImage = int3dToBufferedImage(compressedImage);
-    histogram(destImageName, "Histogram");
-
+    PixelImage originalImage = lookup(imageName);
+    publish(destImageName, compressor.compress(originalImage, percentage));
   }
 
   @Override
   public void histogram(String imageName, String destImageName) {
-    int[][][] image = getImage(imageName);
-    if (image == null) {
-      throw new IllegalArgumentException("Image not found: " + imageName);
-    }
+    PixelImage image = lookup(imageName);
+    setCurrent(image);
+    setHistogramSource(image);
+    store(destImageName, histogramOf(image).share());
+  }
 
-    // Initialize histograms for RGB channels with 256 bins each
-    int[] redHistogram = new int[256];
-    int[] greenHistogram = new int[256];
-    int[] blueHistogram = new int[256];
-
-    // Populate histograms by counting pixel values for each channel
-    for (int[][] row : image) {
-      for (int[] pixel : row) {
-        int r = pixel[0];
-        int g = pixel[1];
-        int b = pixel[2];
-        redHistogram[r]++;
-        greenHistogram[g]++;
-        blueHistogram[b]++;
-      }
+  /**
+   * Provides the rendered histogram of an image, computing it only if the cached one was
+   * rendered from a different version of the pixels.
+   *
+   * @param image the image to get the histogram of.
+   * @return the rendered histogram, owned by the cache.
+   */
+  private PixelImage histogramOf(PixelImage image) {
+    if (histogramPixels != null && histVersion == image.getVersion()) {
+      return histogramPixels;
     }
 
+    Histogram histogram = countsOf(image);
+    int[] redHistogram = histogram.get(Histogram.RED);
+    int[] greenHistogram = histogram.get(Histogram.GREEN);
+    int[] blueHistogram = histogram.get(Histogram.BLUE);
+
     // Create an image to display the histograms
     int width = 512;  // Width of histogram image
     int height = 256; // Height of the histogram area
-    BufferedImage histogramImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    PixelImage histogramImage = new PixelImage(width, height);
 
     // Draw histograms on the image
     drawCombinedHistogram(histogramImage, redHistogram, greenHistogram, blueHistogram, height);
-    images.put(destImageName, bufferedToInt3d(histogramImage));
 
-    histImage = histogramImage;
+    if (histogramPixels != null) {
+      histogramPixels.release();
+    }
+    histogramPixels = histogramImage;
+    histVersion = image.getVersion();
+    histImage = null;
+    return histogramImage;
   }
 
   /**
-   * Draws combined color histograms on the given BufferedImage.
+   * Provides the channel counts of an image, counting it only if the cached counts were taken
+   * from a different version of the pixels.
+   *
+   * @param image the image to count.
+   * @return the channel counts.
+   */
+  private Histogram countsOf(PixelImage image) {
+    if (counts == null || !counts.isOf(image)) {
+      counts = Histogram.count(image, executor);
+    }
+    return counts;
+  }
+
+  /**
+   * Draws combined color histograms on the given image.
    *
    * @param image          the image to draw on
    * @param redHistogram   the histogram array for red
@@ -415,7 +577,7 @@ public class ImageModelImpl implements ImageModel {
    * @param blueHistogram  the histogram array for blue
    * @param height         the height of the histogram area
    */
-  private void drawCombinedHistogram(BufferedImage image, int[] redHistogram,
+  private void drawCombinedHistogram(PixelImage image, int[] redHistogram,
                                      int[] greenHistogram, int[] blueHistogram, int height) {
     int maxFrequency = Math.max(Math.max(Arrays.stream(redHistogram).max().orElse(1),
             Arrays.stream(greenHistogram).max().orElse(1)),
@@ -440,7 +602,7 @@ public class ImageModelImpl implements ImageModel {
   }
 
   /**
-   * Draws a line between two points on a BufferedImage.
+   * Draws a line between two points on an image.
    *
    * @param image the image to draw on
    * @param x1    the x-coordinate of the starting point
@@ -449,7 +611,9 @@ public class ImageModelImpl implements ImageModel {
    * @param y2    the y-coordinate of the ending point
    * @param color the color of the line
    */
-  private void drawLine(BufferedImage image, int x1, int y1, int x2, int y2, Color color) {
+  private void drawLine(PixelImage image, int x1, int y1, int x2, int y2, Color color) {
+    int[] pixels = image.getWritablePixels();
+    int rgb = color.getRGB() & 0xFFFFFF;
     int dx = Math.abs(x2 - x1);
     int sx = x1 < x2 ? 1 : -1;
     int dy = -Math.abs(y2 - y1);
@@ -458,7 +622,7 @@ public class ImageModelImpl implements ImageModel {
 
     while (true) {
       if (x1 >= 0 && x1 < image.getWidth() && y1 >= 0 && y1 < image.getHeight()) {
-        image.setRGB(x1, y1, color.getRGB());
+        pixels[image.rowOffset(y1) + x1] = rgb;
       }
       if (x1 == x2 && y1 == y2) {
         break;
@@ -478,28 +642,25 @@ public class ImageModelImpl implements ImageModel {
   @Override
   public void colorCorrect(String imageName, String destImageName) {
     // Retrieve the image data for processing
-    int[][][] image = getImage(imageName);
-    if (image == null) {
-      throw new IllegalArgumentException("Image not found: " + imageName);
-    }
+    PixelImage image = lookup(imageName);
 
-    // Initialize histograms for RGB channels with 256 bins each
-    int[] redHistogram = new int[256];
-    int[] greenHistogram = new int[256];
-    int[] blueHistogram = new int[256];
-
-    // Populate histograms by counting pixel values for each channel
-    for (int[][] row : image) {
-      for (int[] pixel : row) {
-        int r = pixel[0];
-        int g = pixel[1];
-        int b = pixel[2];
-        redHistogram[r]++;
-        greenHistogram[g]++;
-        blueHistogram[b]++;
-      }
-    }
+    // Reuse the channel counts of the displayed histogram when it shows the same pixels
+    Histogram histogram = countsOf(image);
+    defer(imageName, destImageName, colorCorrection(histogram.get(Histogram.RED),
+        histogram.get(Histogram.GREEN), histogram.get(Histogram.BLUE)));
+  }
 
+  /**
+   * Builds the colour correction of an image from its channel counts: every channel is shifted
+   * so that its peak lines up with the average of the three peaks.
+   *
+   * @param redHistogram   the 256 counts of the red channel.
+   * @param greenHistogram the 256 counts of the green channel.
+   * @param blueHistogram  the 256 counts of the blue channel.
+   * @return the table that shifts the channels.
+   */
+  static ChannelLut colorCorrection(int[] redHistogram, int[] greenHistogram,
+                                    int[] blueHistogram) {
     // Find the peaks for each channel
     Peak redPeak = findPeak(redHistogram);
     Peak greenPeak = findPeak(greenHistogram);
@@ -513,37 +674,27 @@ public class ImageModelImpl implements ImageModel {
     int greenOffset = averagePeak - greenPeak.position;
     int blueOffset = averagePeak - bluePeak.position;
 
-    // Apply the offsets to the image data
-    int[][][] newImage = new int[image.length][image[0].length][3];
-
-    for (int y = 0; y < image.length; y++) {
-      for (int x = 0; x < image[y].length; x++) {
-        int r = image[y][x][0];
-        int g = image[y][x][1];
-        int b = image[y][x][2];
-
-        // Apply offsets and clamp values
-        r = clamp(r + redOffset);
-        g = clamp(g + greenOffset);
-        b = clamp(b + blueOffset);
-
-        // Update the pixel values
-        newImage[y][x][0] = r;
-        newImage[y][x][1] = g;
-        newImage[y][x][2] = b;
-      }
-    }
-
-    // Store the color corrected image
-    images.put(destImageName, newImage);
-    currentImage = int3dToBufferedImage(newImage);
-    histogram(destImageName, "Histogram");
-
+    // Apply the offsets to the image data, clamping the values
+    return ChannelLut.offset(redOffset, greenOffset, blueOffset);
   }
 
   @Override
   public void levelAdjust(String imageName, String destImageName,
                           String black, String mid, String white) {
+    defer(imageName, destImageName, levels(black, mid, white));
+  }
+
+  /**
+   * Builds the levels adjustment that maps the black, mid and white points through a quadratic
+   * curve.
+   *
+   * @param black the black point.
+   * @param mid   the mid point.
+   * @param white the white point.
+   * @return the table that adjusts the channels.
+   * @throws IllegalArgumentException if the points are not ordered values between 0 and 255.
+   */
+  static ChannelLut levels(String black, String mid, String white) {
     // Parse the input levels
     int b = Integer.parseInt(black);
     int m = Integer.parseInt(mid);
@@ -554,107 +705,91 @@ public class ImageModelImpl implements ImageModel {
       throw new IllegalArgumentException("Levels must be between 0 and 255 and b < m < w");
     }
 
-    // Retrieve the source image
-    int[][][] sourceImage = images.get(imageName);
-    if (sourceImage == null) {
-      throw new IllegalArgumentException("Image not found: " + imageName);
-    }
-
-    int height = sourceImage.length;
-    int width = sourceImage[0].length;
-
-    // Prepare the output image
-    int[][][] levelAdjustImage = new int[height][width][3];
-
     // Calculate coefficients A, B, C for the quadratic function
     double a1 = (128.0 - 255.0 * (m - b) / (w - b)) / ((m - b) * (m - w));
     double b1 = -2 * a1 * b + 255.0 / (w - b);
     double c1 = 0;  // Ensuring curve passes through (b, 0)
 
-    // Loop through each pixel and apply the levels adjustment
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        for (int channel = 0; channel < 3; channel++) {
-          int originalValue = sourceImage[y][x][channel];
-          double adjustedValue;
-
-          double v = a1 * (originalValue - b) * (originalValue - b) + b1 * (originalValue - b) + c1;
-          if (channel == 0) { // Red channel: apply full adjustment
-            if (originalValue < b) {
-              adjustedValue = 0; // Clamp to black for shadows
-            } else if (originalValue > w) {
-              adjustedValue = 255; // Clamp to white for highlights
-            } else {
-              // Apply quadratic transformation for red channel
-              adjustedValue = v;
-            }
-          } else { // Green and Blue channels: apply scaled down adjustment
-            if (originalValue < b) {
-              adjustedValue = 0;
-            } else if (originalValue > w) {
-              adjustedValue = 255;
-            } else {
-              // Apply a lower scaling factor for green and blue
-              adjustedValue = 0.6 * v;
-            }
-          }
-
-          // Clamp the value to be between 0 and 255
-          adjustedValue = Math.max(0, Math.min(255, adjustedValue));
-
-          // Set the new value in the destination image
-          levelAdjustImage[y][x][channel] = (int) adjustedValue;
-        }
-      }
-    }
+    // Evaluate the curve once per channel value and map every pixel through the tables
+    IntUnaryOperator red = originalValue -> levelCurve(originalValue, b, w, a1, b1, c1, 1.0);
+    IntUnaryOperator greenBlue = originalValue -> levelCurve(originalValue, b, w, a1, b1, c1,
+        0.6);
+    return ChannelLut.of(red, greenBlue, greenBlue);
+  }
 
-    // Store the adjusted image
-    images.put(destImageName, levelAdjustImage);
-    currentImage = int3dToBufferedImage(levelAdjustImage);
-    histogram(destImageName, "Histogram");
+  /**
+   * Evaluates the levels adjustment curve for one channel value.
+   *
+   * @param originalValue the channel value.
+   * @param b             the black level.
+   * @param w             the white level.
+   * @param a1            the quadratic coefficient of the curve.
+   * @param b1            the linear coefficient of the curve.
+   * @param c1            the constant coefficient of the curve.
+   * @param scale         the factor applied to the curve, 1 for red and 0.6 for green and blue.
+   * @return the adjusted value between 0 and 255.
+   */
+  private static int levelCurve(int originalValue, int b, int w, double a1, double b1, double c1,
+                                double scale) {
+    double adjustedValue;
+    if (originalValue < b) {
+      adjustedValue = 0; // Clamp to black for shadows
+    } else if (originalValue > w) {
+      adjustedValue = 255; // Clamp to white for highlights
+    } else {
+      int d = originalValue - b;
+      double v = a1 * d * d + b1 * d + c1;
+      // Apply the quadratic transformation, scaled down for green and blue
+      adjustedValue = scale * v;
+    }
 
+    // Clamp the value to be between 0 and 255
+    return (int) Math.max(0, Math.min(255, adjustedValue));
   }
 
   @Override
   public void split(String imageName, String processedImageName, float percentage) {
     // Retrieve original and processed (transformed) images
-    int[][][] originalImage = getImage(imageName);
-    int[][][] transformedImage = getImage(processedImageName);
+    PixelImage originalImage = lookup(imageName);
+    PixelImage transformedImage = lookup(processedImageName);
 
     // Validate inputs
-    if (originalImage == null || transformedImage == null) {
-      throw new IllegalArgumentException("Invalid image names provided.");
-    }
     if (percentage < 0 || percentage > 100) {
       throw new IllegalArgumentException("Percentage must be between 0 and 100.");
     }
 
     // Calculate the vertical split point
-    int width = originalImage[0].length;
+    int width = originalImage.getWidth();
+    int height = originalImage.getHeight();
     int splitPoint = (int) (width * (percentage / 100.0));
-
-    // Combine original and transformed images
-    int[][][] combinedImage = new int[originalImage.length][originalImage[0].length][3];
-    for (int row = 0; row < originalImage.length; row++) {
-      for (int col = 0; col < width; col++) {
-        // Copy from the transformed image on the left side, and from the original on the right
-        if (col < splitPoint) {
-          combinedImage[row][col] = transformedImage[row][col];
-        } else {
-          combinedImage[row][col] = originalImage[row][col];
-        }
+    if (splitPoint > 0 && (transformedImage.getWidth() < splitPoint
+        || transformedImage.getHeight() < height)) {
+      throw new IllegalArgumentException("Images must have the same dimensions.");
+    }
+
+    // Keep the transformed pixels on the left side and restore the original on the right.
+    // The processed image is overwritten in place unless another handle still shares it.
+    PixelImage combinedImage = transformedImage;
+    if (transformedImage.getWidth() != width || transformedImage.getHeight() != height) {
+      combinedImage = new PixelImage(width, height);
+      for (int row = 0; row < height; row++) {
+        System.arraycopy(transformedImage.getPixels(), transformedImage.rowOffset(row),
+            combinedImage.getWritablePixels(), combinedImage.rowOffset(row), splitPoint);
       }
     }
+    int[] dst = combinedImage.getWritablePixels();
+    for (int row = 0; row < height; row++) {
+      System.arraycopy(originalImage.getPixels(), originalImage.rowOffset(row) + splitPoint,
+          dst, combinedImage.rowOffset(row) + splitPoint, width - splitPoint);
+    }
 
     // Save the combined split image
-    images.put(processedImageName, combinedImage);
-    currentImage = int3dToBufferedImage(combinedImage);
-    histogram(processedImageName, "Histogram");
+    publish(processedImageName, combinedImage);
   }
 
 
   // Helper method to find the peak in the histogram
-  private Peak findPeak(int[] channel) {
+  private static Peak findPeak(int[] channel) {
     int peakPos = -1;
     int peakHeight = 0;
 
@@ -667,10 +802,6 @@ public class ImageModelImpl implements ImageModel {
     return new Peak(peakPos, peakHeight);
   }
 
-  private int clamp(int val) {
-    return Math.max(0, Math.min(val, 255));
-  }
-
   // Peak class to hold position and height
   private static class Peak {
     int position;
@@ -682,98 +813,53 @@ public class ImageModelImpl implements ImageModel {
     }
   }
 
-  private void applyKernel(int[][][] image, int[][][] resultImage, float[] kernel) {
-    int kernelSize = (int) Math.sqrt(kernel.length);
-    int kernelOffset = kernelSize / 2;
-
-    for (int row = kernelOffset; row < image.length - kernelOffset; row++) {
-      for (int col = kernelOffset; col < image[0].length - kernelOffset; col++) {
-        for (int ch = 0; ch < 3; ch++) {
-          float newVal = 0.0f;
-          for (int kr = -kernelOffset; kr <= kernelOffset; kr++) {
-            for (int kc = -kernelOffset; kc <= kernelOffset; kc++) {
-              newVal += image[row + kr][col + kc][ch] * kernel[(kr + kernelOffset) * kernelSize
-                  + (kc + kernelOffset)];
-            }
-          }
-          resultImage[row][col][ch] = clamp((int) newVal);
-        }
-      }
-    }
-  }
-
   @Override
   public void resizeImage(String imageName, String destImageName, float newWidth, float newHeight) {
-    // Read the input image
-    int[][][] image = getImage(imageName);
-    BufferedImage originalImage = int3dToBufferedImage(image);
-
-    if (newWidth == 0) {
-      newWidth = image[0].length;
-    }
-
-    if (newHeight == 0) {
-      newHeight = image.length;
-    }
-
-    // Create a new image for the downsized version
-    BufferedImage resizedImage = new BufferedImage((int) newWidth, (int) newHeight,
-        originalImage.getType());
-
-    // Loop through each pixel in the resized image and apply bilinear interpolation
-    for (int y = 0; y < newHeight; y++) {
-      for (int x = 0; x < newWidth; x++) {
-        // Map the (x, y) location in the resized image to the original image
-        double origX = (double) x * originalImage.getWidth() / newWidth;
-        double origY = (double) y * originalImage.getHeight() / newHeight;
-
-        // Get the four closest pixels surrounding the (origX, origY) location
-        int x1 = (int) Math.floor(origX);
-        int x2 = Math.min((int) Math.ceil(origX), originalImage.getWidth() - 1);
-        int y1 = (int) Math.floor(origY);
-        int y2 = Math.min((int) Math.ceil(origY), originalImage.getHeight() - 1);
-
-        // Get the RGBA values for the four surrounding pixels
-        Color c00 = new Color(originalImage.getRGB(x1, y1));
-        Color c01 = new Color(originalImage.getRGB(x2, y1));
-        Color c10 = new Color(originalImage.getRGB(x1, y2));
-        Color c11 = new Color(originalImage.getRGB(x2, y2));
-
-        // Perform bilinear interpolation for each color component
-        int red = bilinearInterpolate(origX, origY, c00.getRed(), c01.getRed(), c10.getRed(),
-            c11.getRed());
-        int green = bilinearInterpolate(origX, origY, c00.getGreen(), c01.getGreen(),
-            c10.getGreen(), c11.getGreen());
-        int blue = bilinearInterpolate(origX, origY, c00.getBlue(), c01.getBlue(),
-            c10.getBlue(), c11.getBlue());
-
-        // Set the pixel in the resized image
-        Color newColor = new Color(red, green, blue);
-        resizedImage.setRGB(x, y, newColor.getRGB());
-      }
-    }
-
-    // Save the resized image to the specified output path
-    images.put(destImageName, bufferedToInt3d(resizedImage));
-    currentImage = resizedImage;
-    histogram(destImageName, "Histogram");
+    resizeImage(imageName, destImageName, newWidth, newHeight, ResampleFilter.BILINEAR);
   }
 
-  private static int bilinearInterpolate(double x, double y, int c00, int c01, int c10, int c11) {
-    // Perform bilinear interpolation for one color channel (R, G, or B)
-    double fx = x - Math.floor(x);
-    double fy = y - Math.floor(y);
-    return (int) ((1 - fx) * (1 - fy) * c00 + fx * (1 - fy) * c01 + (1 - fx)
-        * fy * c10 + fx * fy * c11);
+  @Override
+  public void resizeImage(String imageName, String destImageName, float newWidth, float newHeight,
+                          ResampleFilter filter) {
+    PixelImage originalImage = lookup(imageName);
+    int targetWidth = newWidth == 0 ? originalImage.getWidth() : (int) newWidth;
+    int targetHeight = newHeight == 0 ? originalImage.getHeight() : (int) newHeight;
+
+    // Save the resized image under the destination name
+    publish(destImageName, resampler.resize(originalImage, targetWidth, targetHeight, filter));
   }
 
   @Override
   public BufferedImage getCurrentImage() {
+    if (pendingCurrent != null) {
+      materialize(pendingCurrent);
+    }
+    if (current == null) {
+      return null;
+    }
+    if (displayed == null || displayed.getVersion() != current.getVersion()) {
+      // Hold a handle of our own so writers detach instead of changing what is on screen
+      if (displayed != null) {
+        displayed.release();
+      }
+      displayed = current.share();
+      currentImage = toBufferedImage(displayed);
+    }
     return currentImage;
   }
 
   @Override
   public BufferedImage getHistImage() {
+    if (pendingHistogram != null) {
+      materialize(pendingHistogram);
+    }
+    if (histogramSource == null) {
+      return null;
+    }
+    PixelImage histogram = histogramOf(histogramSource);
+    if (histImage == null) {
+      histImage = toBufferedImage(histogram);
+    }
     return histImage;
   }
 
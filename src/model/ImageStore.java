@@ -0,0 +1,61 @@
+package model;
+
+/**
+ * Holds the named images of {@link ImageModelImpl} between operations.
+ *
+ * <p>The store owns the handles it is given: putting an image under a name that is taken, or
+ * removing a name, releases the image it held. The image returned by {@link #get} stays valid
+ * until the name is put or removed again.
+ *
+ * <p>The store used by default is chosen by the system property {@code image.storage}:
+ * {@code heap} (the default) keeps the images as they are, {@code direct} keeps them off the
+ * Java heap in a {@link DirectImageStore}, and {@code spill} keeps at most
+ * {@code image.storage.budget} bytes of them on the heap and spills the rest to disk in a
+ * {@link SpillingImageStore}. The budget defaults to a quarter of the maximum heap size.
+ */
+public interface ImageStore {
+
+  /**
+   * Creates the store chosen by the {@code image.storage} system property.
+   *
+   * @return a new, empty store.
+   * @throws IllegalArgumentException if the property names an unknown store.
+   */
+  static ImageStore configured() {
+    String kind = System.getProperty("image.storage", "heap");
+    switch (kind.toLowerCase()) {
+      case "heap":
+        return new HeapImageStore();
+      case "direct":
+        return new DirectImageStore();
+      case "spill":
+        return new SpillingImageStore(Long.getLong("image.storage.budget",
+            Runtime.getRuntime().maxMemory() / 4));
+      default:
+        throw new IllegalArgumentException("Unknown image storage: " + kind);
+    }
+  }
+
+  /**
+   * Gets the image stored under a name.
+   *
+   * @param imageName the name of the image.
+   * @return the image, owned by the store, or null if no image is stored under the name.
+   */
+  PixelImage get(String imageName);
+
+  /**
+   * Stores an image under a name, releasing the image it replaces.
+   *
+   * @param imageName the name to store the image under.
+   * @param image     the image handle, now owned by the store.
+   */
+  void put(String imageName, PixelImage image);
+
+  /**
+   * Drops the image stored under a name and releases it.
+   *
+   * @param imageName the name of the image.
+   */
+  void remove(String imageName);
+}
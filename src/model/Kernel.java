@@ -0,0 +1,241 @@
+package model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable convolution kernel with integer weights and a common divisor.
+ * A pixel is filtered as the weighted sum of its neighbourhood divided by the divisor,
+ * so fractional kernels such as the 5x5 binomial blur (weights / 256) are represented exactly.
+ * The kernel has odd dimensions and is centred on the pixel being filtered.
+ *
+ * <p>When the weight matrix is the outer product of a column and a row vector the kernel is
+ * separable, and {@link #getColumnFactor()} and {@link #getRowFactor()} give those vectors so the
+ * convolution can run as two one-dimensional passes.
+ */
+public class Kernel {
+  private final int width;
+  private final int height;
+  private final int[] weights;
+  private final int divisor;
+  private final int[] columnFactor;
+  private final int[] rowFactor;
+
+  /**
+   * Constructs a kernel from its weights in row-major order.
+   *
+   * @param width   the number of columns, which must be odd.
+   * @param height  the number of rows, which must be odd.
+   * @param weights the weights in row-major order.
+   * @param divisor the positive divisor applied to the weighted sum.
+   * @throws IllegalArgumentException if the dimensions, weights or divisor are invalid.
+   */
+  public Kernel(int width, int height, int[] weights, int divisor) {
+    if (width < 1 || height < 1 || width % 2 == 0 || height % 2 == 0) {
+      throw new IllegalArgumentException("Kernel dimensions must be odd.");
+    }
+    if (weights.length != width * height) {
+      throw new IllegalArgumentException("Kernel must have width * height weights.");
+    }
+    if (divisor <= 0) {
+      throw new IllegalArgumentException("Kernel divisor must be positive.");
+    }
+    long magnitude = 0;
+    for (int weight : weights) {
+      magnitude += Math.abs((long) weight);
+    }
+    if (magnitude * 255 > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Kernel weights are too large.");
+    }
+    this.width = width;
+    this.height = height;
+    this.weights = weights.clone();
+    this.divisor = divisor;
+
+    int[][] factors = factorize();
+    this.columnFactor = factors == null ? null : factors[0];
+    this.rowFactor = factors == null ? null : factors[1];
+  }
+
+  /**
+   * Constructs a kernel from a matrix of weights.
+   *
+   * @param weights the weights, one array per kernel row.
+   * @param divisor the positive divisor applied to the weighted sum.
+   * @return the kernel.
+   */
+  public static Kernel of(int[][] weights, int divisor) {
+    int height = weights.length;
+    int width = height == 0 ? 0 : weights[0].length;
+    int[] flat = new int[width * height];
+    for (int row = 0; row < height; row++) {
+      if (weights[row].length != width) {
+        throw new IllegalArgumentException("Kernel rows must all have the same length.");
+      }
+      System.arraycopy(weights[row], 0, flat, row * width, width);
+    }
+    return new Kernel(width, height, flat, divisor);
+  }
+
+  /**
+   * Parses a kernel from text with one kernel row per line and whitespace separated weights.
+   * Weights may be integers or decimals; decimals are kept exact by scaling every weight by
+   * the power of ten needed for the longest fraction and using that power as the divisor.
+   * Blank lines and lines starting with # are ignored.
+   *
+   * @param text the kernel text.
+   * @return the kernel.
+   * @throws IllegalArgumentException if the text is not a valid kernel.
+   */
+  public static Kernel parse(String text) {
+    List<BigDecimal[]> rows = new ArrayList<>();
+    int scale = 0;
+    for (String line : text.split("\\R")) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] tokens = line.split("\\s+");
+      BigDecimal[] row = new BigDecimal[tokens.length];
+      for (int i = 0; i < tokens.length; i++) {
+        try {
+          row[i] = new BigDecimal(tokens[i]).stripTrailingZeros();
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("Invalid kernel weight: " + tokens[i]);
+        }
+        scale = Math.max(scale, row[i].scale());
+      }
+      rows.add(row);
+    }
+    if (rows.isEmpty()) {
+      throw new IllegalArgumentException("Kernel has no weights.");
+    }
+    if (scale > 6) {
+      throw new IllegalArgumentException("Kernel weights may have at most 6 decimal places.");
+    }
+
+    int[][] weights = new int[rows.size()][];
+    for (int r = 0; r < rows.size(); r++) {
+      BigDecimal[] row = rows.get(r);
+      weights[r] = new int[row.length];
+      for (int c = 0; c < row.length; c++) {
+        try {
+          weights[r][c] = row[c].movePointRight(scale).intValueExact();
+        } catch (ArithmeticException e) {
+          throw new IllegalArgumentException("Kernel weights are too large.");
+        }
+      }
+    }
+    return of(weights, BigDecimal.ONE.movePointRight(scale).intValue());
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getDivisor() {
+    return divisor;
+  }
+
+  public int getWeight(int row, int col) {
+    return weights[row * width + col];
+  }
+
+  /**
+   * Provides a copy of the weights in row-major order.
+   *
+   * @return the weights.
+   */
+  public int[] getWeights() {
+    return weights.clone();
+  }
+
+  /**
+   * Tells whether the weights are the outer product of a column and a row vector.
+   *
+   * @return true if the kernel can be applied as two one-dimensional passes.
+   */
+  public boolean isSeparable() {
+    return rowFactor != null;
+  }
+
+  /**
+   * Provides the vertical factor of a separable kernel.
+   *
+   * @return the column vector, or null if the kernel is not separable.
+   */
+  public int[] getColumnFactor() {
+    return columnFactor == null ? null : columnFactor.clone();
+  }
+
+  /**
+   * Provides the horizontal factor of a separable kernel.
+   *
+   * @return the row vector, or null if the kernel is not separable.
+   */
+  public int[] getRowFactor() {
+    return rowFactor == null ? null : rowFactor.clone();
+  }
+
+  /**
+   * Splits the weights into an integer column vector and row vector whose outer product
+   * gives the weights back exactly.
+   *
+   * @return the column and row vectors, or null if no such integer split exists.
+   */
+  private int[][] factorize() {
+    int pivotRow = -1;
+    for (int i = 0; i < weights.length && pivotRow < 0; i++) {
+      if (weights[i] != 0) {
+        pivotRow = i / width;
+      }
+    }
+    if (pivotRow < 0) {
+      return null;
+    }
+
+    // The row factor is the first non-zero row reduced by the gcd of its entries
+    int common = 0;
+    for (int col = 0; col < width; col++) {
+      common = gcd(common, Math.abs(weights[pivotRow * width + col]));
+    }
+    int[] row = new int[width];
+    int pivotCol = -1;
+    for (int col = 0; col < width; col++) {
+      row[col] = weights[pivotRow * width + col] / common;
+      if (pivotCol < 0 && row[col] != 0) {
+        pivotCol = col;
+      }
+    }
+
+    // Every row must then be an integer multiple of the row factor
+    int[] column = new int[height];
+    for (int r = 0; r < height; r++) {
+      int value = weights[r * width + pivotCol];
+      if (value % row[pivotCol] != 0) {
+        return null;
+      }
+      column[r] = value / row[pivotCol];
+      for (int col = 0; col < width; col++) {
+        if (column[r] * row[col] != weights[r * width + col]) {
+          return null;
+        }
+      }
+    }
+    return new int[][]{column, row};
+  }
+
+  private static int gcd(int a, int b) {
+    while (b != 0) {
+      int t = a % b;
+      a = b;
+      b = t;
+    }
+    return a;
+  }
+}
@@ -0,0 +1,102 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An image that has not been computed yet: a source image and the chain of
+ * {@link PixelStage}s that turns it into the result. Chaining another stage creates a new node
+ * over the same source, so a run of point operations only touches the pixels once, when the
+ * result is finally rendered, and the intermediate results are never materialized unless they
+ * are asked for themselves. Consecutive {@link ChannelLut} stages are folded into one table.
+ *
+ * <p>Each node holds its own copy-on-write handle on the source, so later writes to the source
+ * image detach from it instead of changing the pending result. Rendering consumes the node.
+ */
+public class LazyImage {
+  private final PixelImage source;
+  private final List<PixelStage> stages;
+
+  /**
+   * Constructs a pending result that applies one stage to a source image.
+   *
+   * @param source the image to read; the node takes a handle of its own on it.
+   * @param stage  the stage to apply.
+   */
+  public LazyImage(PixelImage source, PixelStage stage) {
+    this(source.share(), Collections.singletonList(stage));
+  }
+
+  private LazyImage(PixelImage source, List<PixelStage> stages) {
+    this.source = source;
+    this.stages = stages;
+  }
+
+  /**
+   * Creates the pending result of applying one more stage to this node's result.
+   * This node stays valid.
+   *
+   * @param stage the stage to apply after the existing ones.
+   * @return the new node.
+   */
+  public LazyImage then(PixelStage stage) {
+    List<PixelStage> chained = new ArrayList<>(stages);
+    PixelStage last = chained.get(chained.size() - 1);
+    if (last instanceof ChannelLut && stage instanceof ChannelLut) {
+      chained.set(chained.size() - 1, ((ChannelLut) last).andThen((ChannelLut) stage));
+    } else {
+      chained.add(stage);
+    }
+    return new LazyImage(source.share(), chained);
+  }
+
+  public int getWidth() {
+    return source.getWidth();
+  }
+
+  public int getHeight() {
+    return source.getHeight();
+  }
+
+  /**
+   * Computes the result in a single pass: each row is copied once and every stage runs over
+   * it in turn. When no other handle shares the source, the source buffer is reused.
+   * The node must not be used afterwards.
+   *
+   * @param executor the executor used to process row bands.
+   * @return the result, owned by the caller.
+   */
+  public PixelImage render(RowExecutor executor) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    boolean inPlace = !source.isShared();
+    PixelImage result = inPlace ? source : new PixelImage(width, height);
+    int[] src = source.getPixels();
+    int[] dst = result.getWritablePixels();
+
+    executor.forEachRow(height, width, (startRow, endRow) -> {
+      for (int row = startRow; row < endRow; row++) {
+        int out = result.rowOffset(row);
+        if (!inPlace) {
+          System.arraycopy(src, source.rowOffset(row), dst, out, width);
+        }
+        for (PixelStage stage : stages) {
+          stage.apply(dst, out, width);
+        }
+      }
+    });
+
+    if (!inPlace) {
+      source.release();
+    }
+    return result;
+  }
+
+  /**
+   * Drops the pending result without computing it. The node must not be used afterwards.
+   */
+  public void release() {
+    source.release();
+  }
+}
@@ -22,11 +22,21 @@ public class MockImageModelImpl implements ImageModel {
     log.append(String.format("loaded %s", imageName));
   }
 
+  @Override
+  public void loadImage(PixelImage image, String imageName) {
+    log.append(String.format("loaded %s", imageName));
+  }
+
   @Override
   public void saveImage(String filePath, int[][][] imageName) throws IOException {
     log.append(String.format("save %s testImage", filePath));
   }
 
+  @Override
+  public void saveImage(String filePath, PixelImage image) {
+    log.append(String.format("save %s testImage", filePath));
+  }
+
   @Override
   public int[][][] getImage(String imageName) {
     int[][][] newImage = {
@@ -38,6 +48,16 @@ public class MockImageModelImpl implements ImageModel {
     return images.get(imageName);
   }
 
+  @Override
+  public PixelImage getPixelImage(String imageName) {
+    return PixelImage.fromArray(getImage(imageName));
+  }
+
+  @Override
+  public void dropImage(String imageName) {
+    log.append(String.format("drop %s", imageName));
+  }
+
   @Override
   public void brighten(int value, String imageName, String destImageName) {
     log.append(String.format("brighten %d %s %s", value, imageName, destImageName));
@@ -105,11 +125,23 @@ public class MockImageModelImpl implements ImageModel {
     log.append(String.format("sharpen %s %s", imageName, destImageName));
   }
 
+  @Override
+  public void convolve(String imageName, String destImageName, Kernel kernel,
+                       BorderMode border) {
+    log.append(String.format("convolve %dx%d %s %s %s", kernel.getWidth(), kernel.getHeight(),
+        imageName, destImageName, border.name().toLowerCase()));
+  }
+
   @Override
   public void sepia(String imageName, String destImageName) {
     log.append(String.format("sepia %s %s", imageName, destImageName));
   }
 
+  @Override
+  public void colorMatrix(String imageName, String destImageName, ColorMatrix matrix) {
+    log.append(String.format("color-matrix %s %s", imageName, destImageName));
+  }
+
   @Override
   public void compress(float percentage, String imageName, String destImageName) {
     log.append(String.format("compress %f %s %s", percentage, imageName, destImageName));
@@ -142,6 +174,13 @@ public class MockImageModelImpl implements ImageModel {
     log.append(String.format(" resize %s %s %f %f", imageName, destImageName, newWidth, newHeight));
   }
 
+  @Override
+  public void resizeImage(String imageName, String destImageName, float newWidth, float newHeight,
+                          ResampleFilter filter) {
+    log.append(String.format(" resize %s %s %f %f %s", imageName, destImageName, newWidth,
+        newHeight, filter));
+  }
+
   @Override
   public BufferedImage getCurrentImage() {
     return null;
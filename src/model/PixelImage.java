@@ -0,0 +1,270 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A packed pixel container used as the storage format of the image model.
+ * Every pixel is stored as a single 0xRRGGBB integer inside one contiguous array,
+ * so an image costs one array header instead of one small array per pixel.
+ * Pixel (x, y) lives at index {@code y * stride + x}; the stride is normally the width
+ * but may be larger when the container is a view over a wider buffer.
+ *
+ * <p>Handles are copy-on-write: {@link #share()} hands out another handle over the same buffer
+ * and bumps a reference count shared by all of them. Readers use {@link #getPixels()} freely,
+ * while a writer must go through {@link #getWritablePixels()}, which first takes a private copy
+ * if any other handle still refers to the buffer.
+ *
+ * <p>Every handle carries a version stamp that changes whenever its pixels may have been written,
+ * so results derived from the pixels, such as histograms, can be cached against it.
+ */
+public class PixelImage {
+  private static final AtomicLong NEXT_VERSION = new AtomicLong();
+
+  private final int width;
+  private final int height;
+  private final int stride;
+  private int[] pixels;
+  private AtomicInteger owners;
+  private long version;
+
+  /**
+   * Constructs a black image of the given dimensions.
+   *
+   * @param width  the width of the image in pixels.
+   * @param height the height of the image in pixels.
+   */
+  public PixelImage(int width, int height) {
+    this(width, height, width, new int[width * height]);
+  }
+
+  /**
+   * Constructs an image over an existing packed pixel buffer.
+   *
+   * @param width  the width of the image in pixels.
+   * @param height the height of the image in pixels.
+   * @param stride the number of array elements between the starts of two rows.
+   * @param pixels the packed 0xRRGGBB pixel buffer.
+   * @throws IllegalArgumentException if the buffer is too small for the given dimensions.
+   */
+  public PixelImage(int width, int height, int stride, int[] pixels) {
+    if (width < 0 || height < 0 || stride < width) {
+      throw new IllegalArgumentException("Invalid image dimensions.");
+    }
+    if (height > 0 && (long) (height - 1) * stride + width > pixels.length) {
+      throw new IllegalArgumentException("Pixel buffer is too small for the image.");
+    }
+    this.width = width;
+    this.height = height;
+    this.stride = stride;
+    this.pixels = pixels;
+    this.owners = new AtomicInteger(1);
+    this.version = NEXT_VERSION.incrementAndGet();
+  }
+
+  /**
+   * Constructs an image over a buffer that holds a copy of the pixels of a given version, so
+   * that the copy compares equal to the pixels it was taken from.
+   *
+   * @param width   the width of the image in pixels.
+   * @param height  the height of the image in pixels.
+   * @param pixels  the packed 0xRRGGBB pixel buffer, one row after the other.
+   * @param version the version stamp of the copied pixels.
+   */
+  PixelImage(int width, int height, int[] pixels, long version) {
+    this(width, height, width, pixels);
+    this.version = version;
+  }
+
+  private PixelImage(PixelImage other) {
+    this.width = other.width;
+    this.height = other.height;
+    this.stride = other.stride;
+    this.pixels = other.pixels;
+    this.owners = other.owners;
+    this.version = other.version;
+  }
+
+  /**
+   * Creates another handle over the same pixel buffer without copying it.
+   *
+   * @return the new handle.
+   */
+  public PixelImage share() {
+    owners.incrementAndGet();
+    return new PixelImage(this);
+  }
+
+  /**
+   * Gives up this handle's claim on the pixel buffer. The handle must not be used afterwards.
+   */
+  public void release() {
+    owners.decrementAndGet();
+  }
+
+  /**
+   * Tells whether any other handle still refers to this handle's pixel buffer.
+   *
+   * @return true if the buffer is shared.
+   */
+  public boolean isShared() {
+    return owners.get() > 1;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getStride() {
+    return stride;
+  }
+
+  /**
+   * Gives the version stamp of the pixels. Two handles with the same stamp hold the same pixels.
+   *
+   * @return the version stamp.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Provides the backing packed pixel buffer for reading. The buffer is shared, not copied,
+   * and must not be modified.
+   *
+   * @return the 0xRRGGBB pixel buffer.
+   */
+  public int[] getPixels() {
+    return pixels;
+  }
+
+  /**
+   * Provides the backing packed pixel buffer for writing. If other handles still refer to the
+   * buffer, this handle first detaches onto a private copy so they keep seeing the old pixels.
+   *
+   * @return the 0xRRGGBB pixel buffer owned by this handle alone.
+   */
+  public int[] getWritablePixels() {
+    if (isShared()) {
+      pixels = pixels.clone();
+      owners.decrementAndGet();
+      owners = new AtomicInteger(1);
+    }
+    version = NEXT_VERSION.incrementAndGet();
+    return pixels;
+  }
+
+  /**
+   * Gives the index of the first pixel of the given row in the pixel buffer.
+   *
+   * @param row the row of the image.
+   * @return the offset of the row in the pixel buffer.
+   */
+  public int rowOffset(int row) {
+    return row * stride;
+  }
+
+  public int getRGB(int x, int y) {
+    return pixels[y * stride + x];
+  }
+
+  public void setRGB(int x, int y, int rgb) {
+    getWritablePixels()[y * stride + x] = rgb;
+  }
+
+  /**
+   * Packs three channel values into a single 0xRRGGBB integer.
+   *
+   * @param red   the red channel value between 0 and 255.
+   * @param green the green channel value between 0 and 255.
+   * @param blue  the blue channel value between 0 and 255.
+   * @return the packed pixel.
+   */
+  public static int pack(int red, int green, int blue) {
+    return ((red & 0xFF) << 16) | ((green & 0xFF) << 8) | (blue & 0xFF);
+  }
+
+  public static int red(int rgb) {
+    return (rgb >> 16) & 0xFF;
+  }
+
+  public static int green(int rgb) {
+    return (rgb >> 8) & 0xFF;
+  }
+
+  public static int blue(int rgb) {
+    return rgb & 0xFF;
+  }
+
+  /**
+   * Gives a single channel of a packed pixel.
+   *
+   * @param rgb     the packed pixel.
+   * @param channel 0 for red, 1 for green and 2 for blue.
+   * @return the channel value.
+   */
+  public static int channel(int rgb, int channel) {
+    return (rgb >> (16 - 8 * channel)) & 0xFF;
+  }
+
+  /**
+   * Creates a packed image from the 3D row/column/channel representation.
+   *
+   * @param image the 3D integer matrix.
+   * @return the packed image.
+   */
+  public static PixelImage fromArray(int[][][] image) {
+    int height = image.length;
+    int width = height == 0 ? 0 : image[0].length;
+    PixelImage result = new PixelImage(width, height);
+    int[] out = result.pixels;
+
+    for (int row = 0; row < height; row++) {
+      int[][] src = image[row];
+      int offset = row * width;
+      for (int col = 0; col < width; col++) {
+        int[] pixel = src[col];
+        out[offset + col] = pack(pixel[0], pixel[1], pixel[2]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Expands this image into a newly allocated 3D row/column/channel matrix.
+   *
+   * @return the 3D integer matrix.
+   */
+  public int[][][] toArray() {
+    int[][][] image = new int[height][width][3];
+
+    for (int row = 0; row < height; row++) {
+      int offset = row * stride;
+      for (int col = 0; col < width; col++) {
+        int rgb = pixels[offset + col];
+        int[] pixel = image[row][col];
+        pixel[0] = red(rgb);
+        pixel[1] = green(rgb);
+        pixel[2] = blue(rgb);
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Creates a tightly packed copy of this image.
+   *
+   * @return the copy.
+   */
+  public PixelImage copy() {
+    PixelImage result = new PixelImage(width, height);
+    for (int row = 0; row < height; row++) {
+      System.arraycopy(pixels, row * stride, result.pixels, row * width, width);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,30 @@
+package model;
+
+/**
+ * A per-pixel operation that maps a packed 0xRRGGBB pixel to a new one without looking at its
+ * neighbours. Stages are chained by {@link LazyImage}, which runs all of them over a row while
+ * the row is still in cache instead of writing an intermediate image after each one.
+ */
+public interface PixelStage {
+
+  /**
+   * Maps one pixel.
+   *
+   * @param rgb the packed 0xRRGGBB pixel.
+   * @return the mapped packed pixel.
+   */
+  int apply(int rgb);
+
+  /**
+   * Maps a run of pixels in place.
+   *
+   * @param pixels the packed pixel buffer.
+   * @param offset the index of the first pixel to map.
+   * @param length the number of pixels to map.
+   */
+  default void apply(int[] pixels, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      pixels[i] = apply(pixels[i]);
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package model;
+
+/**
+ * Describes how a resize computes an output pixel from the source pixels around it.
+ * Every filter except {@link #NEAREST} widens with the scale factor when the image shrinks,
+ * so each output pixel averages all the source pixels it covers instead of skipping some.
+ */
+public enum ResampleFilter {
+
+  /**
+   * Each output pixel copies the source pixel under its centre.
+   */
+  NEAREST(0.5),
+
+  /**
+   * Linear interpolation between the two nearest source pixels along each axis.
+   */
+  BILINEAR(1),
+
+  /**
+   * Cubic convolution over the four nearest source pixels along each axis.
+   */
+  BICUBIC(2),
+
+  /**
+   * A three-lobed windowed sinc over the six nearest source pixels along each axis.
+   */
+  LANCZOS3(3),
+
+  /**
+   * Each output pixel is the average of the source area it covers, weighted by how much of
+   * every source pixel falls inside it. Best suited to strong downscales.
+   */
+  AREA(0.5);
+
+  private final double support;
+
+  ResampleFilter(double support) {
+    this.support = support;
+  }
+
+  /**
+   * Gives the distance from the centre, in source pixels at a scale of one, beyond which the
+   * filter weight is zero.
+   *
+   * @return the support radius.
+   */
+  public double getSupport() {
+    return support;
+  }
+
+  /**
+   * Evaluates the filter at a distance from the output pixel's centre.
+   *
+   * @param x the distance, in source pixels at a scale of one.
+   * @return the unnormalized weight.
+   */
+  public double weight(double x) {
+    x = Math.abs(x);
+    switch (this) {
+      case BILINEAR:
+        return x < 1 ? 1 - x : 0;
+      case BICUBIC:
+        // Keys' cubic with a = -0.5
+        if (x < 1) {
+          return (1.5 * x - 2.5) * x * x + 1;
+        }
+        return x < 2 ? ((-0.5 * x + 2.5) * x - 4) * x + 2 : 0;
+      case LANCZOS3:
+        return x < 3 ? sinc(x) * sinc(x / 3) : 0;
+      default:
+        return x < 0.5 ? 1 : 0;
+    }
+  }
+
+  private static double sinc(double x) {
+    if (x == 0) {
+      return 1;
+    }
+    double angle = Math.PI * x;
+    return Math.sin(angle) / angle;
+  }
+
+  /**
+   * Finds the filter with the given name, ignoring case.
+   *
+   * @param name the name of the filter.
+   * @return the filter.
+   * @throws IllegalArgumentException if there is no filter with that name.
+   */
+  public static ResampleFilter fromName(String name) {
+    for (ResampleFilter filter : values()) {
+      if (filter.name().equalsIgnoreCase(name)) {
+        return filter;
+      }
+    }
+    throw new IllegalArgumentException("Unknown resample filter: " + name);
+  }
+}
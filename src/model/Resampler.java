@@ -0,0 +1,268 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Resizes images with a {@link ResampleFilter}.
+ *
+ * <p>The filter weights depend only on the source and output sizes along each axis, so they are
+ * computed once per resize into a table holding, for every output column and every output row,
+ * the first source pixel it reads and the fixed-point weights of the pixels from there on.
+ * The weights of each output pixel are normalized to sum to exactly one, so flat areas keep
+ * their value and no output pixel drifts darker or brighter from rounding.
+ *
+ * <p>The resize runs as two one-dimensional passes. The horizontal pass filters only the source
+ * rows the vertical pass will read into an intermediate image of the output width, and the
+ * vertical pass then filters its columns into the result. Both passes run in row bands on the
+ * executor. An axis whose size does not change and whose taps are the identity skips its pass,
+ * and {@link ResampleFilter#NEAREST} is a plain gather through the two index tables.
+ */
+public class Resampler {
+  private static final int SHIFT = 22;
+  private static final int ONE = 1 << SHIFT;
+  private static final int HALF = 1 << (SHIFT - 1);
+
+  private final RowExecutor executor;
+
+  /**
+   * Constructs a resampler that spreads its rows over the given executor.
+   *
+   * @param executor the executor used to process row bands.
+   */
+  public Resampler(RowExecutor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Resizes an image into a new image.
+   *
+   * @param source the image to resize.
+   * @param width  the width of the result, at least 1.
+   * @param height the height of the result, at least 1.
+   * @param filter how output pixels are computed from the source pixels.
+   * @return the resized image, owned by the caller.
+   * @throws IllegalArgumentException if a dimension is not positive or the source is empty.
+   */
+  public PixelImage resize(PixelImage source, int width, int height, ResampleFilter filter) {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Resize dimensions must be positive.");
+    }
+    if (source.getWidth() < 1 || source.getHeight() < 1) {
+      throw new IllegalArgumentException("Cannot resize an empty image.");
+    }
+    Taps columns = new Taps(source.getWidth(), width, filter);
+    Taps rows = new Taps(source.getHeight(), height, filter);
+    if (columns.isIdentity() && rows.isIdentity()) {
+      return source.share();
+    }
+    if (filter == ResampleFilter.NEAREST) {
+      return gather(source, columns, rows);
+    }
+
+    // The vertical pass only reads the source rows between these two
+    int firstRow = rows.start[0];
+    int lastRow = rows.start[height - 1] + rows.count[height - 1];
+    PixelImage middle;
+    if (columns.isIdentity()) {
+      middle = source;
+      firstRow = 0;
+    } else if (rows.isIdentity()) {
+      middle = new PixelImage(width, height);
+      horizontal(source, columns, middle, 0);
+      return middle;
+    } else {
+      middle = new PixelImage(width, lastRow - firstRow);
+      horizontal(source, columns, middle, firstRow);
+    }
+
+    PixelImage result = new PixelImage(width, height);
+    vertical(middle, rows, firstRow, result);
+    return result;
+  }
+
+  private PixelImage gather(PixelImage source, Taps columns, Taps rows) {
+    int width = columns.count.length;
+    int height = rows.count.length;
+    PixelImage result = new PixelImage(width, height);
+    int[] src = source.getPixels();
+    int[] dst = result.getWritablePixels();
+    executor.forEachRow(height, width, (startRow, endRow) -> {
+      for (int y = startRow; y < endRow; y++) {
+        int in = source.rowOffset(rows.start[y]);
+        int out = result.rowOffset(y);
+        for (int x = 0; x < width; x++) {
+          dst[out + x] = src[in + columns.start[x]];
+        }
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Filters the rows of the source from firstRow on into the rows of the target.
+   */
+  private void horizontal(PixelImage source, Taps columns, PixelImage target, int firstRow) {
+    int width = target.getWidth();
+    int[] src = source.getPixels();
+    int[] dst = target.getWritablePixels();
+    int[] start = columns.start;
+    int[] count = columns.count;
+    int[] weights = columns.weights;
+    int stride = columns.stride;
+
+    executor.forEachRow(target.getHeight(), width, (startRow, endRow) -> {
+      for (int row = startRow; row < endRow; row++) {
+        int in = source.rowOffset(firstRow + row);
+        int out = target.rowOffset(row);
+        for (int x = 0; x < width; x++) {
+          int red = HALF;
+          int green = HALF;
+          int blue = HALF;
+          int first = in + start[x];
+          int tap = x * stride;
+          for (int k = 0; k < count[x]; k++) {
+            int rgb = src[first + k];
+            int weight = weights[tap + k];
+            red += weight * PixelImage.red(rgb);
+            green += weight * PixelImage.green(rgb);
+            blue += weight * PixelImage.blue(rgb);
+          }
+          dst[out + x] = (channel(red) << 16) | (channel(green) << 8) | channel(blue);
+        }
+      }
+    });
+  }
+
+  /**
+   * Filters the columns of the middle image, whose first row is source row firstRow, into the
+   * result.
+   */
+  private void vertical(PixelImage middle, Taps rows, int firstRow, PixelImage result) {
+    int width = result.getWidth();
+    int[] src = middle.getPixels();
+    int[] dst = result.getWritablePixels();
+
+    executor.forEachRow(result.getHeight(), width, (startRow, endRow) -> {
+      int[] red = new int[width];
+      int[] green = new int[width];
+      int[] blue = new int[width];
+      for (int y = startRow; y < endRow; y++) {
+        Arrays.fill(red, HALF);
+        Arrays.fill(green, HALF);
+        Arrays.fill(blue, HALF);
+        for (int k = 0; k < rows.count[y]; k++) {
+          int in = middle.rowOffset(rows.start[y] + k - firstRow);
+          int weight = rows.weights[y * rows.stride + k];
+          for (int x = 0; x < width; x++) {
+            int rgb = src[in + x];
+            red[x] += weight * PixelImage.red(rgb);
+            green[x] += weight * PixelImage.green(rgb);
+            blue[x] += weight * PixelImage.blue(rgb);
+          }
+        }
+        int out = result.rowOffset(y);
+        for (int x = 0; x < width; x++) {
+          dst[out + x] = (channel(red[x]) << 16) | (channel(green[x]) << 8) | channel(blue[x]);
+        }
+      }
+    });
+  }
+
+  /**
+   * Turns a rounded fixed-point sum into a channel value between 0 and 255.
+   */
+  private static int channel(int sum) {
+    return Math.max(0, Math.min(sum >> SHIFT, 255));
+  }
+
+  /**
+   * The filter taps of every output index along one axis: the first source index read, the
+   * number of source indices read and their fixed-point weights, which sum to one.
+   */
+  private static class Taps {
+    private final int in;
+    private final int[] start;
+    private final int[] count;
+    private final int[] weights;
+    private final int stride;
+
+    Taps(int in, int out, ResampleFilter filter) {
+      this.in = in;
+      double scale = (double) in / out;
+      // Shrinking stretches the filter so it covers every source pixel under the output pixel
+      double stretch = Math.max(scale, 1);
+      double support = filter == ResampleFilter.AREA ? scale / 2 : filter.getSupport() * stretch;
+      this.stride = filter == ResampleFilter.NEAREST ? 1 : (int) Math.ceil(support) * 2 + 1;
+      this.start = new int[out];
+      this.count = new int[out];
+      this.weights = new int[out * stride];
+
+      double[] raw = new double[stride];
+      for (int i = 0; i < out; i++) {
+        double centre = (i + 0.5) * scale;
+        if (filter == ResampleFilter.NEAREST) {
+          start[i] = Math.min((int) centre, in - 1);
+          count[i] = 1;
+          weights[i] = ONE;
+          continue;
+        }
+        int first = Math.max(0, (int) Math.floor(centre - support));
+        int last = Math.min(in, (int) Math.ceil(centre + support));
+        double total = 0;
+        for (int k = first; k < last; k++) {
+          double weight;
+          if (filter == ResampleFilter.AREA) {
+            // The part of source pixel k inside the output pixel
+            weight = Math.max(0, Math.min(k + 1, centre + support)
+                - Math.max(k, centre - support));
+          } else {
+            weight = filter.weight((k + 0.5 - centre) / stretch);
+          }
+          raw[k - first] = weight;
+          total += weight;
+        }
+
+        // Drop zero weights at either end so the loops do not read pixels they ignore
+        while (last - first > 1 && raw[0] == 0) {
+          System.arraycopy(raw, 1, raw, 0, last - first - 1);
+          first++;
+        }
+        while (last - first > 1 && raw[last - first - 1] == 0) {
+          last--;
+        }
+        start[i] = first;
+        count[i] = last - first;
+        quantize(raw, last - first, total, i * stride);
+      }
+    }
+
+    /**
+     * Rounds normalized weights to fixed point, giving the rounding error to the largest weight
+     * so the weights sum to exactly one.
+     */
+    private void quantize(double[] raw, int taps, double total, int offset) {
+      int sum = 0;
+      int largest = 0;
+      for (int k = 0; k < taps; k++) {
+        weights[offset + k] = (int) Math.round(raw[k] / total * ONE);
+        sum += weights[offset + k];
+        if (raw[k] > raw[largest]) {
+          largest = k;
+        }
+      }
+      weights[offset + largest] += ONE - sum;
+    }
+
+    boolean isIdentity() {
+      if (count.length != in) {
+        return false;
+      }
+      for (int i = 0; i < count.length; i++) {
+        if (start[i] != i || count[i] != 1) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
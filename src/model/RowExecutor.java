@@ -0,0 +1,116 @@
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs per-pixel work over the rows of an image on a fork/join pool.
+ * The rows are split into bands that are recursively halved until a band holds at most
+ * {@code grain} pixels, and images smaller than {@code threshold} pixels are processed
+ * sequentially on the calling thread because splitting them costs more than it saves.
+ *
+ * <p>The shared instance is configured through the system properties
+ * {@code image.parallelism} (number of worker threads, defaults to the number of processors)
+ * and {@code image.parallel.threshold} (minimum image size in pixels for parallel work).
+ */
+public class RowExecutor {
+
+  /**
+   * Work applied to a band of rows.
+   */
+  public interface RowTask {
+
+    /**
+     * Processes the rows from startRow (inclusive) to endRow (exclusive).
+     *
+     * @param startRow the first row of the band.
+     * @param endRow   the row after the last row of the band.
+     */
+    void apply(int startRow, int endRow);
+  }
+
+  private static final int DEFAULT_THRESHOLD = 1 << 16;
+  private static final RowExecutor SHARED = new RowExecutor(
+      Integer.getInteger("image.parallelism", Runtime.getRuntime().availableProcessors()),
+      Integer.getInteger("image.parallel.threshold", DEFAULT_THRESHOLD));
+
+  private final ForkJoinPool pool;
+  private final int parallelism;
+  private final int threshold;
+
+  /**
+   * Constructs an executor with its own pool.
+   *
+   * @param parallelism the number of worker threads; 1 keeps all work sequential.
+   * @param threshold   the minimum number of pixels for an image to be split across threads.
+   * @throws IllegalArgumentException if parallelism is not positive.
+   */
+  public RowExecutor(int parallelism, int threshold) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1.");
+    }
+    this.parallelism = parallelism;
+    this.threshold = Math.max(1, threshold);
+    this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+  }
+
+  /**
+   * Provides the executor shared by the image model.
+   *
+   * @return the shared executor.
+   */
+  public static RowExecutor shared() {
+    return SHARED;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Runs a task over every row of an image, in parallel bands when the image is large enough.
+   * Returns once every band has been processed.
+   *
+   * @param height the number of rows.
+   * @param width  the number of pixels in each row, used to size the bands.
+   * @param task   the work to apply to each band.
+   */
+  public void forEachRow(int height, int width, RowTask task) {
+    long pixels = (long) height * Math.max(1, width);
+    if (pool == null || height < 2 || pixels < threshold) {
+      task.apply(0, height);
+      return;
+    }
+    // Aim for a few bands per worker so that uneven bands still balance out
+    long grain = Math.max(threshold / 4, pixels / (parallelism * 4L));
+    int rowsPerBand = (int) Math.max(1, grain / Math.max(1, width));
+    pool.invoke(new Band(task, 0, height, rowsPerBand));
+  }
+
+  private static class Band extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final RowTask task;
+    private final int startRow;
+    private final int endRow;
+    private final int rowsPerBand;
+
+    Band(RowTask task, int startRow, int endRow, int rowsPerBand) {
+      this.task = task;
+      this.startRow = startRow;
+      this.endRow = endRow;
+      this.rowsPerBand = rowsPerBand;
+    }
+
+    @Override
+    protected void compute() {
+      if (endRow - startRow <= rowsPerBand) {
+        task.apply(startRow, endRow);
+        return;
+      }
+      int middle = (startRow + endRow) >>> 1;
+      invokeAll(new Band(task, startRow, middle, rowsPerBand),
+          new Band(task, middle, endRow, rowsPerBand));
+    }
+  }
+}
@@ -0,0 +1,296 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the named images on the heap within a budget of bytes, and spills the least recently
+ * used ones to a file on local disk when the budget is exceeded. A spilled image is read back
+ * when it is next asked for, with its original version stamp so that caches keyed on the
+ * version stay valid.
+ *
+ * <p>The spill file holds three bytes per pixel, with no header. An image keeps its place in the
+ * file after it is read back, so evicting it again costs nothing unless it was changed in place
+ * meanwhile, in which case it is written again; the place is freed when the name is overwritten
+ * or removed, and later spills reuse freed places before growing the file.
+ * The file is created on the first spill and deleted when the program exits.
+ *
+ * <p>The image most recently stored or read is never evicted, so a single image larger than the
+ * budget still works; the budget then holds that image alone.
+ */
+public class SpillingImageStore implements ImageStore {
+  private static final int BUFFER_SIZE = 1 << 20;
+  private static final int PIXEL_BYTES = 3;
+
+  private final long budget;
+  // In access order, so iteration starts at the least recently used image
+  private final Map<String, Entry> images = new LinkedHashMap<>(16, 0.75f, true);
+  // Free places in the spill file as {offset, length}, sorted by offset
+  private final List<long[]> free = new ArrayList<>();
+  private FileChannel spill;
+  private long spillEnd;
+  private long residentBytes;
+
+  /**
+   * The pixels of one stored image, on the heap, in the spill file or both.
+   */
+  private static class Entry {
+    private final int width;
+    private final int height;
+    // The version of the pixels in the spill file, or of the heap copy if not yet spilled
+    private long version;
+    private final long bytes;
+    private PixelImage heap;
+    private long offset = -1;
+
+    Entry(PixelImage image) {
+      this.width = image.getWidth();
+      this.height = image.getHeight();
+      this.version = image.getVersion();
+      this.bytes = (long) image.getPixels().length * Integer.BYTES;
+      this.heap = image;
+    }
+
+    long spillLength() {
+      return (long) width * height * PIXEL_BYTES;
+    }
+  }
+
+  /**
+   * Constructs a store that keeps at most a given number of bytes of pixels on the heap.
+   *
+   * @param budget the number of bytes of pixel buffers to keep on the heap.
+   * @throws IllegalArgumentException if the budget is negative.
+   */
+  public SpillingImageStore(long budget) {
+    if (budget < 0) {
+      throw new IllegalArgumentException("Invalid image storage budget: " + budget);
+    }
+    this.budget = budget;
+  }
+
+  /**
+   * Gives the size of the pixel buffers of the images held on the heap.
+   *
+   * @return the number of bytes.
+   */
+  public long getResidentBytes() {
+    return residentBytes;
+  }
+
+  /**
+   * Tells whether an image is only held in the spill file.
+   *
+   * @param imageName the name of the image.
+   * @return true if the image has been evicted from the heap.
+   */
+  public boolean isSpilled(String imageName) {
+    // Looked up without get, which would count as a use
+    for (Map.Entry<String, Entry> entry : images.entrySet()) {
+      if (entry.getKey().equals(imageName)) {
+        return entry.getValue().heap == null;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public PixelImage get(String imageName) {
+    Entry entry = images.get(imageName);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.heap == null) {
+      entry.heap = new PixelImage(entry.width, entry.height, read(entry), entry.version);
+      residentBytes += entry.bytes;
+      evict(imageName);
+    }
+    return entry.heap;
+  }
+
+  @Override
+  public void put(String imageName, PixelImage image) {
+    Entry old = images.get(imageName);
+    if (old != null && old.heap == image) {
+      // The same handle may have been written in place, which its spilled pixels no longer match
+      evict(imageName);
+      return;
+    }
+    remove(imageName);
+    Entry entry = new Entry(image);
+    images.put(imageName, entry);
+    residentBytes += entry.bytes;
+    evict(imageName);
+  }
+
+  @Override
+  public void remove(String imageName) {
+    Entry entry = images.remove(imageName);
+    if (entry == null) {
+      return;
+    }
+    if (entry.heap != null) {
+      entry.heap.release();
+      residentBytes -= entry.bytes;
+    }
+    if (entry.offset >= 0) {
+      release(entry.offset, entry.spillLength());
+    }
+  }
+
+  /**
+   * Spills the least recently used images until the heap is within the budget.
+   *
+   * @param keep the name of the image that was just used, which stays on the heap.
+   */
+  private void evict(String keep) {
+    Iterator<Map.Entry<String, Entry>> oldest = images.entrySet().iterator();
+    while (residentBytes > budget && oldest.hasNext()) {
+      Map.Entry<String, Entry> next = oldest.next();
+      Entry entry = next.getValue();
+      if (entry.heap == null || next.getKey().equals(keep)) {
+        continue;
+      }
+      if (entry.offset >= 0 && entry.heap.getVersion() != entry.version) {
+        // Changed in place since it was read back, so its place in the file is stale
+        release(entry.offset, entry.spillLength());
+        entry.offset = -1;
+      }
+      if (entry.offset < 0) {
+        write(entry);
+      }
+      entry.heap.release();
+      entry.heap = null;
+      residentBytes -= entry.bytes;
+    }
+  }
+
+  private void write(Entry entry) {
+    PixelImage image = entry.heap;
+    try {
+      long offset = allocate(entry.spillLength());
+      long position = offset;
+      ByteBuffer buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE,
+          image.getWidth() * PIXEL_BYTES));
+      for (int row = 0; row < image.getHeight(); row++) {
+        if (buffer.remaining() < image.getWidth() * PIXEL_BYTES) {
+          position = flush(buffer, position);
+        }
+        int start = image.rowOffset(row);
+        for (int i = start; i < start + image.getWidth(); i++) {
+          int rgb = image.getPixels()[i];
+          buffer.put((byte) (rgb >>> 16)).put((byte) (rgb >>> 8)).put((byte) rgb);
+        }
+      }
+      flush(buffer, position);
+      entry.offset = offset;
+      entry.version = image.getVersion();
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Image could not be spilled to disk: "
+          + e.getMessage());
+    }
+  }
+
+  private long flush(ByteBuffer buffer, long position) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      position += spill.write(buffer, position);
+    }
+    buffer.clear();
+    return position;
+  }
+
+  private int[] read(Entry entry) {
+    int[] pixels = new int[entry.width * entry.height];
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE - BUFFER_SIZE % PIXEL_BYTES);
+    long position = entry.offset;
+    int next = 0;
+    try {
+      while (next < pixels.length) {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(),
+            (long) (pixels.length - next) * PIXEL_BYTES));
+        while (buffer.hasRemaining()) {
+          int read = spill.read(buffer, position);
+          if (read < 0) {
+            throw new IOException("Spill file is truncated.");
+          }
+          position += read;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          pixels[next++] = (buffer.get() & 0xFF) << 16 | (buffer.get() & 0xFF) << 8
+              | buffer.get() & 0xFF;
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Image could not be read back from disk: "
+          + e.getMessage());
+    }
+    return pixels;
+  }
+
+  /**
+   * Finds a place in the spill file, reusing the first freed place that is large enough.
+   */
+  private long allocate(long length) throws IOException {
+    if (spill == null) {
+      Path file = Files.createTempFile("image-spill", ".bin");
+      file.toFile().deleteOnExit();
+      spill = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+          StandardOpenOption.DELETE_ON_CLOSE);
+    }
+    for (int i = 0; i < free.size(); i++) {
+      long[] place = free.get(i);
+      if (place[1] >= length) {
+        long offset = place[0];
+        place[0] += length;
+        place[1] -= length;
+        if (place[1] == 0) {
+          free.remove(i);
+        }
+        return offset;
+      }
+    }
+    long offset = spillEnd;
+    spillEnd += length;
+    return offset;
+  }
+
+  /**
+   * Frees a place in the spill file, merging it with the free places around it. A free place at
+   * the end of the file is given back to the file system.
+   */
+  private void release(long offset, long length) {
+    int index = 0;
+    while (index < free.size() && free.get(index)[0] < offset) {
+      index++;
+    }
+    free.add(index, new long[] {offset, length});
+    if (index + 1 < free.size() && offset + length == free.get(index + 1)[0]) {
+      free.get(index)[1] += free.remove(index + 1)[1];
+    }
+    if (index > 0 && free.get(index - 1)[0] + free.get(index - 1)[1] == offset) {
+      free.get(index - 1)[1] += free.remove(index)[1];
+    }
+    long[] last = free.get(free.size() - 1);
+    if (last[0] + last[1] == spillEnd) {
+      free.remove(free.size() - 1);
+      spillEnd = last[0];
+      try {
+        spill.truncate(spillEnd);
+      } catch (IOException e) {
+        // The file only stays longer than it needs to be
+      }
+    }
+  }
+}
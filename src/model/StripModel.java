@@ -0,0 +1,554 @@
+package model;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An image model that never holds a whole image. Every operation wraps the {@link StripSource}
+ * of its input in a source of its own, and nothing is computed until an image is saved through
+ * {@link #save}, which pulls the result through the chain a strip of rows at a time. Memory use
+ * is bounded by a few strips per operation, whatever the size of the image.
+ *
+ * <p>Per-pixel operations map each strip in place, running in row bands on the shared
+ * {@link RowExecutor}, and consecutive {@link ChannelLut} stages fold into one table as in
+ * {@link LazyImage}. Convolutions keep a line buffer of the rows read so far: each strip is
+ * convolved together with the kernel radius of rows above and below it, so the result is the
+ * same as filtering the whole image. Colour correction needs the histogram of its whole input
+ * first, so its input is read once just to count it and then read again from the start.
+ *
+ * <p>Operations that need the whole image at once, such as vertical flips, resizing,
+ * compression and splitting, are not available and throw an {@link IllegalArgumentException}.
+ */
+public class StripModel implements ImageModel {
+  private static final int STRIP_PIXELS = 1 << 20;
+
+  private final RowExecutor executor = RowExecutor.shared();
+  private final Convolver convolver = new Convolver(executor);
+  private final Map<String, StripSource> images = new HashMap<>();
+  private final int stripPixels;
+
+  /**
+   * Constructs a model that works on strips of about a million pixels.
+   */
+  public StripModel() {
+    this(STRIP_PIXELS);
+  }
+
+  /**
+   * Constructs a model that works on strips of a given size.
+   *
+   * @param stripPixels the number of pixels in a strip; a strip is always at least one row.
+   */
+  public StripModel(int stripPixels) {
+    if (stripPixels < 1) {
+      throw new IllegalArgumentException("Invalid strip size: " + stripPixels);
+    }
+    this.stripPixels = stripPixels;
+  }
+
+  /**
+   * Stores a source under a name, so that operations can read from it.
+   *
+   * @param source    the source of the image.
+   * @param imageName the name to assign to the image within the model.
+   */
+  public void open(StripSource source, String imageName) {
+    images.put(imageName, source);
+  }
+
+  /**
+   * Computes an image strip by strip and hands the strips to a sink, in order.
+   *
+   * @param imageName the name of the image to save.
+   * @param sink      where the rows of the image go.
+   * @throws IOException              if a source cannot be read or the sink cannot be written.
+   * @throws IllegalArgumentException if no image is stored under the name.
+   */
+  public void save(String imageName, StripSink sink) throws IOException {
+    StripSource source = lookup(imageName);
+    int width = source.getWidth();
+    int height = source.getHeight();
+    int rowsPerStrip = Math.max(1, Math.min(height, stripPixels / Math.max(1, width)));
+    int[] strip = new int[rowsPerStrip * width];
+
+    source.rewind();
+    for (int row = 0; row < height; row += rowsPerStrip) {
+      int rows = Math.min(rowsPerStrip, height - row);
+      source.read(strip, 0, rows);
+      sink.write(strip, 0, rows);
+    }
+  }
+
+  /**
+   * Looks up the source of an image.
+   *
+   * @param imageName the name of the image.
+   * @return the source.
+   * @throws IllegalArgumentException if no image is stored under the name.
+   */
+  public StripSource lookup(String imageName) {
+    StripSource source = images.get(imageName);
+    if (source == null) {
+      throw new IllegalArgumentException("Image not found: " + imageName);
+    }
+    return source;
+  }
+
+  private void chain(String imageName, String destImageName, PixelStage stage,
+                     boolean grey) {
+    StripSource source = lookup(imageName);
+    if (source instanceof StageStrips) {
+      StageStrips previous = (StageStrips) source;
+      if (previous.stage instanceof ChannelLut && stage instanceof ChannelLut) {
+        images.put(destImageName, new StageStrips(previous.upstream,
+            ((ChannelLut) previous.stage).andThen((ChannelLut) stage), grey));
+        return;
+      }
+    }
+    images.put(destImageName, new StageStrips(source, stage, grey));
+  }
+
+  private static IllegalArgumentException unsupported(String operation) {
+    return new IllegalArgumentException(operation + " is not available when streaming.");
+  }
+
+  @Override
+  public void loadImage(int[][][] image, String imageName) {
+    loadImage(PixelImage.fromArray(image), imageName);
+  }
+
+  @Override
+  public void loadImage(PixelImage image, String imageName) {
+    open(new ImageStrips(image), imageName);
+  }
+
+  @Override
+  public void saveImage(String filePath, int[][][] imageName) {
+    throw unsupported("Saving through the model");
+  }
+
+  @Override
+  public void saveImage(String filePath, PixelImage image) {
+    throw unsupported("Saving through the model");
+  }
+
+  @Override
+  public int[][][] getImage(String imageName) {
+    return getPixelImage(imageName).toArray();
+  }
+
+  @Override
+  public PixelImage getPixelImage(String imageName) {
+    StripSource source = lookup(imageName);
+    PixelImage image = new PixelImage(source.getWidth(), source.getHeight());
+    int[] dst = image.getWritablePixels();
+    int[] filled = {0};
+    try {
+      save(imageName, (pixels, offset, rows) -> {
+        System.arraycopy(pixels, offset, dst, filled[0], rows * image.getWidth());
+        filled[0] += rows * image.getWidth();
+      });
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Image could not be read: " + e.getMessage());
+    }
+    return image;
+  }
+
+  @Override
+  public void dropImage(String imageName) {
+    images.remove(imageName);
+  }
+
+  @Override
+  public void brighten(int value, String imageName, String destImageName) {
+    chain(imageName, destImageName, ChannelLut.uniform(v -> v + value),
+        lookup(imageName).isGrey());
+  }
+
+  @Override
+  public void flipHorizontal(String imageName, String destImageName) {
+    images.put(destImageName, new FlipStrips(lookup(imageName)));
+  }
+
+  @Override
+  public void flipVertical(String imageName, String destImageName) {
+    throw unsupported("Vertical flip");
+  }
+
+  @Override
+  public void redComponent(String imageName, String destImageName) {
+    chain(imageName, destImageName, ImageModelImpl.COMPONENT_MATRICES[0], true);
+  }
+
+  @Override
+  public void greenComponent(String imageName, String destImageName) {
+    chain(imageName, destImageName, ImageModelImpl.COMPONENT_MATRICES[1], true);
+  }
+
+  @Override
+  public void blueComponent(String imageName, String destImageName) {
+    chain(imageName, destImageName, ImageModelImpl.COMPONENT_MATRICES[2], true);
+  }
+
+  @Override
+  public void valueComponent(String imageName, String destImageName) {
+    chain(imageName, destImageName, ImageModelImpl.VALUE_STAGE, true);
+  }
+
+  @Override
+  public void lumaComponent(String imageName, String destImageName) {
+    chain(imageName, destImageName, ImageModelImpl.LUMA_MATRIX, true);
+  }
+
+  @Override
+  public void intensityComponent(String imageName, String destImageName) {
+    chain(imageName, destImageName, ImageModelImpl.INTENSITY_MATRIX, true);
+  }
+
+  @Override
+  public void rgbSplit(String imageName, String redDest, String greenDest, String blueDest) {
+    throw unsupported("RGB split");
+  }
+
+  @Override
+  public void rgbCombine(String destImageName, String redImageName, String greenImageName,
+                         String blueImageName) {
+    throw unsupported("RGB combine");
+  }
+
+  @Override
+  public void blur(String imageName, String destImageName) {
+    convolve(imageName, destImageName, ImageModelImpl.BLUR_KERNEL, BorderMode.BLACK);
+  }
+
+  @Override
+  public void sharpen(String imageName, String destImageName) {
+    convolve(imageName, destImageName, ImageModelImpl.SHARPEN_KERNEL, BorderMode.BLACK);
+  }
+
+  @Override
+  public void sepia(String imageName, String destImageName) {
+    chain(imageName, destImageName, ImageModelImpl.SEPIA_MATRIX, false);
+  }
+
+  @Override
+  public void compress(float percentage, String imageName, String destImageName) {
+    throw unsupported("Compression");
+  }
+
+  @Override
+  public void histogram(String imageName, String destImageName) {
+    throw unsupported("Histogram");
+  }
+
+  @Override
+  public void colorCorrect(String imageName, String destImageName) {
+    images.put(destImageName, new CorrectStrips(lookup(imageName)));
+  }
+
+  @Override
+  public void levelAdjust(String imageName, String destImageName, String black, String mid,
+                          String white) {
+    chain(imageName, destImageName, ImageModelImpl.levels(black, mid, white), false);
+  }
+
+  @Override
+  public void split(String imageName, String processedImageName, float percentage) {
+    throw unsupported("Split view");
+  }
+
+  @Override
+  public void resizeImage(String imageName, String destImageName, float newWidth,
+                          float newHeight) {
+    throw unsupported("Resize");
+  }
+
+  @Override
+  public void resizeImage(String imageName, String destImageName, float newWidth,
+                          float newHeight, ResampleFilter filter) {
+    throw unsupported("Resize");
+  }
+
+  @Override
+  public void convolve(String imageName, String destImageName, Kernel kernel,
+                       BorderMode border) {
+    if (border == BorderMode.WRAP && kernel.getHeight() > 1) {
+      throw unsupported("Wrapping the top and bottom edges");
+    }
+    images.put(destImageName, new ConvolveStrips(lookup(imageName), kernel, border));
+  }
+
+  @Override
+  public void colorMatrix(String imageName, String destImageName, ColorMatrix matrix) {
+    chain(imageName, destImageName, matrix, false);
+  }
+
+  @Override
+  public BufferedImage getCurrentImage() {
+    return null;
+  }
+
+  @Override
+  public BufferedImage getHistImage() {
+    return null;
+  }
+
+  /**
+   * Reads an image that is already in memory.
+   */
+  private static class ImageStrips implements StripSource {
+    private final PixelImage image;
+    private int next;
+
+    ImageStrips(PixelImage image) {
+      this.image = image;
+    }
+
+    @Override
+    public int getWidth() {
+      return image.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+      return image.getHeight();
+    }
+
+    @Override
+    public void read(int[] pixels, int offset, int rows) {
+      int width = image.getWidth();
+      for (int row = 0; row < rows; row++, next++) {
+        System.arraycopy(image.getPixels(), image.rowOffset(next), pixels,
+            offset + row * width, width);
+      }
+    }
+
+    @Override
+    public void rewind() {
+      next = 0;
+    }
+  }
+
+  /**
+   * Maps every pixel of its input through a stage.
+   */
+  private class StageStrips implements StripSource {
+    private final StripSource upstream;
+    private final PixelStage stage;
+    private final boolean grey;
+
+    StageStrips(StripSource upstream, PixelStage stage, boolean grey) {
+      this.upstream = upstream;
+      this.stage = stage;
+      this.grey = grey;
+    }
+
+    @Override
+    public int getWidth() {
+      return upstream.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+      return upstream.getHeight();
+    }
+
+    @Override
+    public boolean isGrey() {
+      return grey;
+    }
+
+    @Override
+    public void read(int[] pixels, int offset, int rows) throws IOException {
+      upstream.read(pixels, offset, rows);
+      int width = getWidth();
+      executor.forEachRow(rows, width, (startRow, endRow) ->
+          stage.apply(pixels, offset + startRow * width, (endRow - startRow) * width));
+    }
+
+    @Override
+    public void rewind() throws IOException {
+      upstream.rewind();
+    }
+  }
+
+  /**
+   * Mirrors every row of its input.
+   */
+  private static class FlipStrips implements StripSource {
+    private final StripSource upstream;
+
+    FlipStrips(StripSource upstream) {
+      this.upstream = upstream;
+    }
+
+    @Override
+    public int getWidth() {
+      return upstream.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+      return upstream.getHeight();
+    }
+
+    @Override
+    public boolean isGrey() {
+      return upstream.isGrey();
+    }
+
+    @Override
+    public void read(int[] pixels, int offset, int rows) throws IOException {
+      upstream.read(pixels, offset, rows);
+      int width = getWidth();
+      for (int row = 0; row < rows; row++) {
+        int left = offset + row * width;
+        for (int right = left + width - 1; left < right; left++, right--) {
+          int rgb = pixels[left];
+          pixels[left] = pixels[right];
+          pixels[right] = rgb;
+        }
+      }
+    }
+
+    @Override
+    public void rewind() throws IOException {
+      upstream.rewind();
+    }
+  }
+
+  /**
+   * Convolves its input through a line buffer that holds the rows of the current strip and the
+   * kernel radius of rows on either side. Rows shared with the next strip stay in the buffer, so
+   * every input row is read once.
+   */
+  private class ConvolveStrips implements StripSource {
+    private final StripSource upstream;
+    private final Kernel kernel;
+    private final BorderMode border;
+    private final int radius;
+    private int[] window = new int[0];
+    private int windowStart;
+    private int windowRows;
+    private int next;
+
+    ConvolveStrips(StripSource upstream, Kernel kernel, BorderMode border) {
+      this.upstream = upstream;
+      this.kernel = kernel;
+      this.border = border;
+      this.radius = kernel.getHeight() / 2;
+    }
+
+    @Override
+    public int getWidth() {
+      return upstream.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+      return upstream.getHeight();
+    }
+
+    @Override
+    public boolean isGrey() {
+      return upstream.isGrey();
+    }
+
+    @Override
+    public void read(int[] pixels, int offset, int rows) throws IOException {
+      int width = getWidth();
+      int from = Math.max(0, next - radius);
+      int to = Math.min(getHeight(), next + rows + radius);
+
+      // Keep the rows the previous strip already read, then read the rest
+      int kept = windowStart + windowRows - from;
+      int[] buffer = window.length >= (to - from) * width ? window
+          : new int[(to - from) * width];
+      System.arraycopy(window, (from - windowStart) * width, buffer, 0, kept * width);
+      window = buffer;
+      windowStart = from;
+      upstream.read(window, kept * width, to - from - kept);
+      windowRows = to - from;
+
+      // The rows of the strip see real neighbours, or the real edge of the image
+      PixelImage filtered = convolver.convolve(new PixelImage(width, windowRows, width, window),
+          kernel, border);
+      for (int row = 0; row < rows; row++) {
+        System.arraycopy(filtered.getPixels(), filtered.rowOffset(next - from + row), pixels,
+            offset + row * width, width);
+      }
+      next += rows;
+    }
+
+    @Override
+    public void rewind() throws IOException {
+      upstream.rewind();
+      windowStart = 0;
+      windowRows = 0;
+      next = 0;
+    }
+  }
+
+  /**
+   * Colour corrects its input, counting the channels of the whole input in a first pass.
+   */
+  private class CorrectStrips implements StripSource {
+    private final StripSource upstream;
+    private ChannelLut correction;
+
+    CorrectStrips(StripSource upstream) {
+      this.upstream = upstream;
+    }
+
+    @Override
+    public int getWidth() {
+      return upstream.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+      return upstream.getHeight();
+    }
+
+    @Override
+    public void read(int[] pixels, int offset, int rows) throws IOException {
+      if (correction == null) {
+        correction = count();
+      }
+      upstream.read(pixels, offset, rows);
+      int width = getWidth();
+      executor.forEachRow(rows, width, (startRow, endRow) ->
+          correction.apply(pixels, offset + startRow * width, (endRow - startRow) * width));
+    }
+
+    private ChannelLut count() throws IOException {
+      int width = getWidth();
+      int height = getHeight();
+      int rowsPerStrip = Math.max(1, Math.min(height, stripPixels / Math.max(1, width)));
+      int[] strip = new int[rowsPerStrip * width];
+      int[][] totals = new int[3][256];
+
+      upstream.rewind();
+      for (int row = 0; row < height; row += rowsPerStrip) {
+        int rows = Math.min(rowsPerStrip, height - row);
+        upstream.read(strip, 0, rows);
+        Histogram counts = Histogram.count(new PixelImage(width, rows, width, strip), executor);
+        for (int channel = 0; channel < 3; channel++) {
+          int[] channelCounts = counts.get(channel);
+          for (int value = 0; value < 256; value++) {
+            totals[channel][value] += channelCounts[value];
+          }
+        }
+      }
+      upstream.rewind();
+      return ImageModelImpl.colorCorrection(totals[0], totals[1], totals[2]);
+    }
+
+    @Override
+    public void rewind() throws IOException {
+      upstream.rewind();
+    }
+  }
+}
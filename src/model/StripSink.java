@@ -0,0 +1,20 @@
+package model;
+
+import java.io.IOException;
+
+/**
+ * The destination of an image that is written a band of rows at a time, from the first row to
+ * the last.
+ */
+public interface StripSink {
+
+  /**
+   * Writes the next rows of packed 0xRRGGBB pixels, one row after the other with no gap.
+   *
+   * @param pixels the buffer holding the rows.
+   * @param offset the index of the first pixel to write.
+   * @param rows   the number of rows to write.
+   * @throws IOException if the underlying file cannot be written.
+   */
+  void write(int[] pixels, int offset, int rows) throws IOException;
+}
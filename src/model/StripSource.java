@@ -0,0 +1,42 @@
+package model;
+
+import java.io.IOException;
+
+/**
+ * An image that is read a band of rows at a time, from the first row to the last, so that it
+ * never has to be held in memory as a whole. Sources are chained by {@link StripModel}: each
+ * operation reads the rows it needs from the source before it.
+ */
+public interface StripSource {
+
+  int getWidth();
+
+  int getHeight();
+
+  /**
+   * Tells whether every pixel of the image is grey, so that a writer can store one sample per
+   * pixel without looking at the pixels first.
+   *
+   * @return true if the three channels of every pixel are known to be equal.
+   */
+  default boolean isGrey() {
+    return false;
+  }
+
+  /**
+   * Reads the next rows as packed 0xRRGGBB pixels, one row after the other with no gap.
+   *
+   * @param pixels the buffer to fill.
+   * @param offset the index of the first pixel to fill.
+   * @param rows   the number of rows to read.
+   * @throws IOException if the underlying file cannot be read.
+   */
+  void read(int[] pixels, int offset, int rows) throws IOException;
+
+  /**
+   * Goes back to the first row, so that the image can be read once more.
+   *
+   * @throws IOException if the underlying file cannot be read.
+   */
+  void rewind() throws IOException;
+}
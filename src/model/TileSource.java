@@ -0,0 +1,19 @@
+package model;
+
+/**
+ * Computes the pixels of the tiles of a {@link TiledImage} when they are first needed. A
+ * source may be asked for the same tile from several threads at once and must give the same
+ * pixels every time.
+ */
+public interface TileSource {
+
+  /**
+   * Fills one tile.
+   *
+   * @param tileX the column of the tile in the tile directory.
+   * @param tileY the row of the tile in the tile directory.
+   * @param tile  the black tile to fill, already sized to the part of the image it covers.
+   * @throws IllegalArgumentException if the pixels of the tile cannot be read.
+   */
+  void fill(int tileX, int tileY, PixelImage tile);
+}
@@ -0,0 +1,354 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An image kept as square tiles of {@link #TILE_SIZE} pixels, for images too large for a single
+ * array. Pixels are addressed by long coordinates, so an image may hold far more than 2^31
+ * pixels; only the number of tiles has to fit in an int.
+ *
+ * <p>The tile directory starts out empty. A stored image creates its tiles black when they are
+ * first touched, and a computed image asks its {@link TileSource} for a tile when it is first
+ * read and keeps the result, so reading a region only computes the tiles under it. The
+ * operations return computed images that read from this one: point stages map a tile at a time,
+ * convolutions read each tile together with the kernel radius of its neighbours, and flips read
+ * the mirrored tile. Consecutive {@link ChannelLut} stages fold into one table as in
+ * {@link LazyImage}.
+ *
+ * <p>Tiles can be computed in parallel through {@link #forEachTile}, which spreads the tile
+ * directory over a {@link RowExecutor}.
+ */
+public class TiledImage {
+  public static final int TILE_SIZE = 256;
+
+  /**
+   * Work applied to one tile.
+   */
+  public interface TileTask {
+
+    /**
+     * Processes a tile.
+     *
+     * @param tileX the column of the tile in the tile directory.
+     * @param tileY the row of the tile in the tile directory.
+     * @param tile  the pixels of the tile; writing to them changes the image.
+     */
+    void apply(int tileX, int tileY, PixelImage tile);
+  }
+
+  private final long width;
+  private final long height;
+  private final int tilesAcross;
+  private final int tilesDown;
+  private final AtomicReferenceArray<PixelImage> tiles;
+  private final TileSource source;
+  // Set on images made by map, so that tables can be folded
+  private TiledImage mapped;
+  private PixelStage stage;
+
+  /**
+   * Constructs a black image whose tiles are created when they are first touched.
+   *
+   * @param width  the width of the image in pixels.
+   * @param height the height of the image in pixels.
+   * @throws IllegalArgumentException if a dimension is not positive or there are too many tiles.
+   */
+  public TiledImage(long width, long height) {
+    this(width, height, null);
+  }
+
+  /**
+   * Constructs an image whose tiles are computed by a source when they are first read.
+   *
+   * @param width  the width of the image in pixels.
+   * @param height the height of the image in pixels.
+   * @param source the source of the tiles, or null for a black image.
+   * @throws IllegalArgumentException if a dimension is not positive or there are too many tiles.
+   */
+  public TiledImage(long width, long height, TileSource source) {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Invalid image dimensions: " + width + " x " + height);
+    }
+    long across = (width + TILE_SIZE - 1) / TILE_SIZE;
+    long down = (height + TILE_SIZE - 1) / TILE_SIZE;
+    if (across * down > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Image has too many tiles: " + width + " x " + height);
+    }
+    this.width = width;
+    this.height = height;
+    this.tilesAcross = (int) across;
+    this.tilesDown = (int) down;
+    this.tiles = new AtomicReferenceArray<>(tilesAcross * tilesDown);
+    this.source = source;
+  }
+
+  /**
+   * Copies an image into tiles.
+   *
+   * @param image the image to copy.
+   * @return a stored tiled image with the same pixels.
+   */
+  public static TiledImage fromImage(PixelImage image) {
+    TiledImage tiled = new TiledImage(image.getWidth(), image.getHeight());
+    tiled.forEachTile(RowExecutor.shared(), (tileX, tileY, tile) -> {
+      int[] pixels = tile.getWritablePixels();
+      for (int row = 0; row < tile.getHeight(); row++) {
+        System.arraycopy(image.getPixels(),
+            image.rowOffset(tileY * TILE_SIZE + row) + tileX * TILE_SIZE, pixels,
+            tile.rowOffset(row), tile.getWidth());
+      }
+    });
+    return tiled;
+  }
+
+  public long getWidth() {
+    return width;
+  }
+
+  public long getHeight() {
+    return height;
+  }
+
+  public int getTilesAcross() {
+    return tilesAcross;
+  }
+
+  public int getTilesDown() {
+    return tilesDown;
+  }
+
+  /**
+   * Gets a tile, computing it first if it has not been read before.
+   *
+   * @param tileX the column of the tile in the tile directory.
+   * @param tileY the row of the tile in the tile directory.
+   * @return the pixels of the tile; the edge tiles are cut to the image.
+   * @throws IllegalArgumentException if the tile is outside the directory.
+   */
+  public PixelImage getTile(int tileX, int tileY) {
+    int index = index(tileX, tileY);
+    PixelImage tile = tiles.get(index);
+    if (tile == null) {
+      tile = new PixelImage((int) Math.min(TILE_SIZE, width - (long) tileX * TILE_SIZE),
+          (int) Math.min(TILE_SIZE, height - (long) tileY * TILE_SIZE));
+      if (source != null) {
+        source.fill(tileX, tileY, tile);
+      }
+      // Another thread may have computed the same tile meanwhile; keep the first one
+      if (!tiles.compareAndSet(index, null, tile)) {
+        tile = tiles.get(index);
+      }
+    }
+    return tile;
+  }
+
+  /**
+   * Tells whether a tile has been created or computed yet.
+   *
+   * @param tileX the column of the tile in the tile directory.
+   * @param tileY the row of the tile in the tile directory.
+   * @return true if the tile is held by the image.
+   */
+  public boolean isMaterialized(int tileX, int tileY) {
+    return tiles.get(index(tileX, tileY)) != null;
+  }
+
+  private int index(int tileX, int tileY) {
+    if (tileX < 0 || tileX >= tilesAcross || tileY < 0 || tileY >= tilesDown) {
+      throw new IllegalArgumentException("Tile out of bounds: " + tileX + ", " + tileY);
+    }
+    return tileY * tilesAcross + tileX;
+  }
+
+  public int getRGB(long x, long y) {
+    checkRegion(x, y, 1, 1);
+    PixelImage tile = getTile((int) (x / TILE_SIZE), (int) (y / TILE_SIZE));
+    return tile.getRGB((int) (x % TILE_SIZE), (int) (y % TILE_SIZE));
+  }
+
+  public void setRGB(long x, long y, int rgb) {
+    checkRegion(x, y, 1, 1);
+    PixelImage tile = getTile((int) (x / TILE_SIZE), (int) (y / TILE_SIZE));
+    tile.setRGB((int) (x % TILE_SIZE), (int) (y % TILE_SIZE), rgb);
+  }
+
+  /**
+   * Copies a rectangle of the image, computing only the tiles it covers.
+   *
+   * @param x      the left edge of the rectangle.
+   * @param y      the top edge of the rectangle.
+   * @param width  the width of the rectangle.
+   * @param height the height of the rectangle.
+   * @return a new image holding the rectangle.
+   * @throws IllegalArgumentException if the rectangle is not inside the image.
+   */
+  public PixelImage readRegion(long x, long y, int width, int height) {
+    checkRegion(x, y, width, height);
+    PixelImage region = new PixelImage(width, height);
+    int[] pixels = region.getWritablePixels();
+    for (int tileY = (int) (y / TILE_SIZE); tileY <= (y + height - 1) / TILE_SIZE; tileY++) {
+      for (int tileX = (int) (x / TILE_SIZE); tileX <= (x + width - 1) / TILE_SIZE; tileX++) {
+        PixelImage tile = getTile(tileX, tileY);
+        long tileLeft = (long) tileX * TILE_SIZE;
+        long tileTop = (long) tileY * TILE_SIZE;
+        int left = (int) (Math.max(x, tileLeft) - tileLeft);
+        int top = (int) (Math.max(y, tileTop) - tileTop);
+        int right = (int) (Math.min(x + width, tileLeft + tile.getWidth()) - tileLeft);
+        int bottom = (int) (Math.min(y + height, tileTop + tile.getHeight()) - tileTop);
+        for (int row = top; row < bottom; row++) {
+          System.arraycopy(tile.getPixels(), tile.rowOffset(row) + left, pixels,
+              region.rowOffset((int) (tileTop + row - y)) + (int) (tileLeft + left - x),
+              right - left);
+        }
+      }
+    }
+    return region;
+  }
+
+  private void checkRegion(long x, long y, long width, long height) {
+    if (x < 0 || y < 0 || width < 0 || height < 0 || x + width > this.width
+        || y + height > this.height) {
+      throw new IllegalArgumentException("Region out of bounds: " + width + " x " + height
+          + " at " + x + ", " + y);
+    }
+  }
+
+  /**
+   * Copies the whole image into one array.
+   *
+   * @return a new image with the same pixels.
+   * @throws IllegalArgumentException if the image does not fit in one array.
+   */
+  public PixelImage toImage() {
+    if (width * height > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Image is too large for one array: " + width + " x "
+          + height);
+    }
+    return readRegion(0, 0, (int) width, (int) height);
+  }
+
+  /**
+   * Runs a task over every tile, computing the tiles first where needed. The tiles are spread
+   * over the executor in bands of the tile directory, and the call returns once every tile has
+   * been processed.
+   *
+   * @param executor the executor to run the tiles on.
+   * @param task     the work to apply to each tile.
+   */
+  public void forEachTile(RowExecutor executor, TileTask task) {
+    executor.forEachRow(tilesAcross * tilesDown, TILE_SIZE * TILE_SIZE, (start, end) -> {
+      for (int index = start; index < end; index++) {
+        int tileX = index % tilesAcross;
+        int tileY = index / tilesAcross;
+        task.apply(tileX, tileY, getTile(tileX, tileY));
+      }
+    });
+  }
+
+  /**
+   * Computes every tile that has not been computed yet.
+   *
+   * @param executor the executor to run the tiles on.
+   */
+  public void materialize(RowExecutor executor) {
+    forEachTile(executor, (tileX, tileY, tile) -> { });
+  }
+
+  /**
+   * Creates the image of every pixel mapped through a stage.
+   *
+   * @param stage the stage to apply.
+   * @return the computed image.
+   */
+  public TiledImage map(PixelStage stage) {
+    if (this.stage instanceof ChannelLut && stage instanceof ChannelLut) {
+      return mapped.map(((ChannelLut) this.stage).andThen((ChannelLut) stage));
+    }
+    TiledImage result = new TiledImage(width, height, (tileX, tileY, tile) -> {
+      PixelImage in = getTile(tileX, tileY);
+      int[] pixels = tile.getWritablePixels();
+      for (int row = 0; row < tile.getHeight(); row++) {
+        System.arraycopy(in.getPixels(), in.rowOffset(row), pixels, tile.rowOffset(row),
+            tile.getWidth());
+        stage.apply(pixels, tile.rowOffset(row), tile.getWidth());
+      }
+    });
+    result.mapped = this;
+    result.stage = stage;
+    return result;
+  }
+
+  /**
+   * Creates the image convolved with a kernel. Each tile is filtered together with the kernel
+   * radius of pixels around it, cut at the edges of the image, so the edges follow the border
+   * mode exactly as when the whole image is filtered at once.
+   *
+   * @param convolver the convolver to filter the tiles with.
+   * @param kernel    the kernel to apply.
+   * @param border    how pixels outside the image are treated.
+   * @return the computed image.
+   * @throws IllegalArgumentException if the border wraps around, which would need the far edge
+   *                                  of the image for every edge tile.
+   */
+  public TiledImage convolve(Convolver convolver, Kernel kernel, BorderMode border) {
+    if (border == BorderMode.WRAP && (kernel.getWidth() > 1 || kernel.getHeight() > 1)) {
+      throw new IllegalArgumentException("Wrapped edges are not available for tiled images.");
+    }
+    int radiusX = kernel.getWidth() / 2;
+    int radiusY = kernel.getHeight() / 2;
+    return new TiledImage(width, height, (tileX, tileY, tile) -> {
+      long x = (long) tileX * TILE_SIZE;
+      long y = (long) tileY * TILE_SIZE;
+      long left = Math.max(0, x - radiusX);
+      long top = Math.max(0, y - radiusY);
+      long right = Math.min(width, x + tile.getWidth() + radiusX);
+      long bottom = Math.min(height, y + tile.getHeight() + radiusY);
+      PixelImage filtered = convolver.convolve(
+          readRegion(left, top, (int) (right - left), (int) (bottom - top)), kernel, border);
+      int[] pixels = tile.getWritablePixels();
+      for (int row = 0; row < tile.getHeight(); row++) {
+        System.arraycopy(filtered.getPixels(),
+            filtered.rowOffset((int) (y - top) + row) + (int) (x - left), pixels,
+            tile.rowOffset(row), tile.getWidth());
+      }
+    });
+  }
+
+  /**
+   * Creates the image mirrored left to right.
+   *
+   * @return the computed image.
+   */
+  public TiledImage flipHorizontal() {
+    return new TiledImage(width, height, (tileX, tileY, tile) -> {
+      PixelImage in = readRegion(width - (long) tileX * TILE_SIZE - tile.getWidth(),
+          (long) tileY * TILE_SIZE, tile.getWidth(), tile.getHeight());
+      int[] pixels = tile.getWritablePixels();
+      for (int row = 0; row < tile.getHeight(); row++) {
+        int from = in.rowOffset(row);
+        int to = tile.rowOffset(row) + tile.getWidth() - 1;
+        for (int col = 0; col < tile.getWidth(); col++) {
+          pixels[to - col] = in.getPixels()[from + col];
+        }
+      }
+    });
+  }
+
+  /**
+   * Creates the image mirrored top to bottom.
+   *
+   * @return the computed image.
+   */
+  public TiledImage flipVertical() {
+    return new TiledImage(width, height, (tileX, tileY, tile) -> {
+      PixelImage in = readRegion((long) tileX * TILE_SIZE,
+          height - (long) tileY * TILE_SIZE - tile.getHeight(), tile.getWidth(),
+          tile.getHeight());
+      int[] pixels = tile.getWritablePixels();
+      for (int row = 0; row < tile.getHeight(); row++) {
+        System.arraycopy(in.getPixels(), in.rowOffset(tile.getHeight() - 1 - row), pixels,
+            tile.rowOffset(row), tile.getWidth());
+      }
+    });
+  }
+}
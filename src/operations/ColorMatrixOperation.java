@@ -0,0 +1,36 @@
+package operations;
+
+import model.ColorMatrix;
+import model.ImageModel;
+
+/**
+ * Represents an operation to mix the channels of an image through a colour matrix.
+ * This class extends {@link AbstractImageOperation} and implements the logic.
+ * Every output channel of the specified image becomes a weighted sum of its input channels.
+ */
+public class ColorMatrixOperation extends AbstractImageOperation {
+  private final ColorMatrix matrix;
+
+  /**
+   * Constructs a ColorMatrixOperation with the specified matrix and image names.
+   *
+   * @param matrix        the colour matrix to apply.
+   * @param imageName     the name of the image to be filtered.
+   * @param destImageName the name of the resulting image after the channels are mixed.
+   */
+  public ColorMatrixOperation(ColorMatrix matrix, String imageName, String destImageName) {
+    super(imageName, destImageName);
+    this.matrix = matrix;
+  }
+
+  /**
+   * Executes the colour matrix on the specified image.
+   * This method calls the corresponding colorMatrix method in the mvc.ImageModel.
+   *
+   * @param model the mvc.ImageModel instance used to access image processing methods.
+   */
+  @Override
+  public void performOperation(ImageModel model) {
+    model.colorMatrix(imageName, destImageName, matrix);
+  }
+}
@@ -0,0 +1,41 @@
+package operations;
+
+import model.BorderMode;
+import model.ImageModel;
+import model.Kernel;
+
+/**
+ * Represents an operation to filter an image with a custom convolution kernel.
+ * This class extends {@link AbstractImageOperation} and implements the logic.
+ * It convolves the specified image with the kernel, treating its edges as the border mode says.
+ */
+public class ConvolveOperation extends AbstractImageOperation {
+  private final Kernel kernel;
+  private final BorderMode border;
+
+  /**
+   * Constructs a ConvolveOperation with the specified kernel, border mode and image names.
+   *
+   * @param kernel        the kernel to convolve the image with.
+   * @param border        how pixels near the edge of the image are filtered.
+   * @param imageName     the name of the image to be filtered.
+   * @param destImageName the name of the resulting image after the convolution.
+   */
+  public ConvolveOperation(Kernel kernel, BorderMode border, String imageName,
+                           String destImageName) {
+    super(imageName, destImageName);
+    this.kernel = kernel;
+    this.border = border;
+  }
+
+  /**
+   * Executes the convolution on the specified image.
+   * This method calls the corresponding convolve method in the mvc.ImageModel.
+   *
+   * @param model the mvc.ImageModel instance used to access image processing methods.
+   */
+  @Override
+  public void performOperation(ImageModel model) {
+    model.convolve(imageName, destImageName, kernel, border);
+  }
+}
@@ -1,6 +1,7 @@
 package operations;
 
 import model.ImageModel;
+import model.PixelImage;
 
 /**
  * Class for loading an image from a specified file into an image model.
@@ -9,6 +10,7 @@ import model.ImageModel;
 public class LoadOperation extends AbstractImageOperation {
 
   int[][][] image;
+  PixelImage pixels;
 
   /**
    * Constructs a LoadOperation instance with the specified source and destination image names.
@@ -21,6 +23,17 @@ public class LoadOperation extends AbstractImageOperation {
     this.image = image;
   }
 
+  /**
+   * Constructs a LoadOperation for an image that was read straight into packed pixels.
+   *
+   * @param pixels        the image to be loaded into the model.
+   * @param destImageName the name under which the loaded image will be stored.
+   */
+  public LoadOperation(PixelImage pixels, String destImageName) {
+    super(null, destImageName);
+    this.pixels = pixels;
+  }
+
   /**
    * Performs the load operation on the given image model.
    * This method attempts to load an image from the specified file path.
@@ -31,7 +44,11 @@ public class LoadOperation extends AbstractImageOperation {
   @Override
   public void performOperation(ImageModel model) {
     try {
-      model.loadImage(image, destImageName);
+      if (pixels != null) {
+        model.loadImage(pixels, destImageName);
+      } else {
+        model.loadImage(image, destImageName);
+      }
     } catch (Exception e) {
       System.out.println("Give a valid Input!");
     }
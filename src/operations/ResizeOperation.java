@@ -1,6 +1,7 @@
 package operations;
 
 import model.ImageModel;
+import model.ResampleFilter;
 
 /**
  * Represents an image operation where the image is resized according to the width and height.
@@ -9,6 +10,7 @@ public class ResizeOperation extends AbstractImageOperation {
 
   private float width;
   private float height;
+  private ResampleFilter filter;
 
   /**
    * Constructs a ResizeOperation with the specified source and destination image names.
@@ -19,9 +21,24 @@ public class ResizeOperation extends AbstractImageOperation {
    * @param height    the height of the image.
    */
   public ResizeOperation(String imageName, String destImage, String width, String height) {
+    this(imageName, destImage, width, height, ResampleFilter.BILINEAR);
+  }
+
+  /**
+   * Constructs a ResizeOperation that resamples the image with the given filter.
+   *
+   * @param imageName the name of the source image to be processed.
+   * @param destImage the name of the resulting image after applying the operation.
+   * @param width     the width of the image.
+   * @param height    the height of the image.
+   * @param filter    how the resized pixels are computed from the original ones.
+   */
+  public ResizeOperation(String imageName, String destImage, String width, String height,
+                         ResampleFilter filter) {
     super(imageName, destImage);
     this.width = Float.parseFloat(width);
     this.height = Float.parseFloat(height);
+    this.filter = filter;
   }
 
   /**
@@ -31,6 +48,6 @@ public class ResizeOperation extends AbstractImageOperation {
    */
   @Override
   public void performOperation(ImageModel model) {
-    model.resizeImage(imageName, destImageName, width, height);
+    model.resizeImage(imageName, destImageName, width, height, filter);
   }
 }
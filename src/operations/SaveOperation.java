@@ -1,6 +1,7 @@
 package operations;
 
 import model.ImageModel;
+import model.PixelImage;
 
 /**
  * Represents an operation to save an image to a specified file.
@@ -11,6 +12,7 @@ public class SaveOperation extends AbstractImageOperation {
 
   String filePath;
   int[][][] imageName;
+  PixelImage pixels;
 
   /**
    * Constructs a operations.SaveOperation with the specified source and destination image names.
@@ -24,6 +26,18 @@ public class SaveOperation extends AbstractImageOperation {
     this.imageName = imageName;
   }
 
+  /**
+   * Constructs a SaveOperation for an image that was saved straight from packed pixels.
+   *
+   * @param pixels   the image that was saved.
+   * @param filePath the path of the file where the image was saved.
+   */
+  public SaveOperation(PixelImage pixels, String filePath) {
+    super(null, filePath);
+    this.filePath = filePath;
+    this.pixels = pixels;
+  }
+
   /**
    * Executes the operation to save the image to the specified destination.
    * This method calls the corresponding method in the ImageModel to perform the saving operation.
@@ -34,7 +48,11 @@ public class SaveOperation extends AbstractImageOperation {
   @Override
   public void performOperation(ImageModel model) {
     try {
-      model.saveImage(filePath, imageName);
+      if (pixels != null) {
+        model.saveImage(filePath, pixels);
+      } else {
+        model.saveImage(filePath, imageName);
+      }
     } catch (Exception e) {
       System.out.println("Give a valid Input!");
     }
@@ -62,4 +62,14 @@ public class ImageMockViewImpl implements ImageView {
   public void displayImage(BufferedImage image, BufferedImage histogram) {
     System.out.println("Image and Histogram as displayed");
   }
+
+  /**
+   * The mock view pretends to show images so the controller exercises the display path.
+   *
+   * @return always true.
+   */
+  @Override
+  public boolean showsImages() {
+    return true;
+  }
 }
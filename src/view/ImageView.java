@@ -32,4 +32,12 @@ public interface ImageView {
    * @param image The BufferedImage to display.
    */
   void displayImage(BufferedImage image, BufferedImage histogram);
+
+  /**
+   * Tells whether this view shows images at all.
+   * The controller only asks the model to render the image and histogram when it does.
+   *
+   * @return true if {@link #displayImage} shows the images it is given.
+   */
+  boolean showsImages();
 }
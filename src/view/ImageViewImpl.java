@@ -312,6 +312,16 @@ public class ImageViewImpl extends JFrame implements ImageView {
     }
   }
 
+  /**
+   * Only the window shows images; the console mode constructed for scripts does not.
+   *
+   * @return true if this view has a window.
+   */
+  @Override
+  public boolean showsImages() {
+    return displayArea != null;
+  }
+
   private void setImage(BufferedImage image) {
     ImageIcon imageIcon = new ImageIcon(image);
     imageLabel.setIcon(imageIcon);
@@ -330,4 +330,25 @@ public class BlurOperationTest {
     model.split(imageName, "blurredEvenNumberRowImage", -5);
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testBlurInteriorPixelUsesWholeKernel() throws IOException {
+    ImageModel model = new ImageModelImpl();
+    int[][][] imageData = new int[5][5][3];
+    for (int[][] row : imageData) {
+      for (int[] pixel : row) {
+        pixel[0] = 100;
+        pixel[1] = 255;
+        pixel[2] = 7;
+      }
+    }
+    // A single bright pixel in the corner reaches the centre with weight 1/256
+    imageData[0][0] = new int[]{255, 255, 255};
+    model.saveImage("interior.png", imageData);
+
+    new BlurOperation("interior.png", "blurredInterior").performOperation(model);
+
+    int[][][] blurred = model.getImage("blurredInterior");
+    assertArrayEquals(new int[]{100, 255, 7}, blurred[2][2]);
+    assertArrayEquals(new int[]{0, 0, 0}, blurred[1][2]);
+  }
+}
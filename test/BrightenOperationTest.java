@@ -289,4 +289,21 @@ public class BrightenOperationTest {
     assertArrayEquals(expectedBrighten, image);
   }
 
+  @Test
+  public void testChainedBrightenKeepsEveryStep() throws IOException {
+    int[][][] imageData = {
+            {{200, 10, 100}, {0, 255, 60}}
+    };
+    model.saveImage("chain", imageData);
+
+    // Brightening up then down again clamps in between, so the steps must not be merged away
+    new BrightenOperation(100, "chain", "up").performOperation(model);
+    new BrightenOperation(-100, "up", "down").performOperation(model);
+    new BrightenOperation(-100, "chain", "chain").performOperation(model);
+
+    assertArrayEquals(new int[][][]{{{155, 10, 100}, {0, 155, 60}}}, model.getImage("down"));
+    assertArrayEquals(new int[][][]{{{255, 110, 200}, {100, 255, 160}}}, model.getImage("up"));
+    assertArrayEquals(new int[][][]{{{100, 0, 0}, {0, 155, 0}}}, model.getImage("chain"));
+  }
+
 }
@@ -266,4 +266,20 @@ public class ColorCorrectOperationTest {
     };
     assertArrayEquals(expectedColorCorrect, model.getImage("ColorCorrectEvenNumberRowImage"));
   }
+
+  @Test
+  public void testColorCorrectCountsReplacedImage() throws IOException {
+    int[][][] grey = {{{100, 100, 100}, {100, 100, 100}, {100, 100, 100}}};
+    model.saveImage("image", grey);
+    model.histogram("image", "histogram");
+
+    // The histogram of the old pixels must not be reused for the new ones
+    int[][][] imageData = {{{20, 50, 80}, {20, 50, 80}, {100, 100, 100}}};
+    model.saveImage("image", imageData);
+    AbstractImageOperation operation = new ColorCorrectOperation("image", "corrected");
+    operation.performOperation(model);
+
+    int[][][] expected = {{{50, 50, 50}, {50, 50, 50}, {130, 100, 70}}};
+    assertArrayEquals(expected, model.getImage("corrected"));
+  }
 }
\ No newline at end of file
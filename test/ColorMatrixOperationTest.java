@@ -0,0 +1,83 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import model.ColorMatrix;
+import model.ImageModel;
+import model.ImageModelImpl;
+import operations.AbstractImageOperation;
+import operations.ColorMatrixOperation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * This file tests the color matrix operation.
+ */
+public class ColorMatrixOperationTest {
+  private ImageModel model;
+
+  @Before
+  public void setUp() throws IOException {
+    model = new ImageModelImpl();  // Initialize the image model before each test
+    int[][][] imageData = {
+        {{255, 0, 0}, {0, 255, 0}},
+        {{10, 20, 30}, {200, 100, 50}}
+    };
+    model.saveImage("image", imageData);
+  }
+
+  private int[][][] mix(ColorMatrix matrix) {
+    AbstractImageOperation operation = new ColorMatrixOperation(matrix, "image", "mixedImage");
+    operation.performOperation(model);
+    return model.getImage("mixedImage");
+  }
+
+  @Test
+  public void testSwapRedAndBlue() {
+    ColorMatrix swap = ColorMatrix.parse("0 0 1\n0 1 0\n1 0 0");
+    int[][][] expected = {
+        {{0, 0, 255}, {0, 255, 0}},
+        {{30, 20, 10}, {50, 100, 200}}
+    };
+    assertArrayEquals(expected, mix(swap));
+  }
+
+  @Test
+  public void testDecimalWeightsTruncateAndClamp() {
+    ColorMatrix matrix = ColorMatrix.parse("0.5 0.5 0\n-1 0 0\n2 0 0");
+    assertEquals(10, matrix.getDivisor());
+    int[][][] expected = {
+        {{127, 0, 255}, {127, 0, 0}},
+        {{15, 0, 20}, {150, 0, 255}}
+    };
+    assertArrayEquals(expected, mix(matrix));
+  }
+
+  @Test
+  public void testGreyscaleMatchesIntensity() {
+    model.intensityComponent("image", "intensityImage");
+    assertArrayEquals(model.getImage("intensityImage"),
+        mix(ColorMatrix.greyscale(1, 1, 1, 3)));
+  }
+
+  @Test
+  public void testMatchesSepia() {
+    model.sepia("image", "sepiaImage");
+    ColorMatrix sepia = ColorMatrix.parse("0.393 0.769 0.189\n0.349 0.686 0.168\n"
+        + "0.272 0.534 0.131");
+    assertArrayEquals(model.getImage("sepiaImage"), mix(sepia));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongSizeIsRejected() {
+    ColorMatrix.parse("1 0 0 0 0\n0 1 0 0 0\n0 0 1 0 0");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroDivisorIsRejected() {
+    new ColorMatrix(new int[]{1, 0, 0, 0, 1, 0, 0, 0, 1}, 0);
+  }
+}
@@ -37,8 +37,10 @@ public class CompressOperationTest {
         "CompressImage");
     operation.performOperation(model);
 
+    // Every channel has two or four coefficients of equal magnitude, and the later ones go first
     int[][][] expectedData = {
-        {{255, 0, 0}}
+        {{128, 128, 128}, {128, 128, 0}},
+        {{128, 128, 128}, {128, 128, 0}}
     };
 
     int[][][] compressImage = model.getImage("CompressImage");
@@ -63,7 +65,9 @@ public class CompressOperationTest {
     operation.performOperation(model);
 
     int[][][] expectedData = {
-        {{255, 0, 0}}
+        {{192, 0, 0}, {64, 239, 80}, {48, 32, 224}},
+        {{255, 239, 80}, {192, 0, 207}, {48, 255, 224}},
+        {{48, 112, 80}, {48, 112, 80}, {192, 160, 224}}
     };
 
     int[][][] compressImage = model.getImage("CompressLargeImage");
@@ -92,7 +96,7 @@ public class CompressOperationTest {
     operation.performOperation(model);
 
     int[][][] expectedData = {
-        {{0, 0, 0}}  // Should Compress to (50, 50, 50)
+        {{0, 0, 0}}  // A black pixel has no coefficients to drop
     };
     assertArrayEquals(expectedData, model.getImage("CompressImage"));
   }
@@ -114,7 +118,9 @@ public class CompressOperationTest {
     operation.performOperation(model);
 
     int[][][] expectedCompress = {
-        {{1, 1, 1}}
+        {{2, 2, 2}, {2, 2, 2}, {5, 5, 5}},
+        {{5, 5, 5}, {5, 5, 5}, {5, 5, 5}},
+        {{8, 8, 8}, {8, 8, 8}, {9, 9, 9}}
     };
     assertArrayEquals(expectedCompress, model.getImage("CompressNormalPixelImage"));
   }
@@ -133,7 +139,7 @@ public class CompressOperationTest {
     operation.performOperation(model);
 
     int[][][] expectedCompress = {
-        {{1, 1, 1}, {3, 3, 3}}
+        {{2, 2, 2}, {2, 2, 2}, {4, 4, 4}, {4, 4, 4}, {5, 5, 5}}
     };
 
     assertArrayEquals(expectedCompress, model.getImage("CompressSingleRowPixelImage"));
@@ -157,7 +163,7 @@ public class CompressOperationTest {
     operation.performOperation(model);
 
     int[][][] expectedCompress = {
-        {{1, 1, 1}}, {{3, 3, 3}}
+        {{2, 2, 2}}, {{2, 2, 2}}, {{4, 4, 4}}, {{4, 4, 4}}, {{5, 5, 5}}
     };
     assertArrayEquals(expectedCompress, model.getImage("CompressSingleColumnPixelImage"));
   }
@@ -180,7 +186,9 @@ public class CompressOperationTest {
     operation.performOperation(model);
 
     int[][][] expectedCompress = {
-        {{1,1,1}}
+        {{2, 2, 2}, {2, 2, 2}, {5, 5, 5}},
+        {{5, 5, 5}, {5, 5, 5}, {5, 5, 5}},
+        {{2, 2, 2}, {2, 2, 2}, {3, 3, 3}}
     };
     assertArrayEquals(expectedCompress, model.getImage("CompressSymmetricImage"));
   }
@@ -202,7 +210,9 @@ public class CompressOperationTest {
     operation.performOperation(model);
 
     int[][][] expectedCompress = {
-        {{1,1,1}}
+        {{2, 2, 2}, {2, 2, 2}, {5, 5, 5}},
+        {{5, 5, 5}, {5, 5, 5}, {5, 5, 5}},
+        {{8, 8, 8}, {8, 8, 8}, {9, 9, 9}}
     };
     assertArrayEquals(expectedCompress, model.getImage("CompressNonSymmetricImage"));
   }
@@ -221,7 +231,7 @@ public class CompressOperationTest {
     operation.performOperation(model);
 
     int[][][] expectedCompress = {
-        {{1,1,1}}
+        {{1, 1, 1}}  // Half of a single coefficient rounds down to none
     };
     assertArrayEquals(expectedCompress, model.getImage("CompressSinglePixelImage"));
   }
@@ -244,8 +254,10 @@ public class CompressOperationTest {
     operation.performOperation(model);
 
     int[][][] expectedCompress = {
-        {{1, 1, 1}, {3, 3, 3}},
-        {{9, 9, 9}, {11, 11, 11}},
+        {{2, 2, 2}, {2, 2, 2}, {4, 4, 4}, {4, 4, 4}},
+        {{6, 6, 6}, {6, 6, 6}, {8, 8, 8}, {8, 8, 8}},
+        {{12, 12, 12}, {12, 12, 12}, {12, 12, 12}, {12, 12, 12}},
+        {{12, 12, 12}, {12, 12, 12}, {16, 16, 16}, {16, 16, 16}}
     };
 
     assertArrayEquals(expectedCompress, model.getImage("CompressEvenNumberRowImage"));
@@ -267,12 +279,51 @@ public class CompressOperationTest {
     operation.performOperation(model);
 
     int[][][] expectedDarken = {
-        {{1, 1, 1}}
+        {{2, 2, 2}, {2, 2, 2}, {5, 5, 5}},
+        {{5, 5, 5}, {5, 5, 5}, {5, 5, 5}},
+        {{8, 8, 8}, {8, 8, 8}, {9, 9, 9}}
     };
 
     assertArrayEquals(expectedDarken, model.getImage("darkenNormalPixelImage"));
   }
 
+  @Test
+  public void testChannelsAreThresholdedSeparately() throws IOException {
+    ImageModel model = new ImageModelImpl();
+    int[][][] imageData = {
+        {{2, 0, 100}, {4, 0, 100}},
+        {{6, 0, 100}, {8, 0, 100}}
+    };
+    model.saveImage("image", imageData);
+
+    AbstractImageOperation operation = new CompressOperation(50, "image", "compressed");
+    operation.performOperation(model);
+
+    // Red loses its smallest detail, while the flat blue channel has nothing to lose
+    int[][][] expectedCompress = {
+        {{3, 0, 100}, {3, 0, 100}},
+        {{7, 0, 100}, {7, 0, 100}}
+    };
+    assertArrayEquals(expectedCompress, model.getImage("compressed"));
+  }
+
+  @Test
+  public void testFullCompressionDropsEverything() throws IOException {
+    ImageModel model = new ImageModelImpl();
+    int[][][] imageData = {
+        {{10, 20, 30}, {40, 50, 60}, {70, 80, 90}}
+    };
+    model.saveImage("image", imageData);
+
+    AbstractImageOperation operation = new CompressOperation(100, "image", "compressed");
+    operation.performOperation(model);
+
+    int[][][] expectedCompress = {
+        {{0, 0, 0}, {0, 0, 0}, {0, 0, 0}}
+    };
+    assertArrayEquals(expectedCompress, model.getImage("compressed"));
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void testNormalImageLessThan0() throws IOException {
     ImageModel model = new ImageModelImpl();
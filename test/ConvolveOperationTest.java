@@ -0,0 +1,133 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import model.BorderMode;
+import model.ImageModel;
+import model.ImageModelImpl;
+import model.Kernel;
+import operations.AbstractImageOperation;
+import operations.ConvolveOperation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * This file tests the convolve operation and its border modes.
+ */
+public class ConvolveOperationTest {
+  private ImageModel model;
+
+  private final int[][][] imageData = {
+      {{10, 10, 10}, {20, 20, 20}, {30, 30, 30}},
+      {{40, 40, 40}, {50, 50, 50}, {60, 60, 60}},
+      {{70, 70, 70}, {80, 80, 80}, {90, 90, 90}}
+  };
+
+  @Before
+  public void setUp() throws IOException {
+    model = new ImageModelImpl();  // Initialize the image model before each test
+    model.saveImage("image", imageData);
+  }
+
+  private int[][][] convolve(Kernel kernel, BorderMode border) {
+    AbstractImageOperation operation = new ConvolveOperation(kernel, border, "image",
+        "convolvedImage");
+    operation.performOperation(model);
+    return model.getImage("convolvedImage");
+  }
+
+  private static int[][][] grey(int[][] values) {
+    int[][][] image = new int[values.length][][];
+    for (int row = 0; row < values.length; row++) {
+      image[row] = new int[values[row].length][];
+      for (int col = 0; col < values[row].length; col++) {
+        int v = values[row][col];
+        image[row][col] = new int[]{v, v, v};
+      }
+    }
+    return image;
+  }
+
+  @Test
+  public void testIdentityKernelKeepsImage() {
+    Kernel identity = Kernel.parse("0 0 0\n0 1 0\n0 0 0");
+    assertArrayEquals(imageData, convolve(identity, BorderMode.CLAMP));
+  }
+
+  @Test
+  public void testBlackBorderLeavesEdgeBlack() {
+    Kernel identity = Kernel.parse("0 0 0\n0 1 0\n0 0 0");
+    int[][] expected = {{0, 0, 0}, {0, 50, 0}, {0, 0, 0}};
+    assertArrayEquals(grey(expected), convolve(identity, BorderMode.BLACK));
+  }
+
+  @Test
+  public void testShiftKernelWithEachBorder() {
+    // Each output pixel takes the value of its left neighbour
+    Kernel shift = Kernel.parse("0 0 0\n1 0 0\n0 0 0");
+
+    assertArrayEquals(grey(new int[][]{{10, 10, 20}, {40, 40, 50}, {70, 70, 80}}),
+        convolve(shift, BorderMode.CLAMP));
+    assertArrayEquals(grey(new int[][]{{20, 10, 20}, {50, 40, 50}, {80, 70, 80}}),
+        convolve(shift, BorderMode.REFLECT));
+    assertArrayEquals(grey(new int[][]{{30, 10, 20}, {60, 40, 50}, {90, 70, 80}}),
+        convolve(shift, BorderMode.WRAP));
+  }
+
+  @Test
+  public void testBoxBlurWithClampBorder() {
+    Kernel box = Kernel.parse("1 1 1\n1 1 1\n1 1 1");
+    assertEquals(9, box.getWidth() * box.getHeight());
+
+    // Divisor is 1, so the unnormalised sums clamp to 255 everywhere but the top-left corner
+    int[][][] result = convolve(box, BorderMode.CLAMP);
+    assertArrayEquals(new int[]{210, 210, 210}, result[0][0]);
+    assertArrayEquals(new int[]{255, 255, 255}, result[1][1]);
+  }
+
+  @Test
+  public void testDecimalKernelUsesExactDivisor() {
+    Kernel average = Kernel.parse("# vertical average\n0.25\n0.5\n0.25\n");
+    assertEquals(1, average.getWidth());
+    assertEquals(3, average.getHeight());
+    assertEquals(100, average.getDivisor());
+
+    int[][] expected = {{17, 27, 37}, {40, 50, 60}, {62, 72, 82}};
+    assertArrayEquals(grey(expected), convolve(average, BorderMode.CLAMP));
+  }
+
+  @Test
+  public void testLargeKernelMatchesDirectResult() {
+    // An 11x11 kernel that is not separable, so it runs through the Fourier path
+    StringBuilder text = new StringBuilder();
+    for (int row = 0; row < 11; row++) {
+      for (int col = 0; col < 11; col++) {
+        boolean picked = (row == 5 && col == 5) || (row == 0 && col == 0);
+        text.append(picked ? "1 " : "0 ");
+      }
+      text.append("\n");
+    }
+
+    // Every pixel gains its neighbour five up and five left, which clamps to the top-left pixel
+    int[][] expected = {{20, 30, 40}, {50, 60, 70}, {80, 90, 100}};
+    assertArrayEquals(grey(expected), convolve(Kernel.parse(text.toString()), BorderMode.CLAMP));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEvenKernelIsRejected() {
+    Kernel.parse("1 1\n1 1");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRaggedKernelIsRejected() {
+    Kernel.parse("1 1 1\n1 1");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownBorderIsRejected() {
+    BorderMode.fromName("mirror");
+  }
+}
@@ -0,0 +1,131 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import model.DirectImageStore;
+import model.ImageModel;
+import model.ImageModelImpl;
+import model.PixelImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * This file tests keeping the model's images off the heap.
+ */
+public class DirectImageStoreTest {
+  private PixelImage image;
+  private DirectImageStore store;
+
+  @Before
+  public void setUp() {
+    image = new PixelImage(40, 30);
+    int[] pixels = image.getWritablePixels();
+    Random random = new Random(3);
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = random.nextInt(0x1000000);
+    }
+    store = new DirectImageStore();
+  }
+
+  @Test
+  public void testImagesComeBackFromDirectMemory() {
+    store.put("a", image);
+    assertSame(image, store.get("a"));
+    store.put("b", new PixelImage(10, 10));
+
+    // "a" is no longer resident, so it is copied back with the same pixels and version
+    PixelImage copy = store.get("a");
+    assertArrayEquals(image.toArray(), copy.toArray());
+    assertEquals(image.getVersion(), copy.getVersion());
+    assertSame(copy, store.get("a"));
+    assertNull(store.get("c"));
+  }
+
+  @Test
+  public void testOverwritingAndRemovingReleaseDirectMemory() {
+    store.put("a", image);
+    store.put("b", image.copy());
+    assertEquals(2 * 40 * 30 * 4, store.getStoredBytes());
+    store.put("a", new PixelImage(10, 10));
+    assertEquals((40 * 30 + 10 * 10) * 4, store.getStoredBytes());
+    store.remove("b");
+    store.remove("a");
+    assertEquals(0, store.getStoredBytes());
+    assertNull(store.get("a"));
+
+    // Pooled buffers are reused without keeping stale pixels visible
+    store.put("c", image.copy());
+    store.put("d", new PixelImage(1, 1));
+    assertArrayEquals(image.toArray(), store.get("c").toArray());
+  }
+
+  @Test
+  public void testModelGivesTheSameResults() throws IOException {
+    ImageModel heap = new ImageModelImpl();
+    ImageModel direct = new ImageModelImpl(store);
+    for (ImageModel model : new ImageModel[] {heap, direct}) {
+      model.loadImage(image.toArray(), "img");
+      model.blur("img", "blurred");
+      model.brighten(20, "blurred", "bright");
+      model.flipVertical("img", "flipped");
+      model.rgbSplit("bright", "r", "g", "b");
+      model.rgbCombine("combined", "b", "g", "r");
+      model.colorCorrect("combined", "corrected");
+      model.histogram("corrected", "hist");
+    }
+    for (String name : new String[] {"img", "blurred", "bright", "flipped", "combined",
+        "corrected", "hist"}) {
+      assertArrayEquals(heap.getImage(name), direct.getImage(name));
+    }
+  }
+
+  @Test
+  public void testSplitWritesThroughToDirectMemory() throws IOException {
+    ImageModel heap = new ImageModelImpl();
+    ImageModel direct = new ImageModelImpl(store);
+    for (ImageModel model : new ImageModel[] {heap, direct}) {
+      model.loadImage(image.toArray(), "img");
+      model.blur("img", "blurred");
+      // Split overwrites the stored "blurred" handle in place
+      model.split("img", "blurred", 50);
+      // Reading another image evicts "blurred" to direct memory
+      model.sepia("img", "other");
+    }
+    assertArrayEquals(heap.getImage("blurred"), direct.getImage("blurred"));
+  }
+
+  @Test
+  public void testReusedBuffersAreNeverShared() {
+    PixelImage small = random(30, 30, 7);
+    PixelImage other = random(30, 30, 11);
+    store.put("a", image.copy());
+    store.put("b", random(30, 30, 13));
+    // Both buffers go to the pool, the larger one first
+    store.remove("a");
+    store.remove("b");
+
+    store.put("c", small);
+    store.put("d", other);
+    store.put("e", image.copy());
+    store.put("c", random(30, 30, 17));
+    store.put("f", small.copy());
+    assertArrayEquals(other.toArray(), store.get("d").toArray());
+    assertArrayEquals(image.toArray(), store.get("e").toArray());
+    assertArrayEquals(small.toArray(), store.get("f").toArray());
+  }
+
+  private static PixelImage random(int width, int height, long seed) {
+    PixelImage result = new PixelImage(width, height);
+    int[] pixels = result.getWritablePixels();
+    Random random = new Random(seed);
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = random.nextInt(0x1000000);
+    }
+    return result;
+  }
+}
@@ -10,6 +10,7 @@ import operations.AbstractImageOperation;
 import operations.HistogramOperation;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
 
 
 /**
@@ -136,4 +137,22 @@ public class HistogramOperationTest {
     operation.performOperation(model);
   }
 
-}
\ No newline at end of file
+
+  @Test
+  public void testLiveHistogramFollowsLatestResult() throws IOException {
+    int[][][] imageData = {
+        {{255, 0, 0}, {0, 255, 0}},
+        {{0, 0, 255}, {255, 255, 0}}
+    };
+    model.saveImage("small.png", imageData);
+    AbstractImageOperation operation = new HistogramOperation("small.png", "HistogramImage");
+    operation.performOperation(model);
+    model.brighten(40, "small.png", "bright");
+
+    // The live histogram follows the brightened result, not the earlier histogram command
+    int[][][] liveHistogram = model.getImage("Histogram");
+    new HistogramOperation("bright", "BrightHistogram").performOperation(model);
+    assertArrayEquals(model.getImage("BrightHistogram"), liveHistogram);
+    assertFalse(Arrays.deepEquals(model.getImage("HistogramImage"), liveHistogram));
+  }
+}
@@ -1,17 +1,28 @@
 import org.junit.Before;
 import org.junit.Test;
 
+import java.awt.image.BufferedImage;
 import java.io.PrintStream;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Scanner;
 
+import javax.imageio.ImageIO;
+
 import controller.ImageController;
 import controller.ImageControllerImpl;
+import model.HeapImageStore;
+import model.ImageModel;
+import model.ImageModelImpl;
 import model.MockImageModelImpl;
 import view.ImageMockViewImpl;
 import view.ImageView;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import java.io.ByteArrayOutputStream;
 
@@ -438,6 +449,136 @@ public class ImageControllerImplTest {
     assertTrue(log.toString().isEmpty());
   }
 
+  @Test
+  public void testScriptDropsImagesAfterTheirLastUse() throws Exception {
+    Path script = Files.createTempFile("drop", ".txt");
+    Path output = Files.createTempFile("drop", ".ppm");
+    Files.write(script, ("brighten 10 img bright\nsepia bright sepia\nblur img blurred\n"
+        + "save " + output + " sepia\n").getBytes(StandardCharsets.UTF_8));
+    try {
+      view = new ImageMockViewImpl();
+      controller = new ImageControllerImpl(new MockImageModelImpl(log), view);
+      controller.runScript(script.toString());
+    } finally {
+      Files.delete(script);
+      Files.deleteIfExists(output);
+    }
+
+    String calls = log.toString();
+    assertFalse(calls.contains("drop 10"));
+    assertTrue(calls.contains("sepia bright sepiadrop bright"));
+    assertTrue(calls.contains("blur img blurreddrop imgdrop blurred"));
+    assertTrue(calls.endsWith("drop sepia"));
+  }
+
+  @Test
+  public void testInteractiveScriptsKeepTheirImages() throws Exception {
+    Path script = Files.createTempFile("keep", ".txt");
+    Files.write(script, "blur img blurred\n".getBytes(StandardCharsets.UTF_8));
+    StringReader input = new StringReader("run " + script + "\nexit");
+    view = new ImageMockViewImpl(new Scanner(input));
+    controller = new ImageControllerImpl(new MockImageModelImpl(log), view);
+    controller.execute();
+    Files.delete(script);
+    assertEquals("blur img blurred", log.toString());
+  }
+
+  @Test
+  public void testInteractiveScriptsLoadImagesInFull() throws Exception {
+    Path image = Files.createTempFile("full", ".png");
+    ImageIO.write(new BufferedImage(80, 60, BufferedImage.TYPE_INT_RGB), "png", image.toFile());
+    Path script = Files.createTempFile("full", ".txt");
+    Files.write(script, ("load " + image + " img\nresize img small 10 8\n")
+        .getBytes(StandardCharsets.UTF_8));
+    StringReader input = new StringReader("run " + script + "\nexit");
+    view = new ImageMockViewImpl(new Scanner(input));
+    ImageModel model = new ImageModelImpl();
+    controller = new ImageControllerImpl(model, view);
+    controller.execute();
+    Files.delete(script);
+    Files.delete(image);
+
+    // Later commands may still read the loaded image, so it is not decoded at a reduced size
+    assertEquals(60, model.getImage("img").length);
+    assertEquals(80, model.getImage("img")[0].length);
+    assertEquals(8, model.getImage("small").length);
+  }
+
+  @Test
+  public void testPpmSavesArePlainUnlessBinaryIsAsked() throws Exception {
+    Path plain = Files.createTempFile("plain", ".ppm");
+    Path binary = Files.createTempFile("binary", ".ppm");
+    Path grey = Files.createTempFile("grey", ".pgm");
+    StringReader input = new StringReader("save " + plain + " img\nsave " + binary
+        + " img binary\nsave " + grey + " img plain\nexit");
+    view = new ImageMockViewImpl(new Scanner(input));
+    ImageModel model = new ImageModelImpl();
+    int[][][] image = {{{10, 20, 30}, {40, 50, 60}}};
+    model.loadImage(image, "img");
+    controller = new ImageControllerImpl(model, view);
+    controller.execute();
+
+    String text = new String(Files.readAllBytes(plain), StandardCharsets.US_ASCII);
+    assertTrue(text.startsWith("P3"));
+    assertTrue(new String(Files.readAllBytes(binary), StandardCharsets.US_ASCII)
+        .startsWith("P6"));
+    assertTrue(new String(Files.readAllBytes(grey), StandardCharsets.US_ASCII)
+        .startsWith("P2"));
+    Files.delete(plain);
+    Files.delete(binary);
+    Files.delete(grey);
+    // The saved image is also kept under its file path, as before
+    assertArrayEquals(image, model.getImage(binary.toString()));
+  }
+
+  @Test
+  public void testFailedSaveLetsGoOfTheImage() throws Exception {
+    Path directory = Files.createTempDirectory("missing");
+    Files.delete(directory);
+    StringReader input = new StringReader("save " + directory.resolve("x.ppm") + " img\nexit");
+    view = new ImageMockViewImpl(new Scanner(input));
+    HeapImageStore store = new HeapImageStore();
+    ImageModel model = new ImageModelImpl(store);
+    model.loadImage(new int[][][] {{{10, 20, 30}}}, "img");
+    controller = new ImageControllerImpl(model, view);
+    controller.execute();
+
+    // Once another image is shown, nothing but the store refers to the saved one
+    model.loadImage(new int[][][] {{{1, 2, 3}}}, "other");
+    model.getCurrentImage();
+    model.getHistImage();
+    assertFalse(store.get("img").isShared());
+  }
+
+  @Test
+  public void testFailedStreamLeavesNoPartialOutput() throws Exception {
+    Path image = Files.createTempFile("short", ".ppm");
+    // The header promises more rows than the file holds, which shows only once rows are read
+    StringBuilder text = new StringBuilder("P3\n64 64\n255\n");
+    for (int i = 0; i < 64 * 10; i++) {
+      text.append("1 2 3\n");
+    }
+    Files.write(image, text.toString().getBytes(StandardCharsets.US_ASCII));
+    Path output = Files.createTempFile("out", ".pnm");
+    Files.delete(output);
+    Path script = Files.createTempFile("stream", ".txt");
+    Files.write(script, ("load " + image + " img\nblur img blurred\nsave " + output
+        + " blurred\n").getBytes(StandardCharsets.UTF_8));
+
+    System.setProperty("image.stream.threshold", "0");
+    try {
+      view = new ImageMockViewImpl(new Scanner(new StringReader("")));
+      controller = new ImageControllerImpl(new ImageModelImpl(), view);
+      controller.runScript(script.toString());
+    } finally {
+      System.clearProperty("image.stream.threshold");
+      Files.delete(script);
+      Files.delete(image);
+    }
+    assertTrue(outputStream.toString().contains("Error: "));
+    assertFalse(Files.exists(output));
+  }
+
   @Test
   public void testUnknownCommand() throws Exception {
     StringReader input = new StringReader("unknown-command testImage\nexit");
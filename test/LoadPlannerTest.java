@@ -0,0 +1,179 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import controller.LoadPlanner;
+import controller.NetpbmCodec;
+import controller.PpmWriter;
+import controller.RasterReader;
+import model.PixelImage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * This file tests decoding images at the size a script needs them.
+ */
+public class LoadPlannerTest {
+  private Path directory;
+  private PixelImage image;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("load-planner");
+    image = new PixelImage(40, 30);
+    int[] pixels = image.getWritablePixels();
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = (i % 40) << 16 | (i / 40) << 8 | 7;
+    }
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (Path file : Files.newDirectoryStream(directory)) {
+      Files.delete(file);
+    }
+    Files.delete(directory);
+  }
+
+  private Dimension plan(int index, String... commands) {
+    return new LoadPlanner(Arrays.asList(commands)).targetSize(index);
+  }
+
+  @Test
+  public void testLoadFollowedByResizeIsPlanned() {
+    assertEquals(new Dimension(80, 60),
+        plan(0, "load big.jpg img", "resize img small 80 60", "save small.png small"));
+    assertEquals(new Dimension(80, 60),
+        plan(0, "load big.jpg img", "resize img img 80 60 bicubic", "save img.png img"));
+  }
+
+  @Test
+  public void testImageUsedAgainIsLoadedInFull() {
+    assertNull(plan(0, "load big.jpg img", "resize img small 80 60", "save big.png img"));
+    assertNull(plan(0, "load big.jpg img", "blur img b", "resize b small 80 60"));
+    assertNull(plan(0, "load big.jpg img", "resize img small 0 60"));
+    assertNull(plan(0, "load big.jpg img", "resize img small 80 60", "run other.txt"));
+    assertNull(plan(1, "load big.jpg img", "resize img small 80 60"));
+  }
+
+  @Test
+  public void testReloadingTheNameEndsTheLookAhead() {
+    assertEquals(new Dimension(8, 6), plan(0, "load a.jpg img", "resize img small 8 6",
+        "load b.jpg img", "save b.png img"));
+  }
+
+  private int stream(int index, String... commands) {
+    return new LoadPlanner(Arrays.asList(commands)).streamLength(index);
+  }
+
+  @Test
+  public void testRowLocalChainsAreStreamed() {
+    assertEquals(5, stream(0, "load big.ppm a", "brighten 10 a b", "convolve k.txt b c reflect",
+        "levels-adjust 10 128 240 c d", "save out.pgm d"));
+    assertEquals(2, stream(0, "load big.pam a", "save out.ppm a plain"));
+    assertEquals(2, stream(0, "load big.pam a", "save out.ppm a binary"));
+    assertEquals(3, stream(0, "load big.ppm a", "blur a b", "save out.pgm b plain"));
+    assertEquals(3, stream(0, "load big.ppm a", "blur a b", "save out.pam b binary"));
+    assertEquals(3, stream(1, "load small.png s", "load big.ppm a", "blur a a",
+        "save out.ppm a", "load big.ppm a"));
+  }
+
+  @Test
+  public void testOtherChainsAreNotStreamed() {
+    assertEquals(0, stream(0, "load big.png a", "blur a b", "save out.ppm b"));
+    assertEquals(0, stream(0, "load big.ppm a", "blur a b", "save out.png b"));
+    assertEquals(0, stream(0, "load big.ppm a", "vertical-flip a b", "save out.ppm b"));
+    assertEquals(0, stream(0, "load big.ppm a", "blur a b split 50", "save out.ppm b"));
+    assertEquals(0, stream(0, "load big.ppm a", "convolve k.txt a b wrap", "save out.ppm b"));
+    assertEquals(0, stream(0, "load big.ppm a", "blur a b", "sepia a c", "save out.ppm c"));
+    assertEquals(0, stream(0, "load big.ppm a", "blur a b", "save out.pam b plain"));
+    assertEquals(0, stream(0, "load big.ppm a", "blur a b", "save out.pgm b text"));
+    assertEquals(0, stream(0, "load big.ppm a", "blur a b", "save big.ppm b"));
+    assertEquals(0, stream(0, "load big.ppm a", "blur a b", "save out.ppm b", "sepia a c"));
+    assertEquals(0, stream(0, "load big.ppm a", "blur a b", "save out.ppm b", "run x.txt"));
+    assertEquals(0, stream(0, "load big.ppm a", "blur a b"));
+  }
+
+  private List<String> dead(int index, String... commands) {
+    return new LoadPlanner(Arrays.asList(commands)).deadAfter(index);
+  }
+
+  @Test
+  public void testImagesDieAtTheirLastUse() {
+    String[] script = {"load a.png img", "blur img b", "sepia b s", "brighten 5 img c",
+        "save out.png s", "save c.png c"};
+    assertEquals(Arrays.asList(), dead(0, script));
+    assertEquals(Arrays.asList(), dead(1, script));
+    assertEquals(Arrays.asList("b"), dead(2, script));
+    assertEquals(Arrays.asList("img"), dead(3, script));
+    // The model keeps a saved image under its path as well
+    assertEquals(Arrays.asList("out.png", "s"), dead(4, script));
+  }
+
+  @Test
+  public void testNumbersFilesAndOptionsAreNotImages() {
+    assertEquals(Arrays.asList("a", "b"), dead(0, "convolve k.txt a b wrap"));
+    assertEquals(Arrays.asList("a", "b"), dead(0, "color-matrix m.txt a b"));
+    assertEquals(Arrays.asList("a", "b"), dead(0, "resize a b 10 8 lanczos3"));
+    assertEquals(Arrays.asList("a", "b"), dead(0, "blur a b split 50"));
+    assertEquals(Arrays.asList("a", "b"), dead(0, "levels-adjust 10 128 240 a b"));
+    assertEquals(Arrays.asList("out.ppm", "a"), dead(0, "save out.ppm a plain"));
+  }
+
+  @Test
+  public void testReloadsAndNestedScriptsEndOrExtendLifetimes() {
+    assertEquals(Arrays.asList("img"), dead(0, "blur img b", "load a.png img", "save b.png b",
+        "save a.png img"));
+    assertEquals(Arrays.asList(), dead(0, "blur img b", "run other.txt", "save b.png b"));
+    assertEquals(Arrays.asList(), dead(0, "run other.txt", "save b.png b"));
+  }
+
+  @Test
+  public void testSubsamplingKeepsTwiceTheTarget() {
+    assertEquals(1, LoadPlanner.subsampling(100, 100, null));
+    assertEquals(1, LoadPlanner.subsampling(100, 100, new Dimension(60, 60)));
+    assertEquals(3, LoadPlanner.subsampling(6000, 4000, new Dimension(800, 600)));
+    assertEquals(2, LoadPlanner.subsampling(6000, 400, new Dimension(800, 100)));
+  }
+
+  private void assertSubsampled(PixelImage loaded, int step) {
+    assertEquals((image.getWidth() + step - 1) / step, loaded.getWidth());
+    assertEquals((image.getHeight() + step - 1) / step, loaded.getHeight());
+    for (int y = 0; y < loaded.getHeight(); y++) {
+      for (int x = 0; x < loaded.getWidth(); x++) {
+        assertEquals(image.getRGB(x * step, y * step), loaded.getRGB(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testNetpbmReadsKeepEveryFewPixels() throws IOException {
+    String binary = directory.resolve("a.ppm").toString();
+    NetpbmCodec.write(binary, image);
+    assertSubsampled(NetpbmCodec.read(binary, new Dimension(6, 5)), 3);
+    String plain = directory.resolve("b.ppm").toString();
+    PpmWriter.write(plain, image);
+    assertSubsampled(NetpbmCodec.read(plain, new Dimension(6, 5)), 3);
+    assertSubsampled(NetpbmCodec.read(plain, null), 1);
+  }
+
+  @Test
+  public void testRasterReadsKeepEveryFewPixels() throws IOException {
+    BufferedImage png = new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB);
+    png.setRGB(0, 0, 40, 30, image.getPixels(), 0, 40);
+    Path file = directory.resolve("a.png");
+    ImageIO.write(png, "png", file.toFile());
+    assertSubsampled(RasterReader.read(file.toString(), new Dimension(10, 7)), 2);
+  }
+}
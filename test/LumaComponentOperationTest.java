@@ -113,8 +113,8 @@ public class LumaComponentOperationTest {
 
     int[][][] expectedLuma = {
             {{1, 1, 1}, {2, 2, 2}, {3, 3, 3}},
-            {{4, 4, 4}, {4, 4, 4}, {6, 6, 6}},
-            {{6, 6, 6}, {8, 8, 8}, {9, 9, 9}}
+            {{4, 4, 4}, {5, 5, 5}, {6, 6, 6}},
+            {{7, 7, 7}, {8, 8, 8}, {9, 9, 9}}
     };
     int[][][] lumaImage = model.getImage("LumaNormalPixelImage");
 
@@ -137,7 +137,7 @@ public class LumaComponentOperationTest {
 
     // Assert
     int[][][] expectedLuma = {
-            {{1, 1, 1}, {2, 2, 2}, {3, 3, 3}, {4, 4, 4}, {4, 4, 4}}  // Expected Luma output
+            {{1, 1, 1}, {2, 2, 2}, {3, 3, 3}, {4, 4, 4}, {5, 5, 5}}  // Expected Luma output
     };
 
     int[][][] lumaImage = model.getImage("LumaSingleRowPixelImage");
@@ -170,7 +170,7 @@ public class LumaComponentOperationTest {
             {{2, 2, 2}},
             {{3, 3, 3}},
             {{4, 4, 4}},
-            {{4, 4, 4}}
+            {{5, 5, 5}}
     };
     int[][][] lumaImage = model.getImage("LumaSingleColumnPixelImage");
 
@@ -198,7 +198,7 @@ public class LumaComponentOperationTest {
     // Assert
     int[][][] expectedLuma = {
             {{1, 1, 1}, {2, 2, 2}, {3, 3, 3}},
-            {{4, 4, 4}, {4, 4, 4}, {6, 6, 6}},
+            {{4, 4, 4}, {5, 5, 5}, {6, 6, 6}},
             {{1, 1, 1}, {2, 2, 2}, {3, 3, 3}}
     };
     int[][][] lumaImage = model.getImage("LumaSymmetricImage");
@@ -227,8 +227,8 @@ public class LumaComponentOperationTest {
     // Assert
     int[][][] expectedLuma = {
             {{1, 1, 1}, {2, 2, 2}, {3, 3, 3}},
-            {{4, 4, 4}, {4, 4, 4}, {6, 6, 6}},
-            {{6, 6, 6}, {8, 8, 8}, {9, 9, 9}}
+            {{4, 4, 4}, {5, 5, 5}, {6, 6, 6}},
+            {{7, 7, 7}, {8, 8, 8}, {9, 9, 9}}
     };
     int[][][] lumaImage = model.getImage("LumaNonSymmetricImage");
 
@@ -278,9 +278,9 @@ public class LumaComponentOperationTest {
     // Assert
     int[][][] expectedLuma = {
             {{1, 1, 1}, {2, 2, 2}, {3, 3, 3}, {4, 4, 4}},
-            {{4, 4, 4}, {6, 6, 6}, {6, 6, 6}, {8, 8, 8}},
-            {{9, 9, 9}, {9, 9, 9}, {11, 11, 11}, {12, 12, 12}},
-            {{12, 12, 12}, {13, 13, 13}, {15, 15, 15}, {16, 16, 16}}
+            {{5, 5, 5}, {6, 6, 6}, {7, 7, 7}, {8, 8, 8}},
+            {{9, 9, 9}, {10, 10, 10}, {11, 11, 11}, {12, 12, 12}},
+            {{13, 13, 13}, {14, 14, 14}, {15, 15, 15}, {16, 16, 16}}
     };
     int[][][] lumaImage = model.getImage("LumaEvenNumberRowImage");
 
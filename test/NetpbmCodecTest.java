@@ -0,0 +1,157 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import controller.NetpbmCodec;
+import model.PixelImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This file tests reading and writing binary NetPBM images.
+ */
+public class NetpbmCodecTest {
+  private Path directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("netpbm-codec");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (Path file : Files.newDirectoryStream(directory)) {
+      Files.delete(file);
+    }
+    Files.delete(directory);
+  }
+
+  private String write(String name, String header, int... samples) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    bytes.write(header.getBytes(StandardCharsets.US_ASCII));
+    for (int sample : samples) {
+      bytes.write(sample);
+    }
+    Path file = directory.resolve(name);
+    Files.write(file, bytes.toByteArray());
+    return file.toString();
+  }
+
+  private String header(String file, int lines) throws IOException {
+    String text = new String(Files.readAllBytes(directory.resolve(file)),
+        StandardCharsets.US_ASCII);
+    int end = 0;
+    for (int line = 0; line < lines; line++) {
+      end = text.indexOf('\n', end) + 1;
+    }
+    return text.substring(0, end);
+  }
+
+  @Test
+  public void testReadsBinaryPpm() throws IOException {
+    PixelImage image = NetpbmCodec.read(write("a.ppm", "P6\n2 1\n255\n",
+        255, 0, 0, 10, 20, 30));
+    int[][][] expected = {
+        {{255, 0, 0}, {10, 20, 30}}
+    };
+    assertArrayEquals(expected, image.toArray());
+  }
+
+  @Test
+  public void testReadsSixteenBitSamplesWithComments() throws IOException {
+    PixelImage image = NetpbmCodec.read(write("a.pgm", "P5 # grey\n2 1\n# max\n65535\n",
+        0xFF, 0xFF, 0x80, 0x00));
+    int[][][] expected = {
+        {{255, 255, 255}, {127, 127, 127}}
+    };
+    assertArrayEquals(expected, image.toArray());
+  }
+
+  @Test
+  public void testReadsPamIgnoringAlpha() throws IOException {
+    PixelImage image = NetpbmCodec.read(write("a.pam",
+        "P7\nWIDTH 1\nHEIGHT 2\nDEPTH 4\nMAXVAL 255\nTUPLTYPE RGB_ALPHA\nENDHDR\n",
+        1, 2, 3, 255, 4, 5, 6, 0));
+    int[][][] expected = {
+        {{1, 2, 3}},
+        {{4, 5, 6}}
+    };
+    assertArrayEquals(expected, image.toArray());
+  }
+
+  @Test
+  public void testReadsPlainPpm() throws IOException {
+    PixelImage image = NetpbmCodec.read(write("a.ppm", "P3\n1 1\n255\n7 8 9\n"));
+    int[][][] expected = {
+        {{7, 8, 9}}
+    };
+    assertArrayEquals(expected, image.toArray());
+  }
+
+  @Test
+  public void testColourImageRoundTripsAsP6() throws IOException {
+    int[][][] pixels = {
+        {{255, 0, 0}, {0, 255, 0}, {0, 0, 255}},
+        {{10, 20, 30}, {40, 50, 60}, {70, 80, 90}}
+    };
+    String file = directory.resolve("b.ppm").toString();
+    NetpbmCodec.write(file, PixelImage.fromArray(pixels));
+    assertEquals("P6\n3 2\n255\n", header("b.ppm", 3));
+    assertArrayEquals(pixels, NetpbmCodec.read(file).toArray());
+  }
+
+  @Test
+  public void testGreyImageIsWrittenAsP5() throws IOException {
+    int[][][] pixels = {
+        {{0, 0, 0}, {128, 128, 128}},
+        {{200, 200, 200}, {255, 255, 255}}
+    };
+    String file = directory.resolve("c.ppm").toString();
+    NetpbmCodec.write(file, PixelImage.fromArray(pixels));
+    assertEquals("P5\n2 2\n255\n", header("c.ppm", 3));
+    assertEquals(11 + 4, Files.size(directory.resolve("c.ppm")));
+    assertArrayEquals(pixels, NetpbmCodec.read(file).toArray());
+  }
+
+  @Test
+  public void testPamRoundTrip() throws IOException {
+    int[][][] pixels = {
+        {{1, 2, 3}, {4, 5, 6}}
+    };
+    String file = directory.resolve("d.pam").toString();
+    NetpbmCodec.write(file, PixelImage.fromArray(pixels));
+    assertEquals("P7\nWIDTH 2\nHEIGHT 1\nDEPTH 3\nMAXVAL 255\nTUPLTYPE RGB\nENDHDR\n",
+        header("d.pam", 7));
+    assertArrayEquals(pixels, NetpbmCodec.read(file).toArray());
+  }
+
+  @Test
+  public void testColourSavedAsPgmUsesLuma() throws IOException {
+    int[][][] pixels = {
+        {{255, 0, 0}, {0, 255, 0}}
+    };
+    String file = directory.resolve("e.pgm").toString();
+    NetpbmCodec.write(file, PixelImage.fromArray(pixels));
+    int[][][] expected = {
+        {{54, 54, 54}, {182, 182, 182}}
+    };
+    assertArrayEquals(expected, NetpbmCodec.read(file).toArray());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncatedFileIsRejected() throws IOException {
+    NetpbmCodec.read(write("f.ppm", "P6\n2 2\n255\n", 1, 2, 3, 4, 5, 6));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSampleAboveMaximumIsRejected() throws IOException {
+    NetpbmCodec.read(write("g.pgm", "P5\n1 1\n100\n", 101));
+  }
+}
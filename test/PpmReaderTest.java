@@ -0,0 +1,87 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import controller.PpmReader;
+import model.PixelImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This file tests reading plain PPM images.
+ */
+public class PpmReaderTest {
+  private Path file;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("ppm-reader", ".ppm");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  private PixelImage read(String text) throws IOException {
+    Files.write(file, text.getBytes(StandardCharsets.US_ASCII));
+    return PpmReader.read(file.toString());
+  }
+
+  @Test
+  public void testReadsPixelsInRowOrder() throws IOException {
+    PixelImage image = read("P3\n2 2\n255\n255 0 0  0 255 0\n0 0 255  10 20 30\n");
+    assertEquals(2, image.getWidth());
+    assertEquals(2, image.getHeight());
+    int[][][] expected = {
+        {{255, 0, 0}, {0, 255, 0}},
+        {{0, 0, 255}, {10, 20, 30}}
+    };
+    assertArrayEquals(expected, image.toArray());
+  }
+
+  @Test
+  public void testSkipsCommentsAnywhereInTheHeader() throws IOException {
+    PixelImage image = read("P3# made by a tool\n# size follows\n1 # width\n1\n#max\n255\n"
+        + "1 2 3");
+    int[][][] expected = {
+        {{1, 2, 3}}
+    };
+    assertArrayEquals(expected, image.toArray());
+  }
+
+  @Test
+  public void testScalesToMaximumValue() throws IOException {
+    PixelImage image = read("P3 3 1 15 15 0 7 1 2 3 0 0 15");
+    int[][][] expected = {
+        {{255, 0, 119}, {17, 34, 51}, {0, 0, 255}}
+    };
+    assertArrayEquals(expected, image.toArray());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBinaryFormatIsRejected() throws IOException {
+    read("P6\n1 1\n255\n");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingSamplesAreRejected() throws IOException {
+    read("P3\n2 1\n255\n1 2 3 4 5");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSampleAboveMaximumIsRejected() throws IOException {
+    read("P3\n1 1\n100\n1 2 101");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGarbageIsRejected() throws IOException {
+    read("P3\n1 1\n255\n1 2x 3");
+  }
+}
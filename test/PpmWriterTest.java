@@ -0,0 +1,86 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import controller.PpmReader;
+import controller.PpmWriter;
+import model.PixelImage;
+import model.RowExecutor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This file tests writing plain PPM and PGM images.
+ */
+public class PpmWriterTest {
+  private Path file;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("ppm-writer", ".ppm");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  private String format(PixelImage image, RowExecutor executor) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new PpmWriter(Channels.newChannel(bytes), executor).writeImage(image);
+    return new String(bytes.toByteArray(), StandardCharsets.US_ASCII);
+  }
+
+  @Test
+  public void testWritesOnePixelPerLine() throws IOException {
+    int[][][] pixels = {
+        {{255, 0, 0}, {0, 255, 9}},
+        {{10, 99, 100}, {1, 2, 3}}
+    };
+    String expected = "P3\n2 2\n255\n255 0 0\n0 255 9\n10 99 100\n1 2 3\n";
+    assertEquals(expected, format(PixelImage.fromArray(pixels), new RowExecutor(1, 1)));
+  }
+
+  @Test
+  public void testParallelChunksAreWrittenInOrder() throws IOException {
+    int width = 3000;
+    int height = 100;
+    PixelImage image = new PixelImage(width, height);
+    int[] data = image.getWritablePixels();
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (int) (i * 2654435761L) & 0xFFFFFF;
+    }
+    String sequential = format(image, new RowExecutor(1, 1));
+    assertEquals(sequential, format(image, new RowExecutor(4, 1)));
+  }
+
+  @Test
+  public void testRoundTripsThroughReader() throws IOException {
+    int[][][] pixels = {
+        {{12, 34, 56}, {255, 255, 255}, {0, 0, 0}}
+    };
+    PpmWriter.write(file.toString(), PixelImage.fromArray(pixels));
+    assertArrayEquals(pixels, PpmReader.read(file.toString()).toArray());
+  }
+
+  @Test
+  public void testWritesGreyImagesAsP2() throws IOException {
+    int[][][] pixels = {
+        {{7, 7, 7}, {255, 0, 0}},
+        {{200, 200, 200}, {0, 0, 0}}
+    };
+    PpmWriter.write(file.toString(), PixelImage.fromArray(pixels), true);
+    // Colour pixels are written as their luma
+    assertEquals("P2\n2 2\n255\n7\n54\n200\n0\n",
+        new String(Files.readAllBytes(file), StandardCharsets.US_ASCII));
+    assertEquals(54, PpmReader.read(file.toString()).getRGB(1, 0) & 0xFF);
+  }
+}
@@ -0,0 +1,81 @@
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+import controller.RasterReader;
+import model.PixelImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This file tests copying decoded images into pixel images.
+ */
+public class RasterReaderTest {
+
+  private static final int[] COLOURS = {
+      0x102030, 0xFF0000, 0x00FF00, 0x0000FF, 0xFFFFFF, 0x000000, 0x7F8081, 0xABCDEF,
+      0x010203, 0xFEDCBA, 0x336699, 0x996633
+  };
+
+  private BufferedImage filled(int type) {
+    BufferedImage image = new BufferedImage(4, 3, type);
+    for (int i = 0; i < COLOURS.length; i++) {
+      image.setRGB(i % 4, i / 4, 0xFF000000 | COLOURS[i]);
+    }
+    return image;
+  }
+
+  private void assertCopiesGetRGB(BufferedImage image) {
+    PixelImage pixels = RasterReader.fromBufferedImage(image);
+    assertEquals(image.getWidth(), pixels.getWidth());
+    assertEquals(image.getHeight(), pixels.getHeight());
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        assertEquals(image.getRGB(x, y) & 0xFFFFFF, pixels.getRGB(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testThreeByteBgr() {
+    assertCopiesGetRGB(filled(BufferedImage.TYPE_3BYTE_BGR));
+  }
+
+  @Test
+  public void testFourByteAbgrIgnoresAlpha() {
+    assertCopiesGetRGB(filled(BufferedImage.TYPE_4BYTE_ABGR));
+  }
+
+  @Test
+  public void testIntRgbAndArgb() {
+    assertCopiesGetRGB(filled(BufferedImage.TYPE_INT_RGB));
+    assertCopiesGetRGB(filled(BufferedImage.TYPE_INT_ARGB));
+  }
+
+  @Test
+  public void testOtherTypesUseGetRGB() {
+    assertCopiesGetRGB(filled(BufferedImage.TYPE_USHORT_565_RGB));
+    assertCopiesGetRGB(filled(BufferedImage.TYPE_INT_BGR));
+  }
+
+  @Test
+  public void testSubimageRastersAreOffset() {
+    assertCopiesGetRGB(filled(BufferedImage.TYPE_3BYTE_BGR).getSubimage(1, 1, 2, 2));
+    assertCopiesGetRGB(filled(BufferedImage.TYPE_INT_RGB).getSubimage(1, 1, 3, 2));
+  }
+
+  @Test
+  public void testGreyBytesAreTakenAsStored() {
+    BufferedImage image = new BufferedImage(3, 1, BufferedImage.TYPE_BYTE_GRAY);
+    byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    data[0] = 0;
+    data[1] = 64;
+    data[2] = (byte) 200;
+    int[][][] expected = {
+        {{0, 0, 0}, {64, 64, 64}, {200, 200, 200}}
+    };
+    assertArrayEquals(expected, RasterReader.fromBufferedImage(image).toArray());
+  }
+}
@@ -0,0 +1,98 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import model.ImageModel;
+import model.ImageModelImpl;
+import model.ResampleFilter;
+import operations.AbstractImageOperation;
+import operations.ResizeOperation;
+
+import static org.junit.Assert.assertArrayEquals;
+
+
+/**
+ * This file tests the resize operation.
+ */
+public class ResizeOperationTest {
+
+  private ImageModel model;
+
+  @Before
+  public void setUp() throws IOException {
+    model = new ImageModelImpl();  // Initialize the image model before each test
+    int[][][] imageData = {
+        {{0, 0, 0}, {4, 4, 4}, {100, 0, 0}, {0, 100, 0}},
+        {{8, 8, 8}, {12, 12, 12}, {0, 0, 100}, {100, 100, 100}}
+    };
+    model.saveImage("image", imageData);
+  }
+
+  private int[][][] resize(String width, String height, ResampleFilter filter) {
+    AbstractImageOperation operation = new ResizeOperation("image", "resizedImage", width,
+        height, filter);
+    operation.performOperation(model);
+    return model.getImage("resizedImage");
+  }
+
+  @Test
+  public void testAreaAveragesCoveredPixels() {
+    int[][][] expected = {
+        {{6, 6, 6}, {50, 50, 50}}
+    };
+    assertArrayEquals(expected, resize("2", "1", ResampleFilter.AREA));
+  }
+
+  @Test
+  public void testNearestRepeatsPixels() {
+    int[][][] expected = {
+        {{0, 0, 0}, {0, 0, 0}, {4, 4, 4}, {4, 4, 4}, {100, 0, 0}, {100, 0, 0},
+            {0, 100, 0}, {0, 100, 0}},
+        {{8, 8, 8}, {8, 8, 8}, {12, 12, 12}, {12, 12, 12}, {0, 0, 100}, {0, 0, 100},
+            {100, 100, 100}, {100, 100, 100}}
+    };
+    assertArrayEquals(expected, resize("8", "2", ResampleFilter.NEAREST));
+  }
+
+  @Test
+  public void testBilinearInterpolatesBetweenPixelCentres() throws IOException {
+    int[][][] imageData = {
+        {{0, 0, 0}, {200, 100, 40}}
+    };
+    model.saveImage("image", imageData);
+    int[][][] expected = {
+        {{0, 0, 0}, {50, 25, 10}, {150, 75, 30}, {200, 100, 40}}
+    };
+    assertArrayEquals(expected, resize("4", "0", ResampleFilter.BILINEAR));
+  }
+
+  @Test
+  public void testFlatImageStaysFlat() throws IOException {
+    int[][][] imageData = new int[9][7][];
+    for (int[][] row : imageData) {
+      for (int col = 0; col < row.length; col++) {
+        row[col] = new int[]{90, 180, 30};
+      }
+    }
+    model.saveImage("image", imageData);
+    for (ResampleFilter filter : ResampleFilter.values()) {
+      int[][][] resized = resize("5", "13", filter);
+      for (int[][] row : resized) {
+        for (int[] pixel : row) {
+          assertArrayEquals(new int[]{90, 180, 30}, pixel);
+        }
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownFilterIsRejected() {
+    ResampleFilter.fromName("sharpest");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeSizeIsRejected() {
+    resize("-4", "2", ResampleFilter.BICUBIC);
+  }
+}
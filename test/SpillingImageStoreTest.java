@@ -0,0 +1,138 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import model.ImageModel;
+import model.ImageModelImpl;
+import model.PixelImage;
+import model.SpillingImageStore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This file tests keeping the model's images within a memory budget.
+ */
+public class SpillingImageStoreTest {
+  // Two 40 x 30 images fit in the budget, a third does not
+  private static final long BUDGET = 2 * 40 * 30 * 4;
+
+  private PixelImage[] images;
+  private SpillingImageStore store;
+
+  @Before
+  public void setUp() {
+    Random random = new Random(5);
+    images = new PixelImage[4];
+    for (int i = 0; i < images.length; i++) {
+      images[i] = new PixelImage(40, 30);
+      int[] pixels = images[i].getWritablePixels();
+      for (int p = 0; p < pixels.length; p++) {
+        pixels[p] = random.nextInt(0x1000000);
+      }
+    }
+    store = new SpillingImageStore(BUDGET);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedImagesAreSpilled() {
+    store.put("a", images[0]);
+    store.put("b", images[1]);
+    assertSame(images[0], store.get("a"));
+    store.put("c", images[2]);
+
+    assertTrue(store.isSpilled("b"));
+    assertFalse(store.isSpilled("a"));
+    assertEquals(BUDGET, store.getResidentBytes());
+
+    PixelImage reloaded = store.get("b");
+    assertArrayEquals(images[1].toArray(), reloaded.toArray());
+    assertEquals(images[1].getVersion(), reloaded.getVersion());
+    assertTrue(store.isSpilled("a"));
+  }
+
+  @Test
+  public void testSpilledPlacesAreReused() {
+    store.put("a", images[0]);
+    store.put("b", images[1]);
+    store.put("c", images[2]);
+    store.put("a", images[3]);
+    store.put("d", images[0].copy());
+    store.remove("b");
+    store.put("e", new PixelImage(3, 3));
+    assertNull(store.get("b"));
+
+    assertArrayEquals(images[2].toArray(), store.get("c").toArray());
+    assertArrayEquals(images[3].toArray(), store.get("a").toArray());
+    assertArrayEquals(images[0].toArray(), store.get("d").toArray());
+    assertTrue(store.getResidentBytes() <= BUDGET);
+  }
+
+  @Test
+  public void testModelRunsWithinTheBudget() throws IOException {
+    ImageModel heap = new ImageModelImpl();
+    ImageModel spilling = new ImageModelImpl(store);
+    for (ImageModel model : new ImageModel[] {heap, spilling}) {
+      model.loadImage(images[0].toArray(), "img");
+      model.blur("img", "blurred");
+      model.sharpen("blurred", "sharp");
+      model.flipHorizontal("sharp", "flipped");
+      model.sepia("img", "sepia");
+      model.rgbCombine("combined", "flipped", "sepia", "img");
+      model.histogram("combined", "hist");
+    }
+    // The histogram alone is larger than the budget, so it is the only image left on the heap
+    assertEquals(512 * 256 * 4, store.getResidentBytes());
+    assertTrue(store.isSpilled("img"));
+    for (String name : new String[] {"img", "blurred", "sharp", "flipped", "sepia", "combined",
+        "hist"}) {
+      assertArrayEquals(heap.getImage(name), spilling.getImage(name));
+    }
+  }
+
+  @Test
+  public void testImagesChangedInPlaceAreSpilledAgain() {
+    store.put("a", images[0]);
+    store.put("b", images[1]);
+    store.put("c", images[2]);
+    assertTrue(store.isSpilled("a"));
+
+    // Read back, changed in place and stored again under the same handle
+    PixelImage reloaded = store.get("a");
+    reloaded.getWritablePixels()[0] = 0x123456;
+    store.put("a", reloaded);
+    int[][][] changed = reloaded.toArray();
+    long version = reloaded.getVersion();
+    store.get("b");
+    store.get("c");
+    assertTrue(store.isSpilled("a"));
+
+    PixelImage again = store.get("a");
+    assertArrayEquals(changed, again.toArray());
+    assertEquals(version, again.getVersion());
+  }
+
+  @Test
+  public void testSplitWritesThroughToTheSpillFile() throws IOException {
+    ImageModel heap = new ImageModelImpl();
+    ImageModel spilling = new ImageModelImpl(store);
+    for (ImageModel model : new ImageModel[] {heap, spilling}) {
+      model.loadImage(images[0].toArray(), "img");
+      model.blur("img", "blurred");
+      model.sepia("img", "sepia");
+      model.sharpen("img", "sharp");
+      // "blurred" has been spilled by now; split reads it back and overwrites it in place
+      model.split("img", "blurred", 50);
+      model.flipHorizontal("sepia", "flipped");
+      model.sharpen("sepia", "sharp");
+    }
+    assertTrue(store.isSpilled("blurred"));
+    assertArrayEquals(heap.getImage("blurred"), spilling.getImage("blurred"));
+  }
+}
@@ -0,0 +1,130 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import controller.NetpbmCodec;
+import controller.PpmWriter;
+import model.BorderMode;
+import model.ColorMatrix;
+import model.ImageModel;
+import model.ImageModelImpl;
+import model.Kernel;
+import model.PixelImage;
+import model.StripModel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This file tests that streaming an image strip by strip gives the same result as processing
+ * it in memory.
+ */
+public class StripModelTest {
+  private Path directory;
+  private PixelImage image;
+  private ImageModel memory;
+  private StripModel strips;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("strip-model");
+    image = new PixelImage(9, 23);
+    int[] pixels = image.getWritablePixels();
+    Random random = new Random(42);
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = random.nextInt(0x1000000);
+    }
+    memory = new ImageModelImpl();
+    memory.loadImage(image.toArray(), "img");
+    // Strips of two rows, so that kernels reach across several strips
+    strips = new StripModel(20);
+    strips.loadImage(image, "img");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (Path file : Files.newDirectoryStream(directory)) {
+      Files.delete(file);
+    }
+    Files.delete(directory);
+  }
+
+  private void assertSame(String name) {
+    assertArrayEquals(memory.getImage(name), strips.getImage(name));
+  }
+
+  @Test
+  public void testPointOperations() {
+    for (ImageModel model : new ImageModel[] {memory, strips}) {
+      model.brighten(30, "img", "bright");
+      model.sepia("bright", "sepia");
+      model.lumaComponent("sepia", "luma");
+      model.levelAdjust("img", "levels", "20", "100", "230");
+      model.flipHorizontal("levels", "flipped");
+    }
+    assertSame("bright");
+    assertSame("luma");
+    assertSame("flipped");
+  }
+
+  @Test
+  public void testConvolutionsAcrossStrips() {
+    Kernel wide = Kernel.of(new int[][] {
+        {1, 1, 1, 1, 1}, {1, 2, 2, 2, 1}, {1, 2, 4, 2, 1}, {1, 2, 2, 2, 1}, {1, 1, 1, 1, 1}},
+        36);
+    for (ImageModel model : new ImageModel[] {memory, strips}) {
+      model.blur("img", "blurred");
+      model.sharpen("blurred", "sharp");
+      model.convolve("sharp", "reflected", wide, BorderMode.REFLECT);
+      model.convolve("img", "clamped", wide, BorderMode.CLAMP);
+    }
+    assertSame("blurred");
+    assertSame("sharp");
+    assertSame("reflected");
+    assertSame("clamped");
+  }
+
+  @Test
+  public void testColorCorrectionCountsTheWholeImage() {
+    for (ImageModel model : new ImageModel[] {memory, strips}) {
+      model.colorMatrix("img", "mixed", ColorMatrix.greyscale(1, 2, 1, 4));
+      model.brighten(-40, "img", "dark");
+      model.colorCorrect("dark", "corrected");
+    }
+    assertSame("mixed");
+    assertSame("corrected");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWholeImageOperationsAreRejected() {
+    strips.flipVertical("img", "flipped");
+  }
+
+  @Test
+  public void testStreamsFromFileToFile() throws IOException {
+    String binary = directory.resolve("in.ppm").toString();
+    NetpbmCodec.write(binary, image);
+    String plain = directory.resolve("in-plain.ppm").toString();
+    PpmWriter.write(plain, image);
+    memory.blur("img", "blurred");
+
+    for (String input : new String[] {binary, plain}) {
+      String output = directory.resolve("out.pam").toString();
+      try (NetpbmCodec.StripReader reader = new NetpbmCodec.StripReader(input);
+           NetpbmCodec.StripWriter writer = new NetpbmCodec.StripWriter(output,
+               reader.getWidth(), reader.getHeight(), reader.isGrey())) {
+        assertEquals(9, reader.getWidth());
+        assertEquals(23, reader.getHeight());
+        strips.open(reader, "file");
+        strips.blur("file", "blurred");
+        strips.save("blurred", writer);
+      }
+      assertArrayEquals(memory.getImage("blurred"), NetpbmCodec.read(output).toArray());
+    }
+  }
+}
@@ -0,0 +1,146 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import controller.NetpbmCodec;
+import model.BorderMode;
+import model.ChannelLut;
+import model.ColorMatrix;
+import model.Convolver;
+import model.Kernel;
+import model.PixelImage;
+import model.RowExecutor;
+import model.TiledImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This file tests images kept as tiles against the same operations on whole images.
+ */
+public class TiledImageTest {
+  private Path directory;
+  private PixelImage image;
+  private TiledImage tiled;
+  private Convolver convolver;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("tiled-image");
+    // Three tiles across and down, with cut tiles on the right and bottom edges
+    image = new PixelImage(600, 520);
+    int[] pixels = image.getWritablePixels();
+    Random random = new Random(7);
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = random.nextInt(0x1000000);
+    }
+    tiled = TiledImage.fromImage(image);
+    convolver = new Convolver(RowExecutor.shared());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (Path file : Files.newDirectoryStream(directory)) {
+      Files.delete(file);
+    }
+    Files.delete(directory);
+  }
+
+  private void assertSamePixels(PixelImage expected, PixelImage actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    assertArrayEquals(expected.toArray(), actual.toArray());
+  }
+
+  @Test
+  public void testTilesHoldTheImage() {
+    assertEquals(3, tiled.getTilesAcross());
+    assertEquals(3, tiled.getTilesDown());
+    assertEquals(88, tiled.getTile(2, 0).getWidth());
+    assertEquals(8, tiled.getTile(0, 2).getHeight());
+    assertSamePixels(image, tiled.toImage());
+    assertEquals(image.getRGB(599, 519), tiled.getRGB(599, 519));
+    tiled.setRGB(300, 260, 0x123456);
+    assertEquals(0x123456, tiled.readRegion(250, 250, 100, 20).getRGB(50, 10));
+  }
+
+  @Test
+  public void testPointStages() {
+    ColorMatrix grey = ColorMatrix.greyscale(1, 2, 1, 4);
+    PixelImage expected = image.copy();
+    grey.apply(expected.getWritablePixels(), 0, 600 * 520);
+    ChannelLut.offset(10, -20, 30).apply(expected.getWritablePixels(), 0, 600 * 520);
+    assertSamePixels(expected, tiled.map(grey).map(ChannelLut.offset(10, -20, 30)).toImage());
+  }
+
+  @Test
+  public void testConvolutionsMatchTheWholeImage() {
+    Kernel wide = Kernel.of(new int[][] {
+        {1, 1, 1, 1, 1}, {1, 2, 2, 2, 1}, {1, 2, 4, 2, 1}, {1, 2, 2, 2, 1}, {1, 1, 1, 1, 1}},
+        36);
+    for (BorderMode border : new BorderMode[] {BorderMode.BLACK, BorderMode.REFLECT}) {
+      assertSamePixels(convolver.convolve(image, wide, border),
+          tiled.convolve(convolver, wide, border).toImage());
+    }
+  }
+
+  @Test
+  public void testFlips() {
+    TiledImage flipped = tiled.flipHorizontal().flipVertical();
+    for (int y = 0; y < 520; y += 13) {
+      for (int x = 0; x < 600; x += 7) {
+        assertEquals(image.getRGB(599 - x, 519 - y), flipped.getRGB(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testOnlyTilesUnderARegionAreComputed() {
+    AtomicInteger filled = new AtomicInteger();
+    TiledImage counted = new TiledImage(600, 520, (tileX, tileY, tile) -> {
+      filled.incrementAndGet();
+      tiled.getTile(tileX, tileY);
+      tile.getWritablePixels();
+    });
+    counted.readRegion(300, 300, 50, 50);
+    assertEquals(1, filled.get());
+    assertTrue(counted.isMaterialized(1, 1));
+    assertFalse(counted.isMaterialized(0, 0));
+
+    counted.materialize(RowExecutor.shared());
+    assertEquals(9, filled.get());
+  }
+
+  @Test
+  public void testImagesPastArrayLimits() {
+    // Five billion pixels, of which only the tiles that are read are ever held
+    TiledImage huge = new TiledImage(100_000, 50_000, (tileX, tileY, tile) -> {
+      for (int y = 0; y < tile.getHeight(); y++) {
+        for (int x = 0; x < tile.getWidth(); x++) {
+          tile.setRGB(x, y, (tileX + tileY) & 0xFF);
+        }
+      }
+    });
+    assertEquals((390 + 195) & 0xFF, huge.getRGB(99_999, 49_999));
+    assertEquals(0, huge.flipHorizontal().flipVertical().getRGB(99_999, 49_999));
+  }
+
+  @Test
+  public void testTilesAreReadFromNetpbmFiles() throws IOException {
+    String file = directory.resolve("a.ppm").toString();
+    NetpbmCodec.write(file, image);
+    try (NetpbmCodec.TileReader reader = new NetpbmCodec.TileReader(file)) {
+      TiledImage fromFile = reader.toImage();
+      assertSamePixels(image.copy(), fromFile.readRegion(0, 0, 600, 520));
+      assertEquals(image.getRGB(470, 300), fromFile.getRGB(470, 300));
+    }
+  }
+}